@@ -0,0 +1,41 @@
+package org.cqframework.cql.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+Access to the benchmark inputs: the Examples measures are at the root of the classpath, and the elm-fhir test
+fixtures under their package path.
+
+Cold benchmarks measure the first invocation in a fresh JVM (single shot, no warmup, one iteration per fork, so
+class loading, initialization and interpretation are included), warm benchmarks the average time once the JIT has
+compiled the hot paths.
+ */
+final class BenchmarkResources {
+    static final int COLD_FORKS = 10;
+
+    private BenchmarkResources() {
+    }
+
+    static String read(String name) throws IOException {
+        try (InputStream inputStream = BenchmarkResources.class.getResourceAsStream(name)) {
+            if (inputStream == null) {
+                throw new IllegalStateException(String.format("Could not find %s", name));
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static Path directory(String name) throws URISyntaxException {
+        URL url = BenchmarkResources.class.getResource(name);
+        if (url == null) {
+            throw new IllegalStateException(String.format("Could not find %s", name));
+        }
+        return Paths.get(url.toURI());
+    }
+}
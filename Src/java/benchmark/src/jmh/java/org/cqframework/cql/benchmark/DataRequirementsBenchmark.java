@@ -0,0 +1,84 @@
+package org.cqframework.cql.benchmark;
+
+import org.cqframework.cql.cql2elm.CqlTranslator;
+import org.cqframework.cql.cql2elm.CqlTranslatorOptions;
+import org.cqframework.cql.cql2elm.DefaultLibrarySourceProvider;
+import org.cqframework.cql.cql2elm.FhirLibrarySourceProvider;
+import org.cqframework.cql.cql2elm.LibraryManager;
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.cqframework.cql.elm.requirements.fhir.DataRequirementsProcessor;
+import org.hl7.fhir.r5.model.Library;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a recursive data requirements gather (DataRequirementsProcessor) of the CMS104 measure library of the
+ * elm-fhir test fixtures. The gather does not analyze the data requirements, as analysis changes the retrieves of
+ * the library, so repeated gathers would not be comparable.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DataRequirementsBenchmark {
+    private static final String FIXTURES = "/org/cqframework/cql/elm/requirements/fhir/CMS104";
+    private static final String LIBRARY = "DischargedonAntithromboticTherapyFHIR.cql";
+
+    private LibraryManager libraryManager;
+    private CompiledLibrary compiledLibrary;
+    private CqlTranslatorOptions options;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, URISyntaxException {
+        Path directory = BenchmarkResources.directory(FIXTURES);
+        options = new CqlTranslatorOptions();
+        options.setCollapseDataRequirements(true);
+        options.setAnalyzeDataRequirements(false);
+        ModelManager modelManager = new ModelManager();
+        libraryManager = new LibraryManager(modelManager);
+        libraryManager.getLibrarySourceLoader().registerProvider(new DefaultLibrarySourceProvider(directory));
+        libraryManager.getLibrarySourceLoader().registerProvider(new FhirLibrarySourceProvider());
+
+        CqlTranslator translator = CqlTranslator.fromFile(directory.resolve(LIBRARY).toFile(), modelManager, libraryManager, null, options);
+        if (!translator.getErrors().isEmpty()) {
+            throw new IllegalStateException(String.format("Could not translate %s: %s", LIBRARY, translator.getErrors()));
+        }
+        compiledLibrary = translator.getTranslatedLibrary();
+        libraryManager.cacheLibrary(compiledLibrary);
+    }
+
+    private Library gather() {
+        return new DataRequirementsProcessor().gatherDataRequirements(libraryManager, compiledLibrary, options, null, false);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(BenchmarkResources.COLD_FORKS)
+    public Library gatherCold() {
+        return gather();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public Library gatherWarm() {
+        return gather();
+    }
+}
@@ -0,0 +1,149 @@
+package org.cqframework.cql.benchmark;
+
+import org.cqframework.cql.cql2elm.CqlTranslator;
+import org.cqframework.cql.cql2elm.CqlTranslatorOptions;
+import org.cqframework.cql.cql2elm.ElmJsonLibraryReader;
+import org.cqframework.cql.cql2elm.ElmXmlLibraryReader;
+import org.cqframework.cql.cql2elm.LibraryManager;
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.hl7.elm.r1.Library;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ELM JSON and XML serialization and deserialization of the (annotated) ELM of the Examples measures. The
+ * serialization benchmarks do not serialize anything in their setup, so that the cold variants include the
+ * initialization of the serializers.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ElmSerializationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Translated {
+        @Param({"CMS146v2_CQM.cql", "ChlamydiaScreening_CDS.cql", "CMS135_QDM.cql"})
+        public String measure;
+
+        private Library library;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            ModelManager modelManager = new ModelManager();
+            CqlTranslator translator = CqlTranslator.fromText(BenchmarkResources.read("/" + measure), modelManager,
+                    new LibraryManager(modelManager), CqlTranslatorOptions.Options.EnableAnnotations,
+                    CqlTranslatorOptions.Options.EnableLocators);
+            library = translator.toELM();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Serialized {
+        private byte[] json;
+        private byte[] xml;
+
+        @Setup(Level.Trial)
+        public void setup(Translated translated) throws IOException {
+            json = CqlTranslator.convertToJson(translated.library).getBytes(StandardCharsets.UTF_8);
+            xml = CqlTranslator.convertToXml(translated.library).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static ByteArrayOutputStream writeJson(Translated translated) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CqlTranslator.convertToJson(translated.library, out, false);
+        return out;
+    }
+
+    private static ByteArrayOutputStream writeXml(Translated translated) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CqlTranslator.convertToXml(translated.library, out, false);
+        return out;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(BenchmarkResources.COLD_FORKS)
+    public ByteArrayOutputStream serializeJsonCold(Translated translated) throws IOException {
+        return writeJson(translated);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public ByteArrayOutputStream serializeJsonWarm(Translated translated) throws IOException {
+        return writeJson(translated);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(BenchmarkResources.COLD_FORKS)
+    public ByteArrayOutputStream serializeXmlCold(Translated translated) throws IOException {
+        return writeXml(translated);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public ByteArrayOutputStream serializeXmlWarm(Translated translated) throws IOException {
+        return writeXml(translated);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(BenchmarkResources.COLD_FORKS)
+    public Library deserializeJsonCold(Serialized serialized) throws IOException {
+        return ElmJsonLibraryReader.read(new ByteArrayInputStream(serialized.json));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public Library deserializeJsonWarm(Serialized serialized) throws IOException {
+        return ElmJsonLibraryReader.read(new ByteArrayInputStream(serialized.json));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(BenchmarkResources.COLD_FORKS)
+    public Library deserializeXmlCold(Serialized serialized) throws IOException {
+        return ElmXmlLibraryReader.read(new ByteArrayInputStream(serialized.xml));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public Library deserializeXmlWarm(Serialized serialized) throws IOException {
+        return ElmXmlLibraryReader.read(new ByteArrayInputStream(serialized.xml));
+    }
+}
@@ -0,0 +1,42 @@
+package org.cqframework.cql.benchmark;
+
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.cqframework.cql.cql2elm.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading the FHIR 4.0.1 model (reading the model info and building the model) with a new model manager.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ModelLoadBenchmark {
+
+    private static Model loadModel() {
+        return new ModelManager().resolveModel("FHIR", "4.0.1");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(BenchmarkResources.COLD_FORKS)
+    public Model loadFhirCold() {
+        return loadModel();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public Model loadFhirWarm() {
+        return loadModel();
+    }
+}
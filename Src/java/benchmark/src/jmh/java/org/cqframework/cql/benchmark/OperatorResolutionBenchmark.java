@@ -0,0 +1,101 @@
+package org.cqframework.cql.benchmark;
+
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.cqframework.cql.cql2elm.model.CallContext;
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.cqframework.cql.cql2elm.model.Conversion;
+import org.cqframework.cql.cql2elm.model.ConversionMap;
+import org.cqframework.cql.cql2elm.model.OperatorMap;
+import org.cqframework.cql.cql2elm.model.OperatorResolution;
+import org.cqframework.cql.cql2elm.model.SystemModel;
+import org.hl7.cql.model.DataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures OperatorMap.resolveOperator and ConversionMap.findConversion against the System library, as the
+ * translator uses them for each invocation it resolves. Add(Integer, Decimal) only resolves through an implicit
+ * conversion of the Integer argument.
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class OperatorResolutionBenchmark {
+
+    private OperatorMap operatorMap;
+    private ConversionMap conversionMap;
+    private DataType integerType;
+    private DataType decimalType;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SystemModel systemModel = (SystemModel)new ModelManager().resolveModel("System");
+        // As LibraryBuilder does, resolve against an overlay so that the shared System library is not changed
+        CompiledLibrary systemLibrary = systemModel.getSystemLibrary().createOverlay();
+        operatorMap = systemLibrary.getOperatorMap();
+        conversionMap = new ConversionMap();
+        for (Conversion conversion : systemModel.getConversions()) {
+            conversionMap.add(conversion);
+        }
+        for (Conversion conversion : systemLibrary.getConversions()) {
+            conversionMap.add(conversion);
+        }
+        integerType = systemModel.getInteger();
+        decimalType = systemModel.getDecimal();
+    }
+
+    private OperatorResolution resolveOperator() {
+        return operatorMap.resolveOperator(new CallContext(null, "Add", false, false, true, integerType, decimalType),
+                conversionMap);
+    }
+
+    private Conversion findConversion() {
+        return conversionMap.findConversion(integerType, decimalType, true, false, operatorMap);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(BenchmarkResources.COLD_FORKS)
+    public OperatorResolution resolveOperatorCold() {
+        return resolveOperator();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public OperatorResolution resolveOperatorWarm() {
+        return resolveOperator();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(BenchmarkResources.COLD_FORKS)
+    public Conversion findConversionCold() {
+        return findConversion();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public Conversion findConversionWarm() {
+        return findConversion();
+    }
+}
@@ -0,0 +1,69 @@
+package org.cqframework.cql.benchmark;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.cqframework.cql.CqlParserCache;
+import org.cqframework.cql.gen.cqlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lexing and parsing (without translation) of the Examples measures. The cold variant parses with an
+ * empty DFA cache, the warm variant with the DFA cache built up by the previous parses.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"CMS146v2_CQM.cql", "CMS55v1_NQF0495.cql", "ChlamydiaScreening_CDS.cql", "CMS135_QDM.cql"})
+    public String measure;
+
+    private String source;
+    private CqlParserCache parserCache;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        source = BenchmarkResources.read("/" + measure);
+        parserCache = new CqlParserCache();
+    }
+
+    private static ParseTree parse(CqlParserCache parserCache, String source) {
+        CommonTokenStream tokens = new CommonTokenStream(parserCache.createLexer(CharStreams.fromString(source)));
+        cqlParser parser = parserCache.createParser(tokens);
+        parser.setBuildParseTree(true);
+        parser.removeErrorListeners();
+        return parser.library();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(BenchmarkResources.COLD_FORKS)
+    public ParseTree parseCold() {
+        return parse(new CqlParserCache(), source);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public ParseTree parseWarm() {
+        return parse(parserCache, source);
+    }
+}
@@ -0,0 +1,64 @@
+package org.cqframework.cql.benchmark;
+
+import org.cqframework.cql.cql2elm.CqlTranslator;
+import org.cqframework.cql.cql2elm.LibraryManager;
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full translation of the Examples measures. The cold variant translates with new model and library
+ * managers, so it includes loading the models. The warm variant shares a model manager across translations, as a
+ * long-running service would, with a new library manager for each translation.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TranslationBenchmark {
+
+    @Param({"CMS146v2_CQM.cql", "CMS55v1_NQF0495.cql", "ChlamydiaScreening_CDS.cql", "CMS135_QDM.cql"})
+    public String measure;
+
+    private String source;
+    private ModelManager modelManager;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        source = BenchmarkResources.read("/" + measure);
+        modelManager = new ModelManager();
+    }
+
+    private static CqlTranslator translate(ModelManager modelManager, String source) {
+        return CqlTranslator.fromText(source, modelManager, new LibraryManager(modelManager));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(BenchmarkResources.COLD_FORKS)
+    public CqlTranslator translateCold() {
+        return translate(new ModelManager(), source);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public CqlTranslator translateWarm() {
+        return translate(modelManager, source);
+    }
+}
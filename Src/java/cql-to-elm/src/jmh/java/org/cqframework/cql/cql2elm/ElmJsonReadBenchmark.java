@@ -0,0 +1,70 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.serialization.LibraryWrapper;
+import org.hl7.elm.r1.Library;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading the ElmDeserialize test fixtures as LibraryManager used to (through an InputStreamReader and
+ * the mapper), and with ElmJsonLibraryReader's stream and byte array reads. All three use the same mapper
+ * configuration, so this is a baseline for changes to the ELM JSON read path rather than a comparison of faster
+ * readers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ElmJsonReadBenchmark {
+    private static final String FIXTURES = "/org/cqframework/cql/cql2elm/ElmDeserialize/";
+
+    @Param({"ANCFHIRDummy.json", "ANCFHIRTerminologyDummy.json", "fhir/AdultOutpatientEncounters_FHIR4-2.0.000.json",
+            "qdm/Adult_Outpatient_Encounters-1.2.000.json"})
+    public String fixture;
+
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        try (InputStream inputStream = ElmJsonReadBenchmark.class.getResourceAsStream(FIXTURES + fixture)) {
+            if (inputStream == null) {
+                throw new IllegalStateException(String.format("Could not find %s", fixture));
+            }
+            content = inputStream.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public Library mapperReader() throws IOException {
+        return ElmJsonLibraryReader.mapper.readValue(new InputStreamReader(new ByteArrayInputStream(content)),
+                LibraryWrapper.class).getLibrary();
+    }
+
+    @Benchmark
+    public Library readInputStream() throws IOException {
+        return ElmJsonLibraryReader.read(new ByteArrayInputStream(content));
+    }
+
+    @Benchmark
+    public Library readBytes() throws IOException {
+        return ElmJsonLibraryReader.read(content);
+    }
+}
@@ -0,0 +1,34 @@
+package org.cqframework.cql.cql2elm;
+
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A library source provider that fetches CQL sources asynchronously, such as from a remote artifact repository. The
+ * library manager fetches the sources of the libraries a library includes concurrently when it is configured to
+ * (see LibraryManager.setMaxConcurrentFetches). An async provider can be registered wherever a provider can, and
+ * an existing provider can be made asynchronous with AsyncLibrarySourceProviderAdapter.
+ */
+public interface AsyncLibrarySourceProvider extends LibrarySourceProvider {
+
+    /**
+     * Starts fetching the CQL source of the given library.
+     * @return A future of the source, completed with null if the provider does not have the library
+     */
+    CompletableFuture<InputStream> getLibrarySourceAsync(VersionedIdentifier libraryIdentifier);
+
+    default InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) {
+        try {
+            return getLibrarySourceAsync(libraryIdentifier).join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.cqframework.cql.cql2elm;
+
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Makes a (blocking) library source provider asynchronous by calling it on an executor. The source is read on the
+ * executor as well, so a fetch is complete once its future is.
+ */
+public class AsyncLibrarySourceProviderAdapter implements AsyncLibrarySourceProvider, NamespaceAware {
+    private final LibrarySourceProvider provider;
+    private final Executor executor;
+
+    public AsyncLibrarySourceProviderAdapter(LibrarySourceProvider provider, Executor executor) {
+        if (provider == null) {
+            throw new IllegalArgumentException("provider is null.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null.");
+        }
+
+        this.provider = provider;
+        this.executor = executor;
+    }
+
+    public LibrarySourceProvider getProvider() {
+        return provider;
+    }
+
+    @Override
+    public void setNamespaceManager(NamespaceManager namespaceManager) {
+        if (provider instanceof NamespaceAware) {
+            ((NamespaceAware)provider).setNamespaceManager(namespaceManager);
+        }
+    }
+
+    @Override
+    public CompletableFuture<InputStream> getLibrarySourceAsync(VersionedIdentifier libraryIdentifier) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream source = provider.getLibrarySource(libraryIdentifier)) {
+                return source != null ? new ByteArrayInputStream(source.readAllBytes()) : null;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+}
@@ -0,0 +1,34 @@
+package org.cqframework.cql.cql2elm;
+
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A model info provider that loads model infos asynchronously, such as from a remote artifact repository. The model
+ * manager loads the model infos of the models a library uses concurrently when it is configured to (see
+ * ModelManager.setMaxConcurrentFetches). An async provider can be registered wherever a provider can, and an
+ * existing provider can be made asynchronous with AsyncModelInfoProviderAdapter.
+ */
+public interface AsyncModelInfoProvider extends ModelInfoProvider {
+
+    /**
+     * Starts loading the model info of the given model.
+     * @return A future of the model info, completed with null if the provider does not have the model
+     */
+    CompletableFuture<ModelInfo> loadAsync(VersionedIdentifier modelIdentifier);
+
+    default ModelInfo load(VersionedIdentifier modelIdentifier) {
+        try {
+            return loadAsync(modelIdentifier).join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.cqframework.cql.cql2elm;
+
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Makes a (blocking) model info provider asynchronous by calling it on an executor.
+ */
+public class AsyncModelInfoProviderAdapter implements AsyncModelInfoProvider {
+    private final ModelInfoProvider provider;
+    private final Executor executor;
+
+    public AsyncModelInfoProviderAdapter(ModelInfoProvider provider, Executor executor) {
+        if (provider == null) {
+            throw new IllegalArgumentException("provider is null.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null.");
+        }
+
+        this.provider = provider;
+        this.executor = executor;
+    }
+
+    public ModelInfoProvider getProvider() {
+        return provider;
+    }
+
+    @Override
+    public CompletableFuture<ModelInfo> loadAsync(VersionedIdentifier modelIdentifier) {
+        return CompletableFuture.supplyAsync(() -> provider.load(modelIdentifier), executor);
+    }
+}
@@ -0,0 +1,448 @@
+package org.cqframework.cql.cql2elm;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.cqframework.cql.CqlParserCache;
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.cqframework.cql.cql2elm.preprocessor.CqlPreprocessorVisitor;
+import org.cqframework.cql.cql2elm.preprocessor.IncludeDefinitionInfo;
+import org.cqframework.cql.cql2elm.preprocessor.LibraryInfo;
+import org.cqframework.cql.gen.cqlLexer;
+import org.cqframework.cql.gen.cqlParser;
+import org.fhir.ucum.UcumService;
+import org.hl7.elm.r1.IncludeDef;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Translates a set of CQL files concurrently. This is the batch mode (--threads) of the CqlTranslator command line.
+ *
+ * The translations of the files in a directory share a ModelManager, which resolves model infos from that directory
+ * as the translation of a single file does. The model managers of directories without model info files share a
+ * ModelCache, so each model is built once for all of them. A library that is translated
+ * successfully is shared with the translations that include it. This covers both the input libraries and the
+ * libraries compiled while resolving includes, such as FHIRHelpers. Shared libraries are frozen, and each
+ * translation uses them through an overlay (see CompiledLibrary.createOverlay), so concurrent translations never
+ * modify them.
+ *
+ * Libraries are only shared within the directory they were loaded from, because includes are resolved relative to
+ * the directory of the including file. Input files are translated in dependency order: a file starts once every
+ * input file it includes (in the same directory) has finished. Files that are part of an include cycle are
+ * translated last, so the translator reports the cycle. The output for each file is printed as a unit when the file
+ * completes, followed by its elapsed time. A throughput summary is printed at the end.
+ */
+public class BatchTranslator {
+    public static class Result {
+        private final Path input;
+        private final boolean success;
+        private final long elapsedNanos;
+
+        public Result(Path input, boolean success, long elapsedNanos) {
+            this.input = input;
+            this.success = success;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public Path getInput() {
+            return input;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    private static class Input {
+        private final Path path;
+        private final Path output;
+        private final Path directory;
+        private String libraryName;
+        private final List<IncludeDefinitionInfo> includes = new ArrayList<>();
+        private final List<Input> dependents = new ArrayList<>();
+        private int pendingDependencies;
+        private boolean started;
+
+        Input(Path path, Path output) {
+            this.path = path;
+            this.output = output;
+            this.directory = path.getParent();
+        }
+    }
+
+    private final int threads;
+    private final CqlTranslator.Format format;
+    private final CqlTranslatorOptions options;
+    private final PrintStream err;
+    // Models built for directories without model info files of their own
+    private final ModelCache modelCache = new ModelCache();
+    // Model managers by source directory
+    private final Map<Path, ModelManager> modelManagers = new ConcurrentHashMap<>();
+    private final UcumService ucumService;
+    private boolean compact;
+    private CompilationListener compilationListener;
+    private CompiledLibraryCache compiledLibraryCache;
+    // Successfully compiled (frozen) libraries, by source directory and library path
+    private final Map<Path, Map<String, CompiledLibrary>> compiledLibraries = new ConcurrentHashMap<>();
+    // Library sources by source directory, indexed once rather than listed for each library each file resolves
+    private final Map<Path, LibrarySourceProvider> librarySourceProviders = new ConcurrentHashMap<>();
+
+    public BatchTranslator(int threads, CqlTranslator.Format format, CqlTranslatorOptions options, PrintStream err) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1.");
+        }
+
+        this.threads = threads;
+        this.format = format;
+        this.options = options;
+        this.err = err;
+        this.ucumService = CqlTranslator.createUcumService(options, err);
+    }
+
+    /**
+     * Returns the model manager for the files in the given directory, or null if no file in the directory has been
+     * translated
+     */
+    public ModelManager getModelManager(Path directory) {
+        return modelManagers.get(directory);
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Whether the output is written without indentation
+     */
+    public BatchTranslator withCompact(boolean compact) {
+        this.compact = compact;
+        return this;
+    }
+
+    public CompilationListener getCompilationListener() {
+        return compilationListener;
+    }
+
+    /**
+     * A listener to be notified of the phases of the compilations, which must be thread-safe if threads is more
+     * than 1
+     */
+    public BatchTranslator withCompilationListener(CompilationListener compilationListener) {
+        this.compilationListener = compilationListener;
+        return this;
+    }
+
+    public CompiledLibraryCache getCompiledLibraryCache() {
+        return compiledLibraryCache;
+    }
+
+    /**
+     * A persistent cache of compiled libraries, used by the library manager of each translation (see
+     * LibraryManager.setCompiledLibraryCache)
+     */
+    public BatchTranslator withCompiledLibraryCache(CompiledLibraryCache compiledLibraryCache) {
+        this.compiledLibraryCache = compiledLibraryCache;
+        return this;
+    }
+
+    /**
+     * Translates each input file to the corresponding output file.
+     * @param inOutMap The output file for each input file
+     * @return The result for each file, in order of completion
+     */
+    public List<Result> translate(Map<Path, Path> inOutMap) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+
+        List<Input> inputs = new ArrayList<>();
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Map.Entry<Path, Path> inOut : inOutMap.entrySet()) {
+            Input input = new Input(inOut.getKey(), inOut.getValue());
+            readLibraryInfo(input);
+            inputs.add(input);
+            directories.add(input.directory);
+        }
+
+        for (Path directory : directories) {
+            modelManagers.computeIfAbsent(directory, this::createModelManager);
+            librarySourceProviders.computeIfAbsent(directory, d -> new IndexedLibrarySourceProvider(d, false, false));
+        }
+
+        buildDependencies(inputs);
+
+        List<Result> results = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<Map.Entry<Input, Result>> completionService = new ExecutorCompletionService<>(executor);
+            int running = 0;
+            for (Input input : inputs) {
+                if (input.pendingDependencies == 0) {
+                    submit(completionService, input);
+                    running++;
+                }
+            }
+
+            while (running > 0 || results.size() < inputs.size()) {
+                if (running == 0) {
+                    // Everything left is part of (or depends on) an include cycle, translate it anyway to report the errors
+                    for (Input input : inputs) {
+                        if (!input.started) {
+                            submit(completionService, input);
+                            running++;
+                        }
+                    }
+                }
+
+                Map.Entry<Input, Result> completed = take(completionService);
+                running--;
+                results.add(completed.getValue());
+                for (Input dependent : completed.getKey().dependents) {
+                    dependent.pendingDependencies--;
+                    if (dependent.pendingDependencies == 0 && !dependent.started) {
+                        submit(completionService, dependent);
+                        running++;
+                    }
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        reportSummary(results, System.nanoTime() - start);
+        return results;
+    }
+
+    private ModelManager createModelManager(Path directory) {
+        ModelManager modelManager = CqlTranslator.createModelManager(options, hasModelInfo(directory) ? null : modelCache);
+        modelManager.getModelInfoLoader().registerModelInfoProvider(new DefaultModelInfoProvider(directory), true);
+        return modelManager;
+    }
+
+    // Whether the directory has model info files (see DefaultModelInfoProvider), whose models are not shared
+    private static boolean hasModelInfo(Path directory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*-modelinfo*.xml")) {
+            return files.iterator().hasNext();
+        }
+        catch (IOException e) {
+            return true;
+        }
+    }
+
+    private void submit(CompletionService<Map.Entry<Input, Result>> completionService, Input input) {
+        input.started = true;
+        completionService.submit(() -> new AbstractMap.SimpleEntry<>(input, translate(input)));
+    }
+
+    private Map.Entry<Input, Result> take(CompletionService<Map.Entry<Input, Result>> completionService) throws InterruptedException {
+        try {
+            return completionService.take().get();
+        }
+        catch (ExecutionException e) {
+            // translate(Input) reports its own failures
+            throw new IllegalStateException("Unexpected failure in batch translation.", e.getCause());
+        }
+    }
+
+    /*
+    Reads the name and includes of the input library. Only the library header, the definitions before the first
+    statement, is parsed, since the includes are all there and the translation parses the whole file.
+     */
+    private void readLibraryInfo(Input input) throws IOException {
+        CqlParserCache parserCache = CqlParserCache.getSharedInstance();
+        try (InputStream is = Files.newInputStream(input.path)) {
+            cqlLexer lexer = parserCache.createLexer(CharStreams.fromStream(is));
+            lexer.removeErrorListeners();
+            CommonTokenStream tokens = new CommonTokenStream(lexer);
+            cqlParser parser = parserCache.createParser(tokens);
+            parser.removeErrorListeners();
+
+            CqlPreprocessorVisitor preprocessor = new CqlPreprocessorVisitor();
+            preprocessor.setTokenStream(tokens);
+            if (isKeyword(parser, tokens.LA(1), "library")) {
+                preprocessor.visit(parser.libraryDefinition());
+            }
+            while (tokens.LA(1) != Token.EOF && !isKeyword(parser, tokens.LA(1), "define")
+                    && !isKeyword(parser, tokens.LA(1), "context")) {
+                int index = tokens.index();
+                preprocessor.visit(parser.definition());
+                if (tokens.index() == index) {
+                    // Nothing could be parsed, the translator reports the error
+                    break;
+                }
+            }
+
+            LibraryInfo libraryInfo = preprocessor.getLibraryInfo();
+            input.libraryName = libraryInfo.getLibraryName();
+            input.includes.addAll(libraryInfo.getIncludeDefinitions());
+        }
+        catch (RuntimeException e) {
+            // The library cannot be read, it is translated without dependencies so the translator reports the errors
+            input.libraryName = null;
+            input.includes.clear();
+        }
+    }
+
+    private static boolean isKeyword(cqlParser parser, int tokenType, String keyword) {
+        return ("'" + keyword + "'").equals(parser.getVocabulary().getLiteralName(tokenType));
+    }
+
+    private void buildDependencies(List<Input> inputs) {
+        Map<Path, Map<String, List<Input>>> inputsByName = new HashMap<>();
+        for (Input input : inputs) {
+            if (input.libraryName != null) {
+                inputsByName.computeIfAbsent(input.directory, d -> new HashMap<>())
+                        .computeIfAbsent(input.libraryName, n -> new ArrayList<>()).add(input);
+            }
+        }
+
+        for (Input input : inputs) {
+            Map<String, List<Input>> directoryInputs = inputsByName.getOrDefault(input.directory, Collections.emptyMap());
+            Set<Input> dependencies = new LinkedHashSet<>();
+            for (IncludeDefinitionInfo include : input.includes) {
+                for (Input dependency : directoryInputs.getOrDefault(include.getName(), Collections.emptyList())) {
+                    if (dependency != input) {
+                        dependencies.add(dependency);
+                    }
+                }
+            }
+
+            for (Input dependency : dependencies) {
+                dependency.dependents.add(input);
+                input.pendingDependencies++;
+            }
+        }
+    }
+
+    private Result translate(Input input) throws UnsupportedEncodingException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream log = new PrintStream(buffer, true, "UTF-8");
+        log.println("================================================================================");
+        log.printf("TRANSLATE %s%n", input.path);
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            ModelManager modelManager = modelManagers.get(input.directory);
+            LibraryManager libraryManager = new LibraryManager(modelManager).withCompilationListener(compilationListener)
+                    .withCompiledLibraryCache(compiledLibraryCache);
+            libraryManager.getLibrarySourceLoader().registerProvider(librarySourceProviders.get(input.directory));
+            libraryManager.getLibrarySourceLoader().registerProvider(new FhirLibrarySourceProvider());
+            Set<String> shared = shareCompiledLibraries(input, libraryManager);
+
+            CqlTranslator translator = CqlTranslator.fromFile(input.path.toFile(), modelManager, libraryManager, ucumService, options);
+            success = CqlTranslator.writeELM(translator, input.output, format, options, compact, log);
+            if (success) {
+                publishCompiledLibraries(input, translator, libraryManager, shared);
+            }
+        }
+        catch (Exception e) {
+            log.println("Translation failed due to errors:");
+            e.printStackTrace(log);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        log.printf("Elapsed: %d ms%n", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        log.println();
+
+        synchronized (err) {
+            err.print(buffer.toString("UTF-8"));
+        }
+
+        return new Result(input.path, success, elapsed);
+    }
+
+    /*
+    Makes the compiled libraries the input (transitively) includes available to its library manager, and returns
+    the paths of the libraries that were shared.
+     */
+    private Set<String> shareCompiledLibraries(Input input, LibraryManager libraryManager) {
+        Map<String, CompiledLibrary> directoryLibraries = compiledLibraries.getOrDefault(input.directory, Collections.emptyMap());
+        Set<String> shared = new HashSet<>();
+        Set<String> visited = new HashSet<>();
+        Deque<VersionedIdentifier> includes = new ArrayDeque<>();
+        for (IncludeDefinitionInfo include : input.includes) {
+            // Namespaces are not used by the command line, a namespace-qualified include is resolved by the translation
+            if (include.getNamespaceName() == null) {
+                includes.add(new VersionedIdentifier().withId(include.getName()).withVersion(include.getVersion()));
+            }
+        }
+
+        while (!includes.isEmpty()) {
+            VersionedIdentifier include = includes.pop();
+            if (!visited.add(include.getId())) {
+                continue;
+            }
+
+            CompiledLibrary library = directoryLibraries.get(include.getId());
+            if (library == null || (include.getVersion() != null
+                    && !include.getVersion().equals(library.getIdentifier().getVersion()))) {
+                continue;
+            }
+
+            libraryManager.cacheLibrary(library.createOverlay());
+            shared.add(include.getId());
+            if (library.getLibrary().getIncludes() != null) {
+                for (IncludeDef includeDef : library.getLibrary().getIncludes().getDef()) {
+                    includes.add(new VersionedIdentifier().withId(includeDef.getPath()).withVersion(includeDef.getVersion()));
+                }
+            }
+        }
+
+        return shared;
+    }
+
+    private void publishCompiledLibraries(Input input, CqlTranslator translator, LibraryManager libraryManager, Set<String> shared) {
+        Map<String, CompiledLibrary> directoryLibraries = compiledLibraries.computeIfAbsent(input.directory, d -> new ConcurrentHashMap<>());
+        for (Map.Entry<String, CompiledLibrary> entry : libraryManager.getCompiledLibraries().entrySet()) {
+            if (!shared.contains(entry.getKey())) {
+                publish(directoryLibraries, entry.getKey(), entry.getValue());
+            }
+        }
+
+        CompiledLibrary library = translator.getTranslatedLibrary();
+        if (library != null && library.getIdentifier() != null && library.getIdentifier().getId() != null) {
+            publish(directoryLibraries, NamespaceManager.getPath(library.getIdentifier().getSystem(), library.getIdentifier().getId()), library);
+        }
+    }
+
+    private void publish(Map<String, CompiledLibrary> directoryLibraries, String libraryPath, CompiledLibrary library) {
+        // The translation that compiled the library is complete, so nothing else is modifying it
+        library.freeze();
+        directoryLibraries.putIfAbsent(libraryPath, library);
+    }
+
+    private void reportSummary(List<Result> results, long elapsedNanos) {
+        int succeeded = 0;
+        long translationNanos = 0;
+        for (Result result : results) {
+            if (result.isSuccess()) {
+                succeeded++;
+            }
+            translationNanos += result.getElapsedNanos();
+        }
+
+        double seconds = elapsedNanos / 1e9;
+        synchronized (err) {
+            err.println("================================================================================");
+            err.printf("Translated %d libraries (%d succeeded, %d failed) in %.2f s using %d threads%n",
+                    results.size(), succeeded, results.size() - succeeded, seconds, threads);
+            err.printf("Throughput: %.2f libraries/s, average translation time: %d ms%n",
+                    seconds > 0 ? results.size() / seconds : 0.0,
+                    results.isEmpty() ? 0 : TimeUnit.NANOSECONDS.toMillis(translationNanos / results.size()));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.CallContext;
+import org.cqframework.cql.cql2elm.model.OperatorResolution;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+/**
+ * Receives notifications of the phases of compilations, e.g. to time them. A listener is set on a LibraryManager
+ * (see LibraryManager.setCompilationListener) and is notified of the compilations using that library manager.
+ *
+ * Phases nest: the phases of a compilation are reported within its Compilation phase, and as included libraries are
+ * compiled through the same library manager, the compilation of an included library is reported within the
+ * LibraryResolution phase of the including library. Notifications are made on the compiling thread, so a listener
+ * shared by concurrent compilations must be thread-safe.
+ */
+public interface CompilationListener {
+
+    enum Phase {
+        /** The compilation of a library, from lexing to translation */
+        Compilation,
+        /** Tokenizing the CQL source */
+        Lexing,
+        /** Building the parse tree */
+        Parsing,
+        /** Gathering the library and definition information used by the translation (CqlPreprocessorVisitor) */
+        Preprocessing,
+        /** Semantic analysis and building the ELM (Cql2ElmVisitor) */
+        Translation,
+        /** Building the narrative of an annotated definition, reported within Translation */
+        Annotation,
+        /** Resolving (and if necessary compiling) an included library, reported within Translation */
+        LibraryResolution,
+        /** Resolving a model used by the library, reported within Translation */
+        ModelLoading,
+        /** Writing the ELM of a translated library */
+        Serialization
+    }
+
+    /**
+     * Called when a phase starts.
+     * @param identifier The library the phase is for, the included library for LibraryResolution, or the model for
+     *                   ModelLoading. For Compilation through Translation, this is the source identifier given to
+     *                   the compiler, as the library identifier is not known until the library is translated.
+     */
+    default void phaseStarted(Phase phase, VersionedIdentifier identifier) {
+    }
+
+    /**
+     * Called when a phase ends, including when it ends with an exception.
+     * @param identifier As for phaseStarted, except that for Compilation, this is the identifier of the compiled
+     *                   library if the library declares one.
+     */
+    default void phaseEnded(Phase phase, VersionedIdentifier identifier) {
+    }
+
+    /**
+     * Called when a call to an operator has been resolved during translation.
+     * @param resolution The resolution, or null if the call could not be resolved
+     */
+    default void operatorResolved(CallContext callContext, OperatorResolution resolution) {
+    }
+}
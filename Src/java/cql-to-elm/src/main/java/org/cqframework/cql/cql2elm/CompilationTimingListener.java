@@ -0,0 +1,254 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.CallContext;
+import org.cqframework.cql.cql2elm.model.OperatorResolution;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A CompilationListener that times the phases of compilations and reports the timings by library. For each library,
+ * the time spent in and the memory allocated by each phase are reported, along with the time taken to resolve each
+ * included library and the number of operator resolutions. The timings of a phase include those of the phases
+ * nested within it, and the timings of a library that is compiled more than once are combined.
+ *
+ * Allocation is estimated from the bytes allocated by the compiling thread, and is only reported if the JVM
+ * supports measuring it (com.sun.management.ThreadMXBean).
+ */
+public class CompilationTimingListener implements CompilationListener {
+
+    public static class PhaseTimings {
+        private long count;
+        private long nanos;
+        private long allocatedBytes;
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return The estimated number of bytes allocated during the phase, or -1 if allocation is not measured
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        private void add(long count, long nanos, long allocatedBytes) {
+            this.count += count;
+            this.nanos += nanos;
+            this.allocatedBytes = allocatedBytes < 0 ? -1 : this.allocatedBytes + allocatedBytes;
+        }
+    }
+
+    public static class LibraryTimings {
+        private final Map<Phase, PhaseTimings> phases = new EnumMap<>(Phase.class);
+        private final Map<String, Long> includes = new LinkedHashMap<>();
+        private long operatorResolutions;
+        private long unresolvedOperators;
+
+        public Map<Phase, PhaseTimings> getPhases() {
+            return Collections.unmodifiableMap(phases);
+        }
+
+        /**
+         * @return The time taken to resolve each included library, in nanoseconds, by library name
+         */
+        public Map<String, Long> getIncludes() {
+            return Collections.unmodifiableMap(includes);
+        }
+
+        public long getOperatorResolutions() {
+            return operatorResolutions;
+        }
+
+        public long getUnresolvedOperators() {
+            return unresolvedOperators;
+        }
+
+        private void addPhase(Phase phase, long count, long nanos, long allocatedBytes) {
+            phases.computeIfAbsent(phase, p -> new PhaseTimings()).add(count, nanos, allocatedBytes);
+        }
+
+        private LibraryTimings merge(LibraryTimings other) {
+            for (Map.Entry<Phase, PhaseTimings> entry : other.phases.entrySet()) {
+                addPhase(entry.getKey(), entry.getValue().count, entry.getValue().nanos, entry.getValue().allocatedBytes);
+            }
+            for (Map.Entry<String, Long> entry : other.includes.entrySet()) {
+                includes.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+            operatorResolutions += other.operatorResolutions;
+            unresolvedOperators += other.unresolvedOperators;
+            return this;
+        }
+    }
+
+    private static class Frame {
+        private final Phase phase;
+        private final long startNanos;
+        private final long startAllocatedBytes;
+        // The timings of the library being compiled, for Compilation frames
+        private final LibraryTimings timings;
+
+        Frame(Phase phase, long startNanos, long startAllocatedBytes) {
+            this.phase = phase;
+            this.startNanos = startNanos;
+            this.startAllocatedBytes = startAllocatedBytes;
+            this.timings = phase == Phase.Compilation ? new LibraryTimings() : null;
+        }
+    }
+
+    private final ThreadLocal<Deque<Frame>> frames = ThreadLocal.withInitial(ArrayDeque::new);
+    // Guarded by this
+    private final Map<String, LibraryTimings> libraries = new LinkedHashMap<>();
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    public CompilationTimingListener() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemoryEnabled()) {
+            threadMXBean = (com.sun.management.ThreadMXBean)bean;
+        }
+        else {
+            threadMXBean = null;
+        }
+    }
+
+    @Override
+    public void phaseStarted(Phase phase, VersionedIdentifier identifier) {
+        frames.get().push(new Frame(phase, System.nanoTime(), getAllocatedBytes()));
+    }
+
+    @Override
+    public void phaseEnded(Phase phase, VersionedIdentifier identifier) {
+        Deque<Frame> stack = frames.get();
+        Frame frame = null;
+        // Unwind to the matching frame, so that an unmatched start does not affect the timings of enclosing phases
+        while (frame == null && !stack.isEmpty()) {
+            Frame top = stack.pop();
+            if (top.phase == phase) {
+                frame = top;
+            }
+        }
+
+        if (frame == null) {
+            return;
+        }
+
+        long nanos = System.nanoTime() - frame.startNanos;
+        long allocatedBytes = threadMXBean != null ? getAllocatedBytes() - frame.startAllocatedBytes : -1;
+        Frame compilation = getCompilation(stack);
+        if (phase == Phase.Compilation) {
+            frame.timings.addPhase(phase, 1, nanos, allocatedBytes);
+            record(identifier, frame.timings);
+        }
+        else if (compilation != null) {
+            compilation.timings.addPhase(phase, 1, nanos, allocatedBytes);
+            if (phase == Phase.LibraryResolution) {
+                compilation.timings.includes.merge(getName(identifier), nanos, Long::sum);
+            }
+        }
+        else {
+            LibraryTimings timings = new LibraryTimings();
+            timings.addPhase(phase, 1, nanos, allocatedBytes);
+            record(identifier, timings);
+        }
+    }
+
+    @Override
+    public void operatorResolved(CallContext callContext, OperatorResolution resolution) {
+        Frame compilation = getCompilation(frames.get());
+        if (compilation != null) {
+            compilation.timings.operatorResolutions++;
+            if (resolution == null) {
+                compilation.timings.unresolvedOperators++;
+            }
+        }
+    }
+
+    /**
+     * @return A snapshot of the timings reported so far, by library name, in the order the libraries were first
+     * reported. The snapshot is not changed by later reports.
+     */
+    public synchronized Map<String, LibraryTimings> getLibraryTimings() {
+        Map<String, LibraryTimings> result = new LinkedHashMap<>();
+        for (Map.Entry<String, LibraryTimings> entry : libraries.entrySet()) {
+            result.put(entry.getKey(), new LibraryTimings().merge(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    public synchronized void clear() {
+        libraries.clear();
+    }
+
+    public void printReport(PrintStream out) {
+        Map<String, LibraryTimings> timings = getLibraryTimings();
+        out.println("================================================================================");
+        out.println("COMPILATION TIMINGS (phase times include nested phases)");
+        for (Map.Entry<String, LibraryTimings> library : timings.entrySet()) {
+            out.println(library.getKey());
+            for (Map.Entry<Phase, PhaseTimings> phase : library.getValue().phases.entrySet()) {
+                PhaseTimings phaseTimings = phase.getValue();
+                if (phaseTimings.allocatedBytes >= 0) {
+                    out.printf("  %-20s %6d %12.2f ms %10.1f MB%n", phase.getKey(), phaseTimings.count,
+                            toMillis(phaseTimings.nanos), phaseTimings.allocatedBytes / (1024.0 * 1024.0));
+                }
+                else {
+                    out.printf("  %-20s %6d %12.2f ms%n", phase.getKey(), phaseTimings.count,
+                            toMillis(phaseTimings.nanos));
+                }
+            }
+            for (Map.Entry<String, Long> include : library.getValue().includes.entrySet()) {
+                out.printf("  include %s: %.2f ms%n", include.getKey(), toMillis(include.getValue()));
+            }
+            if (library.getValue().operatorResolutions > 0) {
+                out.printf("  operator resolutions: %d (%d unresolved)%n", library.getValue().operatorResolutions,
+                        library.getValue().unresolvedOperators);
+            }
+        }
+    }
+
+    private synchronized void record(VersionedIdentifier identifier, LibraryTimings timings) {
+        libraries.merge(getName(identifier), timings, LibraryTimings::merge);
+    }
+
+    private static Frame getCompilation(Deque<Frame> stack) {
+        for (Frame frame : stack) {
+            if (frame.phase == Phase.Compilation) {
+                return frame;
+            }
+        }
+
+        return null;
+    }
+
+    private long getAllocatedBytes() {
+        return threadMXBean != null ? threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double)TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static String getName(VersionedIdentifier identifier) {
+        if (identifier == null || identifier.getId() == null) {
+            return "(anonymous)";
+        }
+
+        String path = NamespaceManager.getPath(identifier.getSystem(), identifier.getId());
+        return identifier.getVersion() != null ? String.format("%s version %s", path, identifier.getVersion()) : path;
+    }
+}
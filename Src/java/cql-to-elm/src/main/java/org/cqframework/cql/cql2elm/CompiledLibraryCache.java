@@ -0,0 +1,593 @@
+package org.cqframework.cql.cql2elm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.cqframework.cql.cql2elm.model.Model;
+import org.hl7.cql.model.*;
+import org.hl7.elm.r1.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent, on-disk cache of compiled libraries, used by the LibraryManager to skip parsing and semantic analysis
+ * of libraries that have not changed since they were last compiled (see LibraryManager.setCompiledLibraryCache).
+ *
+ * Entries are keyed by a hash of the library source, its namespace, the translator options and the translator
+ * version. An entry records the key of each library it includes and the version of each model it uses (including
+ * models whose types it uses only through its includes), and is only used if these still match when it is loaded. Entries are stored as ELM (JSON), together with the data types of the library
+ * definitions, so a cached library can be referenced just like a compiled one. Note that cached libraries carry
+ * result types on their definitions only, not on the expressions within them, and that warnings and messages
+ * reported when the library was compiled are not reported again when it is loaded from the cache.
+ *
+ * The cache can be shared by multiple processes: entries are written to a temporary file and moved into place, so
+ * readers never see a partially written entry. The cache is bounded by the total size of its entries, the least
+ * recently used entries are removed once the bound is exceeded.
+ */
+public class CompiledLibraryCache {
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    // Incremented whenever the format of cache entries changes
+    private static final int FORMAT_VERSION = 2;
+    private static final String ENTRY_EXTENSION = ".json";
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+
+    public CompiledLibraryCache(Path directory) {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    public CompiledLibraryCache(Path directory, long maxSize) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory is null.");
+        }
+
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than zero.");
+        }
+
+        try {
+            Files.createDirectories(directory);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Could not create compiled library cache directory %s.", directory), e);
+        }
+
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of lookups that found an entry.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getStores() {
+        return stores.get();
+    }
+
+    /**
+     * Returns the version of the translator, which is part of every cache key.
+     */
+    public static String getTranslatorVersion() {
+        String version = LibraryBuilder.class.getPackage().getSpecificationVersion();
+        return version != null ? version : "unknown";
+    }
+
+    /**
+     * Computes the cache key for the given library source translated with the given options, in the namespace with
+     * the given URI (or null if the library is not in a namespace).
+     */
+    public String computeKey(String namespaceUri, byte[] source, CqlTranslatorOptions options) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+
+        digest.update(String.format("%d|%s|%s|%s|", FORMAT_VERSION, getTranslatorVersion(),
+                namespaceUri != null ? namespaceUri : "", describe(options)).getBytes(StandardCharsets.UTF_8));
+        digest.update(source);
+
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest()) {
+            result.append(String.format("%02x", b));
+        }
+
+        return result.toString();
+    }
+
+    private static String describe(CqlTranslatorOptions options) {
+        if (options == null) {
+            return "";
+        }
+
+        // Formats and verify-only do not affect the compiled library
+        return String.format("%s|%s|%s|%s|%s|%s|%s", options.getOptions(), options.getValidateUnits(),
+                options.getCompatibilityLevel(), options.getErrorLevel(), options.getSignatureLevel(),
+                options.getAnalyzeDataRequirements(), options.getCollapseDataRequirements());
+    }
+
+    private Path getEntryPath(String key) {
+        return directory.resolve(key + ENTRY_EXTENSION);
+    }
+
+    /**
+     * Returns the cache entry with the given key, or null if there is no such entry.
+     */
+    public Entry get(String key) {
+        Path path = getEntryPath(key);
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        }
+        catch (IOException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        Entry entry;
+        try {
+            JsonNode node = mapper.readTree(content);
+            if (node.path("formatVersion").asInt() != FORMAT_VERSION) {
+                misses.incrementAndGet();
+                return null;
+            }
+            entry = new Entry(node);
+        }
+        catch (IOException | RuntimeException e) {
+            // The entry is unreadable, remove it so it is written again
+            delete(path);
+            misses.incrementAndGet();
+            return null;
+        }
+
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException e) {
+            // The entry may have been evicted concurrently, it is still usable
+        }
+
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Stores the given compiled library.
+     * @param key The cache key of the library source (see computeKey)
+     * @param library The compiled library
+     * @param includeKeys The cache key of each included library, by library path
+     * @param modelManager The model manager the library was compiled with
+     * @return True if the library was stored, false if it cannot be cached (e.g. because the type of one of its
+     * definitions cannot be recorded)
+     */
+    public boolean put(String key, CompiledLibrary library, Map<String, String> includeKeys, ModelManager modelManager) throws IOException {
+        ObjectNode node;
+        try {
+            node = encode(library, includeKeys, modelManager);
+        }
+        catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        Path target = getEntryPath(key);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            Files.write(temp, mapper.writeValueAsBytes(node));
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+
+        stores.incrementAndGet();
+        trim();
+        return true;
+    }
+
+    /**
+     * Removes the least recently used entries until the total size of the cache is within its bound.
+     */
+    public void trim() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        Map<Path, FileTime> accessed = new HashMap<>();
+        long size = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_EXTENSION)) {
+            for (Path path : stream) {
+                try {
+                    size += Files.size(path);
+                    accessed.put(path, Files.getLastModifiedTime(path));
+                    entries.add(path);
+                }
+                catch (IOException e) {
+                    // Removed concurrently
+                }
+            }
+        }
+
+        if (size <= maxSize) {
+            return;
+        }
+
+        entries.sort(Comparator.comparing(accessed::get));
+        for (Path path : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+
+            try {
+                size -= Files.size(path);
+            }
+            catch (IOException e) {
+                continue;
+            }
+            delete(path);
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void clear() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_EXTENSION)) {
+            for (Path path : stream) {
+                delete(path);
+            }
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            // Another process may be using the entry, it will be removed by a later trim
+        }
+    }
+
+    /**
+     * Resolves the models used by the given library, by the name of the model and its local identifier.
+     */
+    private static Map<String, Model> resolveModels(Library library, ModelManager modelManager) {
+        Map<String, Model> result = new HashMap<>();
+        if (library.getUsings() != null) {
+            for (UsingDef usingDef : library.getUsings().getDef()) {
+                Model model = null;
+                try {
+                    model = modelManager.resolveModelByUri(usingDef.getUri());
+                }
+                catch (IllegalArgumentException e) {
+                    // Not loaded yet
+                }
+
+                if (model == null) {
+                    model = modelManager.resolveModel(new VersionedIdentifier()
+                            .withId(usingDef.getLocalIdentifier()).withVersion(usingDef.getVersion()));
+                }
+
+                result.put(usingDef.getLocalIdentifier(), model);
+                result.put(model.getModelInfo().getName(), model);
+            }
+        }
+
+        return result;
+    }
+
+    private static ObjectNode encode(CompiledLibrary compiledLibrary, Map<String, String> includeKeys, ModelManager modelManager) {
+        Library library = compiledLibrary.getLibrary();
+        ObjectNode result = mapper.createObjectNode();
+        result.put("formatVersion", FORMAT_VERSION);
+        result.put("translatorVersion", getTranslatorVersion());
+
+        ObjectNode models = result.putObject("models");
+        Map<String, Model> usedModels = resolveModels(library, modelManager);
+        for (Map.Entry<String, Model> entry : usedModels.entrySet()) {
+            models.put(entry.getKey(), entry.getValue().getModelInfo().getVersion());
+        }
+
+        ObjectNode includes = result.putObject("includes");
+        for (Map.Entry<String, String> entry : includeKeys.entrySet()) {
+            includes.put(entry.getKey(), entry.getValue());
+        }
+
+        ObjectNode types = result.putObject("types");
+        if (library.getCodeSystems() != null) {
+            ArrayNode codeSystems = types.putArray("codeSystems");
+            for (CodeSystemDef def : library.getCodeSystems().getDef()) {
+                codeSystems.add(encodeType(def.getResultType()));
+            }
+        }
+        if (library.getValueSets() != null) {
+            ArrayNode valueSets = types.putArray("valueSets");
+            for (ValueSetDef def : library.getValueSets().getDef()) {
+                valueSets.add(encodeType(def.getResultType()));
+            }
+        }
+        if (library.getCodes() != null) {
+            ArrayNode codes = types.putArray("codes");
+            for (CodeDef def : library.getCodes().getDef()) {
+                codes.add(encodeType(def.getResultType()));
+            }
+        }
+        if (library.getConcepts() != null) {
+            ArrayNode concepts = types.putArray("concepts");
+            for (ConceptDef def : library.getConcepts().getDef()) {
+                concepts.add(encodeType(def.getResultType()));
+            }
+        }
+        if (library.getParameters() != null) {
+            ArrayNode parameters = types.putArray("parameters");
+            for (ParameterDef def : library.getParameters().getDef()) {
+                parameters.add(encodeType(def.getResultType()));
+            }
+        }
+        if (library.getStatements() != null) {
+            ArrayNode statements = types.putArray("statements");
+            for (ExpressionDef def : library.getStatements().getDef()) {
+                ObjectNode statement = statements.addObject();
+                statement.set("type", encodeType(def.getResultType()));
+                if (def instanceof FunctionDef) {
+                    ArrayNode operands = statement.putArray("operands");
+                    for (OperandDef operand : ((FunctionDef)def).getOperand()) {
+                        operands.add(encodeType(operand.getResultType()));
+                    }
+                }
+            }
+        }
+
+        // Definitions may have types of models the library does not use itself, such as the result of an expression
+        // of an included library, which are recorded so that they can be resolved when the entry is read
+        for (JsonNode namespace : types.findValues("namespace")) {
+            if (namespace.isTextual() && !models.has(namespace.asText())) {
+                models.put(namespace.asText(), modelManager.resolveModel(namespace.asText()).getModelInfo().getVersion());
+            }
+        }
+
+        try {
+            result.put("elm", CqlTranslator.convertToJson(library));
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Could not serialize library %s.", library.getIdentifier().getId()), e);
+        }
+
+        return result;
+    }
+
+    private static JsonNode encodeType(DataType type) {
+        if (type == null) {
+            return NullNode.getInstance();
+        }
+
+        ObjectNode result = mapper.createObjectNode();
+        if (type instanceof ListType) {
+            result.set("list", encodeType(((ListType)type).getElementType()));
+        }
+        else if (type instanceof IntervalType) {
+            result.set("interval", encodeType(((IntervalType)type).getPointType()));
+        }
+        else if (type instanceof ChoiceType) {
+            ArrayNode choice = result.putArray("choice");
+            for (DataType choiceType : ((ChoiceType)type).getTypes()) {
+                choice.add(encodeType(choiceType));
+            }
+        }
+        else if (type instanceof TupleType) {
+            ArrayNode tuple = result.putArray("tuple");
+            for (TupleTypeElement element : ((TupleType)type).getElements()) {
+                ObjectNode elementNode = tuple.addObject();
+                elementNode.put("name", element.getName());
+                elementNode.set("type", encodeType(element.getType()));
+            }
+        }
+        else if (type instanceof NamedType) {
+            result.put("namespace", ((NamedType)type).getNamespace());
+            result.put("name", ((NamedType)type).getName());
+        }
+        else {
+            throw new IllegalArgumentException(String.format("Type %s cannot be cached.", type));
+        }
+
+        return result;
+    }
+
+    /**
+     * A compiled library read from the cache.
+     */
+    public static class Entry {
+        private final JsonNode node;
+        private final Map<String, String> includeKeys;
+
+        private Entry(JsonNode node) {
+            this.node = node;
+            Map<String, String> includeKeys = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.path("includes").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                includeKeys.put(field.getKey(), field.getValue().asText());
+            }
+            this.includeKeys = Collections.unmodifiableMap(includeKeys);
+        }
+
+        /**
+         * Returns the cache key of each library included by this library when it was compiled, by library path.
+         */
+        public Map<String, String> getIncludeKeys() {
+            return includeKeys;
+        }
+
+        /**
+         * Reads the ELM of this entry and restores the types of its definitions.
+         * @throws IllegalArgumentException if the entry does not match the given model manager (e.g. because a
+         * different version of one of its models is loaded)
+         */
+        public CompiledLibrary toCompiledLibrary(ModelManager modelManager) throws IOException {
+            Library library = ElmJsonLibraryReader.read(node.path("elm").asText());
+            Map<String, Model> models = resolveModels(library, modelManager);
+            Iterator<Map.Entry<String, JsonNode>> fields = node.path("models").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                Model model = models.get(field.getKey());
+                if (model == null) {
+                    // A model of the types of the definitions only, which is resolved through the model manager
+                    model = modelManager.resolveModel(field.getKey(), field.getValue().asText(null));
+                    models.put(field.getKey(), model);
+                }
+                if (!Objects.equals(model.getModelInfo().getVersion(), field.getValue().asText(null))) {
+                    throw new IllegalArgumentException(String.format("Model %s does not match the cached library.", field.getKey()));
+                }
+            }
+
+            CompiledLibrary result = new CompiledLibrary();
+            result.setLibrary(library);
+            result.setIdentifier(library.getIdentifier());
+
+            JsonNode types = node.path("types");
+            if (library.getUsings() != null) {
+                for (UsingDef def : library.getUsings().getDef()) {
+                    result.add(def);
+                }
+            }
+            if (library.getIncludes() != null) {
+                for (IncludeDef def : library.getIncludes().getDef()) {
+                    result.add(def);
+                }
+            }
+            if (library.getCodeSystems() != null) {
+                int i = 0;
+                for (CodeSystemDef def : library.getCodeSystems().getDef()) {
+                    def.setResultType(decodeType(types.path("codeSystems").path(i++), models));
+                    result.add(def);
+                }
+            }
+            if (library.getValueSets() != null) {
+                int i = 0;
+                for (ValueSetDef def : library.getValueSets().getDef()) {
+                    def.setResultType(decodeType(types.path("valueSets").path(i++), models));
+                    result.add(def);
+                }
+            }
+            if (library.getCodes() != null) {
+                int i = 0;
+                for (CodeDef def : library.getCodes().getDef()) {
+                    def.setResultType(decodeType(types.path("codes").path(i++), models));
+                    result.add(def);
+                }
+            }
+            if (library.getConcepts() != null) {
+                int i = 0;
+                for (ConceptDef def : library.getConcepts().getDef()) {
+                    def.setResultType(decodeType(types.path("concepts").path(i++), models));
+                    result.add(def);
+                }
+            }
+            if (library.getParameters() != null) {
+                int i = 0;
+                for (ParameterDef def : library.getParameters().getDef()) {
+                    def.setResultType(decodeType(types.path("parameters").path(i++), models));
+                    result.add(def);
+                }
+            }
+            if (library.getStatements() != null) {
+                int i = 0;
+                for (ExpressionDef def : library.getStatements().getDef()) {
+                    JsonNode statement = types.path("statements").path(i++);
+                    def.setResultType(decodeType(statement.path("type"), models));
+                    if (def instanceof FunctionDef) {
+                        int j = 0;
+                        for (OperandDef operand : ((FunctionDef)def).getOperand()) {
+                            operand.setResultType(decodeType(statement.path("operands").path(j++), models));
+                        }
+                    }
+                    result.add(def);
+                }
+            }
+
+            return result;
+        }
+
+        private static DataType decodeType(JsonNode node, Map<String, Model> models) {
+            if (node.isMissingNode()) {
+                throw new IllegalArgumentException("Cached library is missing a definition type.");
+            }
+
+            if (node.isNull()) {
+                return null;
+            }
+
+            if (node.has("list")) {
+                return CanonicalTypes.listOf(decodeType(node.get("list"), models));
+            }
+
+            if (node.has("interval")) {
+                return CanonicalTypes.intervalOf(decodeType(node.get("interval"), models));
+            }
+
+            if (node.has("choice")) {
+                List<DataType> types = new ArrayList<>();
+                for (JsonNode choice : node.get("choice")) {
+                    types.add(decodeType(choice, models));
+                }
+                return CanonicalTypes.choiceOf(types);
+            }
+
+            if (node.has("tuple")) {
+                List<TupleTypeElement> elements = new ArrayList<>();
+                for (JsonNode element : node.get("tuple")) {
+                    elements.add(new TupleTypeElement(element.path("name").asText(), decodeType(element.path("type"), models)));
+                }
+                return CanonicalTypes.tupleOf(elements);
+            }
+
+            String namespace = node.path("namespace").asText(null);
+            String name = node.path("name").asText(null);
+            Model model = namespace != null ? models.get(namespace) : null;
+            DataType result = model != null && name != null ? model.resolveTypeName(name) : null;
+            if (result == null) {
+                throw new IllegalArgumentException(String.format("Could not resolve cached type %s.", name));
+            }
+
+            return result;
+        }
+    }
+}
@@ -425,12 +425,22 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
 
     private Annotation buildAnnotation(Chunk chunk) {
         Annotation annotation = af.createAnnotation();
-        annotation.setS(buildNarrative(chunk));
+        annotation.setS(buildDefinitionNarrative(chunk));
         return annotation;
     }
 
     private void addNarrativeToAnnotation(Annotation annotation, Chunk chunk) {
-        annotation.setS(buildNarrative(chunk));
+        annotation.setS(buildDefinitionNarrative(chunk));
+    }
+
+    private Narrative buildDefinitionNarrative(Chunk chunk) {
+        libraryBuilder.phaseStarted(CompilationListener.Phase.Annotation, libraryBuilder.getLibraryIdentifier());
+        try {
+            return buildNarrative(chunk);
+        }
+        finally {
+            libraryBuilder.phaseEnded(CompilationListener.Phase.Annotation, libraryBuilder.getLibraryIdentifier());
+        }
     }
 
     private Narrative buildNarrative(Chunk chunk) {
@@ -835,15 +845,15 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
 
     @Override
     public Object visitTupleTypeSpecifier(cqlParser.TupleTypeSpecifierContext ctx) {
-        TupleType resultType = new TupleType();
+        List<TupleTypeElement> resultElements = new ArrayList<>();
         TupleTypeSpecifier typeSpecifier = of.createTupleTypeSpecifier();
         for (cqlParser.TupleElementDefinitionContext definitionContext : ctx.tupleElementDefinition()) {
             TupleElementDefinition element = (TupleElementDefinition)visit(definitionContext);
-            resultType.addElement(new TupleTypeElement(element.getName(), element.getElementType().getResultType()));
+            resultElements.add(new TupleTypeElement(element.getName(), element.getElementType().getResultType()));
             typeSpecifier.getElement().add(element);
         }
 
-        typeSpecifier.setResultType(resultType);
+        typeSpecifier.setResultType(CanonicalTypes.tupleOf(resultElements));
 
         return typeSpecifier;
     }
@@ -861,7 +871,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
         if (includeDeprecatedElements) {
             result.getType().addAll(typeSpecifiers);
         }
-        ChoiceType choiceType = new ChoiceType(types);
+        ChoiceType choiceType = CanonicalTypes.choiceOf(types);
         result.setResultType(choiceType);
         return result;
     }
@@ -869,7 +879,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
     @Override
     public IntervalTypeSpecifier visitIntervalTypeSpecifier(cqlParser.IntervalTypeSpecifierContext ctx) {
         IntervalTypeSpecifier result = of.createIntervalTypeSpecifier().withPointType(parseTypeSpecifier(ctx.typeSpecifier()));
-        IntervalType intervalType = new IntervalType(result.getPointType().getResultType());
+        IntervalType intervalType = CanonicalTypes.intervalOf(result.getPointType().getResultType());
         result.setResultType(intervalType);
         return result;
     }
@@ -877,7 +887,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
     @Override
     public ListTypeSpecifier visitListTypeSpecifier(cqlParser.ListTypeSpecifierContext ctx) {
         ListTypeSpecifier result = of.createListTypeSpecifier().withElementType(parseTypeSpecifier(ctx.typeSpecifier()));
-        ListType listType = new ListType(result.getElementType().getResultType());
+        ListType listType = CanonicalTypes.listOf(result.getElementType().getResultType());
         result.setResultType(listType);
         return result;
     }
@@ -903,7 +913,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
             cs.setResultType(libraryBuilder.resolveTypeName("System", "CodeSystem"));
         }
         else {
-            cs.setResultType(new ListType(libraryBuilder.resolveTypeName("System", "Code")));
+            cs.setResultType(CanonicalTypes.listOf(libraryBuilder.resolveTypeName("System", "Code")));
         }
 
         libraryBuilder.addCodeSystem(cs);
@@ -975,7 +985,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
             vs.setResultType(libraryBuilder.resolveTypeName("System", "ValueSet"));
         }
         else {
-            vs.setResultType(new ListType(libraryBuilder.resolveTypeName("System", "Code")));
+            vs.setResultType(CanonicalTypes.listOf(libraryBuilder.resolveTypeName("System", "Code")));
         }
         libraryBuilder.addValueSet(vs);
 
@@ -1057,7 +1067,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
                     else {
                         Retrieve contextRetrieve = of.createRetrieve().withDataType(libraryBuilder.dataTypeToQName(contextType));
                         track(contextRetrieve, ctx);
-                        contextRetrieve.setResultType(new ListType(contextType));
+                        contextRetrieve.setResultType(CanonicalTypes.listOf(contextType));
                         String contextClassIdentifier = ((ClassType) contextType).getIdentifier();
                         if (contextClassIdentifier != null) {
                             contextRetrieve.setTemplateId(contextClassIdentifier);
@@ -1198,13 +1208,13 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
     @Override
     public Object visitTupleSelector(cqlParser.TupleSelectorContext ctx) {
         Tuple tuple = of.createTuple();
-        TupleType tupleType = new TupleType();
+        List<TupleTypeElement> tupleElements = new ArrayList<>();
         for (cqlParser.TupleElementSelectorContext elementContext : ctx.tupleElementSelector()) {
             TupleElement element = (TupleElement)visit(elementContext);
-            tupleType.addElement(new TupleTypeElement(element.getName(), element.getResultType()));
+            tupleElements.add(new TupleTypeElement(element.getName(), element.getResultType()));
             tuple.getElement().add(element);
         }
-        tuple.setResultType(tupleType);
+        tuple.setResultType(CanonicalTypes.tupleOf(tupleElements));
         return tuple;
     }
 
@@ -1275,7 +1285,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
         if (elementTypeSpecifier != null) {
             ListTypeSpecifier listTypeSpecifier = of.createListTypeSpecifier().withElementType(elementTypeSpecifier);
             track(listTypeSpecifier, ctx.typeSpecifier());
-            listType = new ListType(elementTypeSpecifier.getResultType());
+            listType = CanonicalTypes.listOf(elementTypeSpecifier.getResultType());
             listTypeSpecifier.setResultType(listType);
         }
 
@@ -1327,7 +1337,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
         }
 
         if (listType == null) {
-            listType = new ListType(elementType);
+            listType = CanonicalTypes.listOf(elementType);
         }
 
         list.setResultType(listType);
@@ -3487,7 +3497,7 @@ DATETIME
 
         retrieves.add(retrieve);
 
-        retrieve.setResultType(new ListType((DataType) namedType));
+        retrieve.setResultType(CanonicalTypes.listOf((DataType) namedType));
 
         return retrieve;
     }
@@ -3563,7 +3573,7 @@ DATETIME
                             .withDistinct(true);
 
                     Tuple returnExpression = of.createTuple();
-                    TupleType returnType = new TupleType();
+                    List<TupleTypeElement> returnElements = new ArrayList<>();
                     for (AliasedQuerySource aqs : sources) {
                         TupleElement element =
                                 of.createTupleElement()
@@ -3572,11 +3582,13 @@ DATETIME
                         DataType sourceType = aqs.getResultType() instanceof ListType ? ((ListType)aqs.getResultType()).getElementType() : aqs.getResultType();
                         element.getValue().setResultType(sourceType); // Doesn't use the fluent API to avoid casting
                         element.setResultType(element.getValue().getResultType());
-                        returnType.addElement(new TupleTypeElement(element.getName(), element.getResultType()));
+                        returnElements.add(new TupleTypeElement(element.getName(), element.getResultType()));
                         returnExpression.getElement().add(element);
                     }
 
-                    returnExpression.setResultType(queryContext.isSingular() ? returnType : new ListType(returnType));
+                    TupleType returnType = CanonicalTypes.tupleOf(returnElements);
+
+                    returnExpression.setResultType(queryContext.isSingular() ? returnType : CanonicalTypes.listOf(returnType));
                     ret.setExpression(returnExpression);
                     ret.setResultType(returnExpression.getResultType());
                 }
@@ -3846,7 +3858,7 @@ DATETIME
     private boolean isRHSEligibleForDateRangeOptimization(Expression rhs) {
         return
             rhs.getResultType().isSubTypeOf(libraryBuilder.resolveTypeName("System", "DateTime"))
-                || rhs.getResultType().isSubTypeOf(new IntervalType(libraryBuilder.resolveTypeName("System", "DateTime")));
+                || rhs.getResultType().isSubTypeOf(CanonicalTypes.intervalOf(libraryBuilder.resolveTypeName("System", "DateTime")));
 
         // BTR: The only requirement for the optimization is that the expression be of type DateTime or Interval<DateTime>
         // Whether or not the expression can be statically evaluated (literal, in the loose sense of the word) is really
@@ -3976,7 +3988,7 @@ DATETIME
         returnClause.setExpression(parseExpression(ctx.expression()));
         returnClause.setResultType(libraryBuilder.peekQueryContext().isSingular()
                 ? returnClause.getExpression().getResultType()
-                : new ListType(returnClause.getExpression().getResultType()));
+                : CanonicalTypes.listOf(returnClause.getExpression().getResultType()));
 
         return returnClause;
     }
@@ -1,7 +1,10 @@
 package org.cqframework.cql.cql2elm;
 
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.cqframework.cql.CqlParserCache;
 import org.cqframework.cql.cql2elm.model.CompiledLibrary;
 import org.cqframework.cql.cql2elm.preprocessor.CqlPreprocessorVisitor;
 import org.cqframework.cql.elm.tracking.TrackBack;
@@ -157,6 +160,54 @@ public class CqlCompiler {
         }
     }
 
+    LibraryManager getLibraryManager() {
+        return libraryManager;
+    }
+
+    private CompilationListener getCompilationListener() {
+        return libraryManager.getCompilationListener();
+    }
+
+    private void phaseStarted(CompilationListener.Phase phase) {
+        CompilationListener listener = getCompilationListener();
+        if (listener != null) {
+            listener.phaseStarted(phase, sourceInfo);
+        }
+    }
+
+    private void phaseEnded(CompilationListener.Phase phase) {
+        CompilationListener listener = getCompilationListener();
+        if (listener != null) {
+            listener.phaseEnded(phase, sourceInfo);
+        }
+    }
+
+    /*
+    Parses in two stages. The first stage uses SLL prediction, which is much faster than full LL prediction but may
+    fail on input that full LL would accept, with an error strategy that abandons the parse at the first error. Only
+    if that stage fails is the input parsed again with full LL prediction and the default error strategy and
+    listeners, so the diagnostics reported for invalid input are the same as for a single LL parse. The token stream
+    is reused by the second stage, so lexer errors are only reported once.
+     */
+    private ParseTree parseLibrary(CommonTokenStream tokens, ANTLRErrorListener errorListener) {
+        cqlParser parser = CqlParserCache.getSharedInstance().createParser(tokens);
+        parser.setBuildParseTree(true);
+        parser.removeErrorListeners(); // Clear the default console listener
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        try {
+            return parser.library();
+        }
+        catch (ParseCancellationException e) {
+            tokens.seek(0);
+            parser.reset();
+            parser.addErrorListener(errorListener);
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            return parser.library();
+        }
+    }
+
     public Library run(String cqlText,
                        CqlTranslatorOptions.Options... options) throws IOException {
         return run(CharStreams.fromString(cqlText), new CqlTranslatorOptions(options));
@@ -228,25 +279,65 @@ public class CqlCompiler {
 
         CqlCompiler.CqlErrorListener errorListener = new CqlCompiler.CqlErrorListener(builder, visitor.isDetailedErrorsEnabled());
 
-        cqlLexer lexer = new cqlLexer(is);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(errorListener);
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        cqlParser parser = new cqlParser(tokens);
-        parser.setBuildParseTree(true);
+        phaseStarted(CompilationListener.Phase.Compilation);
+        try {
+            cqlLexer lexer = CqlParserCache.getSharedInstance().createLexer(is);
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(errorListener);
+            CommonTokenStream tokens = new CommonTokenStream(lexer);
+            if (getCompilationListener() != null) {
+                // Lex up front, rather than as the parser consumes the tokens, so that lexing is reported separately
+                phaseStarted(CompilationListener.Phase.Lexing);
+                try {
+                    tokens.fill();
+                }
+                finally {
+                    phaseEnded(CompilationListener.Phase.Lexing);
+                }
+            }
 
-        parser.removeErrorListeners(); // Clear the default console listener
-        parser.addErrorListener(errorListener);
-        ParseTree tree = parser.library();
+            ParseTree tree;
+            phaseStarted(CompilationListener.Phase.Parsing);
+            try {
+                tree = parseLibrary(tokens, errorListener);
+            }
+            finally {
+                phaseEnded(CompilationListener.Phase.Parsing);
+            }
+
+            CqlPreprocessorVisitor preprocessor = new CqlPreprocessorVisitor();
+            phaseStarted(CompilationListener.Phase.Preprocessing);
+            try {
+                preprocessor.setTokenStream(tokens);
+                preprocessor.visit(tree);
+            }
+            finally {
+                phaseEnded(CompilationListener.Phase.Preprocessing);
+            }
 
-        CqlPreprocessorVisitor preprocessor = new CqlPreprocessorVisitor();
-        preprocessor.setTokenStream(tokens);
-        preprocessor.visit(tree);
+            // Start compiling the included libraries, if the library manager compiles them concurrently
+            libraryManager.prefetchLibraries(preprocessor.getLibraryInfo(), namespaceInfo, options);
 
-        visitor.setTokenStream(tokens);
-        visitor.setLibraryInfo(preprocessor.getLibraryInfo());
+            visitor.setTokenStream(tokens);
+            visitor.setLibraryInfo(preprocessor.getLibraryInfo());
+
+            phaseStarted(CompilationListener.Phase.Translation);
+            try {
+                visitResult = visitor.visit(tree);
+            }
+            finally {
+                phaseEnded(CompilationListener.Phase.Translation);
+            }
+        }
+        finally {
+            CompilationListener listener = getCompilationListener();
+            if (listener != null) {
+                VersionedIdentifier libraryIdentifier = builder.getLibraryIdentifier();
+                listener.phaseEnded(CompilationListener.Phase.Compilation,
+                        libraryIdentifier != null && libraryIdentifier.getId() != null ? libraryIdentifier : sourceInfo);
+            }
+        }
 
-        visitResult = visitor.visit(tree);
         library = builder.getLibrary();
         compiledLibrary = builder.getCompiledLibrary();
         retrieves = visitor.getRetrieves();
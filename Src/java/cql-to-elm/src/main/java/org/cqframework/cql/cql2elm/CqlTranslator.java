@@ -1,10 +1,12 @@
 package org.cqframework.cql.cql2elm;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.module.jaxb.JaxbAnnotationModule;
@@ -28,6 +30,7 @@ import org.hl7.elm_modelinfo.r1.TypeSpecifier;
 
 import javax.xml.bind.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
@@ -354,7 +357,9 @@ public class CqlTranslator {
 
     private String toXml(Library library) {
         try {
-            return convertToXml(library);
+            StringWriter writer = new StringWriter();
+            convertToXml(library, writer, false);
+            return writer.toString();
         }
         catch (IOException e) {
             throw new IllegalArgumentException("Could not convert library to XML.", e);
@@ -365,9 +370,11 @@ public class CqlTranslator {
 
     private String toJson(Library library) {
         try {
-            return convertToJson(library);
+            StringWriter writer = new StringWriter();
+            convertToJson(library, writer, false);
+            return writer.toString();
         }
-        catch (JsonProcessingException e) {
+        catch (IOException e) {
             throw new IllegalArgumentException("Could not convert library to JSON using JAXB serializer.", e);
         }
     }
@@ -380,6 +387,22 @@ public class CqlTranslator {
         return toJson(compiler.getLibrary());
     }
 
+    /**
+     * Writes the translated library as XML to the given stream, without building the document in memory first.
+     * @param compact Whether to omit the indentation
+     */
+    public void toXml(OutputStream out, boolean compact) throws IOException {
+        convertToXml(compiler.getLibrary(), out, compact);
+    }
+
+    /**
+     * Writes the translated library as JSON to the given stream, without building the document in memory first.
+     * @param compact Whether to omit the indentation
+     */
+    public void toJson(OutputStream out, boolean compact) throws IOException {
+        convertToJson(compiler.getLibrary(), out, compact);
+    }
+
     public Library toELM() {
         return compiler.getLibrary();
     }
@@ -458,6 +481,47 @@ public class CqlTranslator {
         return getJsonMapper().writeValueAsString(wrapper);
     }
 
+    /**
+     * Serializes the library as XML directly to the given writer. The writer is not closed.
+     * @param compact Whether to omit the indentation
+     */
+    public static void convertToXml(Library library, Writer writer, boolean compact) throws IOException {
+        ModelInfoXmlReader.writeValue(library, writer, compact);
+    }
+
+    /**
+     * Serializes the library as XML (UTF-8 encoded) directly to the given stream. The stream is not closed.
+     * @param compact Whether to omit the indentation
+     */
+    public static void convertToXml(Library library, OutputStream out, boolean compact) throws IOException {
+        ModelInfoXmlReader.writeValue(library, out, compact);
+    }
+
+    /**
+     * Serializes the library as JSON directly to the given writer. The writer is not closed.
+     * @param compact Whether to omit the indentation
+     */
+    public static void convertToJson(Library library, Writer writer, boolean compact) throws IOException {
+        LibraryWrapper wrapper = new LibraryWrapper();
+        wrapper.setLibrary(library);
+        getJsonWriter(compact).writeValue(writer, wrapper);
+    }
+
+    /**
+     * Serializes the library as JSON (UTF-8 encoded) directly to the given stream. The stream is not closed.
+     * @param compact Whether to omit the indentation
+     */
+    public static void convertToJson(Library library, OutputStream out, boolean compact) throws IOException {
+        LibraryWrapper wrapper = new LibraryWrapper();
+        wrapper.setLibrary(library);
+        getJsonWriter(compact).writeValue(out, wrapper);
+    }
+
+    private static ObjectWriter getJsonWriter(boolean compact) {
+        ObjectWriter writer = getJsonMapper().writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return compact ? writer.without(SerializationFeature.INDENT_OUTPUT) : writer;
+    }
+
     public static void loadModelInfo(File modelInfoXML)  {
         try {
             final ModelInfo modelInfo = ModelInfoXmlReader.readValue(modelInfoXML, ModelInfo.class);
@@ -471,73 +535,109 @@ public class CqlTranslator {
         }
     }
 
-    private static void outputExceptions(Iterable<CqlCompilerException> exceptions) {
+    private static void outputExceptions(Iterable<CqlCompilerException> exceptions, PrintStream err) {
         for (CqlCompilerException error : exceptions) {
             TrackBack tb = error.getLocator();
             String lines = tb == null ? "[n/a]" : String.format("[%d:%d, %d:%d]",
                     tb.getStartLine(), tb.getStartChar(), tb.getEndLine(), tb.getEndChar());
-            System.err.printf("%s:%s %s%n", error.getSeverity(), lines, error.getMessage());
+            err.printf("%s:%s %s%n", error.getSeverity(), lines, error.getMessage());
         }
     }
 
-    private static void writeELM(Path inPath, Path outPath, CqlTranslator.Format format, CqlTranslatorOptions options) throws IOException {
-
-        System.err.println("================================================================================");
-        System.err.printf("TRANSLATE %s%n", inPath);
+    static ModelManager createModelManager(CqlTranslatorOptions options) {
+        return createModelManager(options, null);
+    }
 
-        ModelManager modelManager;
-        if(options.getOptions().contains(CqlTranslatorOptions.Options.DisableDefaultModelInfoLoad)) {
-            modelManager = new ModelManager(false);
-        } else {
-            modelManager = new ModelManager();
-        }
+    static ModelManager createModelManager(CqlTranslatorOptions options, ModelCache modelCache) {
+        boolean enableDefaultModelInfoLoading = !options.getOptions().contains(CqlTranslatorOptions.Options.DisableDefaultModelInfoLoad);
+        return new ModelManager(new NamespaceManager(), enableDefaultModelInfoLoading, modelCache);
+    }
 
-        LibraryManager libraryManager = new LibraryManager(modelManager);
+    static UcumService createUcumService(CqlTranslatorOptions options, PrintStream err) {
         UcumService ucumService = null;
         if (options.getValidateUnits()) {
             try {
                 ucumService = new UcumEssenceService(UcumEssenceService.class.getResourceAsStream("/ucum-essence.xml"));
             } catch (UcumException e) {
-                System.err.println("Could not create UCUM validation service:");
-                e.printStackTrace();
+                err.println("Could not create UCUM validation service:");
+                e.printStackTrace(err);
             }
         }
+
+        return ucumService;
+    }
+
+    private static void writeELM(Path inPath, Path outPath, CqlTranslator.Format format, CqlTranslatorOptions options,
+                                 boolean compact, CompiledLibraryCache compiledLibraryCache,
+                                 CompilationListener compilationListener) throws IOException {
+
+        System.err.println("================================================================================");
+        System.err.printf("TRANSLATE %s%n", inPath);
+
+        ModelManager modelManager = createModelManager(options);
+        LibraryManager libraryManager = new LibraryManager(modelManager).withCompiledLibraryCache(compiledLibraryCache)
+                .withCompilationListener(compilationListener);
+        UcumService ucumService = createUcumService(options, System.err);
         modelManager.getModelInfoLoader().registerModelInfoProvider(new DefaultModelInfoProvider(inPath.getParent()), true);
         libraryManager.getLibrarySourceLoader().registerProvider(new DefaultLibrarySourceProvider(inPath.getParent()));
         libraryManager.getLibrarySourceLoader().registerProvider(new FhirLibrarySourceProvider());
         CqlTranslator translator = fromFile(inPath.toFile(), modelManager, libraryManager, ucumService, options);
         libraryManager.getLibrarySourceLoader().clearProviders();
 
+        writeELM(translator, outPath, format, options, compact, System.err);
+
+        System.err.println();
+    }
+
+    /*
+    Reports the outcome of the given translation and, if it succeeded and this is not a verify-only run, writes the
+    translated ELM to outPath, streaming it to the file as it is serialized. Returns false if the translation had
+    errors.
+     */
+    static boolean writeELM(CqlTranslator translator, Path outPath, CqlTranslator.Format format, CqlTranslatorOptions options,
+                            boolean compact, PrintStream err) throws IOException {
         if (translator.getErrors().size() > 0) {
-            System.err.println("Translation failed due to errors:");
-            outputExceptions(translator.getExceptions());
+            err.println("Translation failed due to errors:");
+            outputExceptions(translator.getExceptions(), err);
+            return false;
         } else if (!options.getVerifyOnly()) {
             if (translator.getExceptions().size() == 0) {
-                System.err.println("Translation completed successfully.");
+                err.println("Translation completed successfully.");
             }
             else {
-                System.err.println("Translation completed with messages:");
-                outputExceptions(translator.getExceptions());
+                err.println("Translation completed with messages:");
+                outputExceptions(translator.getExceptions(), err);
+            }
+            CompilationListener listener = translator.compiler.getLibraryManager().getCompilationListener();
+            VersionedIdentifier libraryIdentifier = translator.toELM().getIdentifier();
+            if (listener != null) {
+                listener.phaseStarted(CompilationListener.Phase.Serialization, libraryIdentifier);
             }
-            try (PrintWriter pw = new PrintWriter(outPath.toFile(), "UTF-8")) {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outPath))) {
                 switch (format) {
                     case COFFEE:
-                        pw.print("module.exports = ");
-                        pw.println(translator.toJson());
+                        out.write("module.exports = ".getBytes(StandardCharsets.UTF_8));
+                        translator.toJson(out, compact);
                         break;
                     case JSON:
-                        pw.println(translator.toJson());
+                        translator.toJson(out, compact);
                         break;
                     case XML:
                     default:
-                        pw.println(translator.toXml());
+                        translator.toXml(out, compact);
                 }
-                pw.println();
+                out.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+                out.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
             }
-            System.err.println(String.format("ELM output written to: %s", outPath.toString()));
+            finally {
+                if (listener != null) {
+                    listener.phaseEnded(CompilationListener.Phase.Serialization, libraryIdentifier);
+                }
+            }
+            err.println(String.format("ELM output written to: %s", outPath.toString()));
         }
 
-        System.err.println();
+        return true;
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes"})
@@ -567,6 +667,10 @@ public class CqlTranslator {
         OptionSpec validateUnits = parser.accepts("validate-units");
         OptionSpec<LibraryBuilder.SignatureLevel> signatures = parser.accepts("signatures").withRequiredArg().ofType(LibraryBuilder.SignatureLevel.class).defaultsTo(LibraryBuilder.SignatureLevel.None).describedAs("Indicates whether signatures should be included for invocations in the output ELM. Differing will include invocation signatures that differ from the declared signature. Overloads will include declaration signatures when the operator or function has more than one overload with the same number of arguments as the invocation");
         OptionSpec<String> compatibilityLevel = parser.accepts("compatibility-level").withRequiredArg().ofType(String.class).describedAs("Compatibility level for the translator, valid values are 1.3, 1.4, and 1.5");
+        OptionSpec<File> compiledLibraryCache = parser.accepts("compiled-library-cache").withRequiredArg().ofType(File.class).describedAs("The directory of a persistent cache of compiled libraries. Included libraries whose source has not changed since they were cached are loaded from the cache instead of being compiled");
+        OptionSpec compact = parser.accepts("compact").describedAs("Write the output without indentation");
+        OptionSpec timings = parser.accepts("timings").describedAs("Report the time spent in each phase of the compilation of each library, including included libraries");
+        OptionSpec<Integer> threads = parser.accepts("threads").withRequiredArg().ofType(Integer.class).describedAs("The number of libraries to translate concurrently. If given, model and compiled library state is shared across the libraries being translated, libraries are translated in dependency order, and per-file timings and a throughput summary are reported");
 
         OptionSet options = parser.parse(args);
 
@@ -601,6 +705,35 @@ public class CqlTranslator {
             inOutMap.put(source, destination);
         }
 
+        if (options.has(model)) {
+            final File modelFile = options.valueOf(model);
+            if (! modelFile.exists() || modelFile.isDirectory()) {
+                throw new IllegalArgumentException("model must be a valid file!");
+            }
+            loadModelInfo(modelFile);
+        }
+
+        CqlTranslatorOptions translatorOptions = new CqlTranslatorOptions(outputFormat, options.has(optimization),
+                options.has(debug) || options.has(annotations),
+                options.has(debug) || options.has(locators),
+                options.has(debug) || options.has(resultTypes),
+                options.has(verify),
+                options.has(detailedErrors), // Didn't include in debug, maybe should...
+                options.has(errorLevel)
+                        ? (CqlCompilerException.ErrorSeverity)options.valueOf(errorLevel)
+                        : CqlCompilerException.ErrorSeverity.Info,
+                options.has(strict) || options.has(disableListTraversal),
+                options.has(strict) || options.has(disableListDemotion),
+                options.has(strict) || options.has(disableListPromotion),
+                options.has(enableIntervalDemotion),
+                options.has(enableIntervalPromotion),
+                options.has(strict) || options.has(disableMethodInvocation),
+                options.has(requireFromKeyword),
+                options.has(validateUnits), options.has(disableDefaultModelInfoLoad),
+                signatureLevel,
+                options.has(compatibilityLevel) ? options.valueOf(compatibilityLevel) : null);
+
+        Map<Path, Path> inputs = new LinkedHashMap<>();
         for (Map.Entry<Path, Path> inOut : inOutMap.entrySet()) {
             Path in = inOut.getKey();
             Path out = inOut.getValue();
@@ -630,33 +763,33 @@ public class CqlTranslator {
                 throw new IllegalArgumentException("input and output file must be different!");
             }
 
-            if (options.has(model)) {
-                final File modelFile = options.valueOf(model);
-                if (! modelFile.exists() || modelFile.isDirectory()) {
-                    throw new IllegalArgumentException("model must be a valid file!");
-                }
-                loadModelInfo(modelFile);
+            inputs.put(in, out);
+        }
+
+        CompilationTimingListener timingListener = options.has(timings) ? new CompilationTimingListener() : null;
+        CompiledLibraryCache cache = options.has(compiledLibraryCache)
+                ? new CompiledLibraryCache(options.valueOf(compiledLibraryCache).toPath()) : null;
+        if (options.has(threads)) {
+            int threadCount = options.valueOf(threads);
+            if (threadCount < 1) {
+                throw new IllegalArgumentException("threads must be at least 1!");
+            }
+
+            BatchTranslator batchTranslator = new BatchTranslator(threadCount, outputFormat, translatorOptions, System.err)
+                    .withCompact(options.has(compact))
+                    .withCompilationListener(timingListener)
+                    .withCompiledLibraryCache(cache);
+            batchTranslator.translate(inputs);
+        }
+        else {
+            for (Map.Entry<Path, Path> inOut : inputs.entrySet()) {
+                writeELM(inOut.getKey(), inOut.getValue(), outputFormat, translatorOptions, options.has(compact), cache,
+                        timingListener);
             }
+        }
 
-            writeELM(in, out, outputFormat, new CqlTranslatorOptions(outputFormat, options.has(optimization),
-                    options.has(debug) || options.has(annotations),
-                    options.has(debug) || options.has(locators),
-                    options.has(debug) || options.has(resultTypes),
-                    options.has(verify),
-                    options.has(detailedErrors), // Didn't include in debug, maybe should...
-                    options.has(errorLevel)
-                            ? (CqlCompilerException.ErrorSeverity)options.valueOf(errorLevel)
-                            : CqlCompilerException.ErrorSeverity.Info,
-                    options.has(strict) || options.has(disableListTraversal),
-                    options.has(strict) || options.has(disableListDemotion),
-                    options.has(strict) || options.has(disableListPromotion),
-                    options.has(enableIntervalDemotion),
-                    options.has(enableIntervalPromotion),
-                    options.has(strict) || options.has(disableMethodInvocation),
-                    options.has(requireFromKeyword),
-                    options.has(validateUnits), options.has(disableDefaultModelInfoLoad),
-                    signatureLevel,
-                    options.has(compatibilityLevel) ? options.valueOf(compatibilityLevel) : null));
+        if (timingListener != null) {
+            timingListener.printReport(System.err);
         }
     }
 }
@@ -49,6 +49,14 @@ public class ElmJsonLibraryReader {
         return mapper.readValue(string, LibraryWrapper.class).getLibrary();
     }
 
+    public static Library read(byte[] bytes) throws IOException {
+        return mapper.readValue(bytes, LibraryWrapper.class).getLibrary();
+    }
+
+    /**
+     * Reads a library from the given stream. The parser works on the (UTF-8, UTF-16 or UTF-32) encoded bytes
+     * directly, detecting the encoding, so prefer this to wrapping the stream in a Reader.
+     */
     public static Library read(InputStream inputStream) throws IOException {
         return mapper.readValue(inputStream, LibraryWrapper.class).getLibrary();
     }
@@ -0,0 +1,116 @@
+package org.cqframework.cql.cql2elm;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of asynchronous fetches (of library sources or model infos) in flight. Fetches submitted while
+ * the limit is reached are started, in the order they were submitted, as earlier fetches complete. Cancelling the
+ * future returned for a fetch drops the fetch if it has not started. A fetch that has started keeps its place until
+ * the future of the fetch itself completes, so the limit holds for the requests made to the provider even when
+ * those waiting for them give up (see await).
+ */
+class FetchQueue {
+    private final int maxConcurrentFetches;
+    // Guarded by this
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+    private int inFlight;
+
+    FetchQueue(int maxConcurrentFetches) {
+        if (maxConcurrentFetches < 1) {
+            throw new IllegalArgumentException("maxConcurrentFetches must be at least 1.");
+        }
+
+        this.maxConcurrentFetches = maxConcurrentFetches;
+    }
+
+    int getMaxConcurrentFetches() {
+        return maxConcurrentFetches;
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> fetch) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            if (result.isDone()) {
+                // Cancelled before it was started
+                fetchCompleted();
+                return;
+            }
+
+            CompletableFuture<T> started;
+            try {
+                started = fetch.get();
+            }
+            catch (RuntimeException e) {
+                started = CompletableFuture.failedFuture(e);
+            }
+            started.whenComplete((value, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                }
+                else {
+                    result.complete(value);
+                }
+                fetchCompleted();
+            });
+        };
+
+        synchronized (this) {
+            if (inFlight >= maxConcurrentFetches) {
+                pending.add(start);
+                return result;
+            }
+            inFlight++;
+        }
+
+        start.run();
+        return result;
+    }
+
+    private void fetchCompleted() {
+        Runnable next;
+        synchronized (this) {
+            next = pending.poll();
+            if (next == null) {
+                inFlight--;
+            }
+        }
+
+        // The completed fetch's slot is handed to the next one
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * Waits for the given fetch, for at most the given timeout (if any). A fetch that failed rethrows its failure,
+     * wrapped in a CompletionException if it is a checked exception. A fetch that times out is cancelled, so that it
+     * is not started if it is still queued.
+     */
+    static <T> T await(CompletableFuture<T> fetch, Duration timeout) throws TimeoutException, InterruptedException {
+        try {
+            return timeout != null ? fetch.get(timeout.toNanos(), TimeUnit.NANOSECONDS) : fetch.get();
+        }
+        catch (TimeoutException e) {
+            fetch.cancel(true);
+            throw e;
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+}
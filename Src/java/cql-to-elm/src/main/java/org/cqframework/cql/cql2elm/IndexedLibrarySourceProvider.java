@@ -0,0 +1,359 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.Version;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * A library source provider for the CQL files in a directory tree, that resolves libraries from an index of the
+ * files instead of listing the directory for each library, as DefaultLibrarySourceProvider does. This matters for
+ * large directories, and for directories on network storage, where listing is expensive.
+ *
+ * Files are indexed by library name and version, and are expected to be named as for DefaultLibrarySourceProvider:
+ * &lt;name&gt;[-&lt;version&gt;].cql, where the name does not contain dashes. A library is resolved to the file for
+ * the requested version if there is one, otherwise to the most recent file with a compatible version, or otherwise
+ * to the file without a version. Where the same file name occurs in more than one directory of the tree, the first
+ * path (in path order) is used.
+ *
+ * Subdirectories are indexed unless the provider is constructed for a single directory, in which case it resolves
+ * the same files as DefaultLibrarySourceProvider for that directory. The index is built when the provider is
+ * constructed. If the provider watches the directory tree, the index is kept current using a WatchService until the
+ * provider is closed; otherwise it can be rebuilt with refresh().
+ */
+public class IndexedLibrarySourceProvider implements LibrarySourceProviderExt, Closeable {
+
+    private final Path path;
+    private final boolean recursive;
+    // Library name -> version (empty for no version) -> files, in path order, guarded by this
+    private final Map<String, Map<String, NavigableSet<Path>>> index = new HashMap<>();
+    // Whether the index could not be rebuilt (see refresh), in which case it is rebuilt when next used, guarded by this
+    private boolean stale;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Thread watcher;
+
+    public IndexedLibrarySourceProvider(Path path) {
+        this(path, true, false);
+    }
+
+    /**
+     * @param path The root of the directory tree
+     * @param watch Whether to keep the index current by watching the directory tree for changes
+     */
+    public IndexedLibrarySourceProvider(Path path, boolean watch) {
+        this(path, true, watch);
+    }
+
+    /**
+     * @param path The directory, or the root of the directory tree
+     * @param recursive Whether to index the subdirectories of the directory
+     * @param watch Whether to keep the index current by watching the directory (tree) for changes
+     */
+    public IndexedLibrarySourceProvider(Path path, boolean recursive, boolean watch) {
+        if (path == null || !Files.isDirectory(path)) {
+            throw new IllegalArgumentException(String.format("path '%s' is not a valid directory", path));
+        }
+
+        this.path = path;
+        this.recursive = recursive;
+
+        try {
+            watchService = watch ? path.getFileSystem().newWatchService() : null;
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Could not watch directory '%s'.", path), e);
+        }
+
+        try {
+            synchronized (this) {
+                indexTree(path);
+            }
+        }
+        catch (IOException e) {
+            try {
+                close();
+            }
+            catch (IOException ignored) {
+                // The index could not be built, which is what is reported
+            }
+            throw new IllegalArgumentException(String.format("Could not index directory '%s'.", path), e);
+        }
+
+        if (watchService != null) {
+            watcher = new Thread(this::watch, "cql-library-index-" + path.getFileName());
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        else {
+            watcher = null;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean isWatching() {
+        return watcher != null && watcher.isAlive();
+    }
+
+    /**
+     * Rebuilds the index from the directory tree. If the index cannot be rebuilt, it is rebuilt again when a library
+     * is next resolved.
+     */
+    public synchronized void refresh() {
+        index.clear();
+        stale = true;
+        try {
+            indexTree(path);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Could not index directory '%s'.", path), e);
+        }
+        stale = false;
+    }
+
+    @Override
+    public LibraryContentType getLibrarySourceType() {
+        return LibraryContentType.CQL;
+    }
+
+    @Override
+    public boolean isLibrarySourceAvailable(VersionedIdentifier libraryIdentifier, LibraryContentType type) {
+        return isSupported(type) && resolve(libraryIdentifier) != null;
+    }
+
+    @Override
+    public InputStream getLibrarySource(VersionedIdentifier libraryIdentifier, LibraryContentType type) {
+        if (!isSupported(type)) {
+            return null;
+        }
+
+        Path libraryPath = resolve(libraryIdentifier);
+        if (libraryPath == null) {
+            return null;
+        }
+
+        try {
+            return Files.newInputStream(libraryPath);
+        }
+        catch (NoSuchFileException e) {
+            // The file was removed since it was indexed
+            synchronized (this) {
+                removeFile(libraryPath);
+            }
+            return getLibrarySource(libraryIdentifier, type);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Could not load source for library %s.", libraryIdentifier.getId()), e);
+        }
+    }
+
+    /**
+     * Returns the file the given library resolves to, or null if the library is not in the index.
+     */
+    public synchronized Path resolve(VersionedIdentifier libraryIdentifier) {
+        if (stale) {
+            refresh();
+        }
+
+        Map<String, NavigableSet<Path>> versions = index.get(libraryIdentifier.getId());
+        if (versions == null) {
+            return null;
+        }
+
+        String requested = libraryIdentifier.getVersion();
+        NavigableSet<Path> result = versions.get(requested != null ? requested : "");
+        if (result != null) {
+            return result.first();
+        }
+
+        Version requestedVersion = requested != null ? new Version(requested) : null;
+        Version mostRecent = null;
+        for (Map.Entry<String, NavigableSet<Path>> entry : versions.entrySet()) {
+            if (entry.getKey().isEmpty()) {
+                continue;
+            }
+
+            Version version = new Version(entry.getKey());
+            if (requestedVersion == null || version.compatibleWith(requestedVersion)) {
+                if (mostRecent == null
+                        || (version.isComparable() && (!mostRecent.isComparable() || version.compareTo(mostRecent) > 0))) {
+                    mostRecent = version;
+                    result = entry.getValue();
+                }
+            }
+        }
+
+        // If there is no compatible version, a file named for the library without a version is used
+        if (result == null) {
+            result = versions.get("");
+        }
+
+        return result != null ? result.first() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+    }
+
+    private static boolean isSupported(LibraryContentType type) {
+        return type == LibraryContentType.CQL || type == LibraryContentType.ANY;
+    }
+
+    private void indexTree(Path root) throws IOException {
+        Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), recursive ? Integer.MAX_VALUE : 1, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                if (watchService != null) {
+                    WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchedDirectories.put(key, directory);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                // The attributes are those of the link for a symbolic link, which is indexed if it links to a file
+                if (Files.isRegularFile(file)) {
+                    addFile(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Skip files and directories that cannot be read, as listing the directory would
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // Returns the library name and version (empty for no version) of a CQL file, or null if it is not a CQL file
+    private static String[] parseFileName(Path file) {
+        String fileName = file.getFileName().toString();
+        if (!fileName.endsWith(".cql")) {
+            return null;
+        }
+
+        fileName = fileName.substring(0, fileName.length() - ".cql".length());
+        int indexOfVersionSeparator = fileName.indexOf("-");
+        if (indexOfVersionSeparator == 0) {
+            return null;
+        }
+
+        return indexOfVersionSeparator > 0
+                ? new String[] { fileName.substring(0, indexOfVersionSeparator), fileName.substring(indexOfVersionSeparator + 1) }
+                : new String[] { fileName, "" };
+    }
+
+    private void addFile(Path file) {
+        String[] nameAndVersion = parseFileName(file);
+        if (nameAndVersion != null) {
+            index.computeIfAbsent(nameAndVersion[0], n -> new HashMap<>())
+                    .computeIfAbsent(nameAndVersion[1], v -> new TreeSet<>()).add(file);
+        }
+    }
+
+    private boolean removeFile(Path file) {
+        String[] nameAndVersion = parseFileName(file);
+        if (nameAndVersion != null) {
+            Map<String, NavigableSet<Path>> versions = index.get(nameAndVersion[0]);
+            NavigableSet<Path> files = versions != null ? versions.get(nameAndVersion[1]) : null;
+            if (files != null && files.remove(file)) {
+                if (files.isEmpty()) {
+                    versions.remove(nameAndVersion[1]);
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void removeDirectory(Path directory) {
+        for (Map<String, NavigableSet<Path>> versions : index.values()) {
+            for (NavigableSet<Path> files : versions.values()) {
+                files.removeIf(file -> file.startsWith(directory));
+            }
+            versions.values().removeIf(Set::isEmpty);
+        }
+        watchedDirectories.entrySet().removeIf(entry -> {
+            if (entry.getValue().startsWith(directory)) {
+                entry.getKey().cancel();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            }
+            catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            synchronized (this) {
+                Path directory = watchedDirectories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost, so the index is rebuilt
+                        try {
+                            refresh();
+                        }
+                        catch (IllegalArgumentException e) {
+                            // The index is stale, and is rebuilt when next used, so the directory is still watched
+                        }
+                        continue;
+                    }
+
+                    if (directory == null) {
+                        continue;
+                    }
+
+                    Path changed = directory.resolve((Path)event.context());
+                    try {
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            if (!removeFile(changed)) {
+                                removeDirectory(changed);
+                            }
+                        }
+                        else if (Files.isDirectory(changed)) {
+                            if (recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                                indexTree(changed);
+                            }
+                        }
+                        else if (Files.isRegularFile(changed)) {
+                            addFile(changed);
+                        }
+                    }
+                    catch (IOException | ClosedWatchServiceException e) {
+                        // A directory that cannot be watched is left out of the index
+                    }
+                }
+
+                if (!key.reset()) {
+                    watchedDirectories.remove(key);
+                }
+            }
+        }
+    }
+}
@@ -236,11 +236,36 @@ public class LibraryBuilder implements ModelResolver {
     }
 
     private Model loadModel(VersionedIdentifier modelIdentifier) {
-        Model model = modelManager.resolveModel(modelIdentifier);
+        Model model;
+        phaseStarted(CompilationListener.Phase.ModelLoading, modelIdentifier);
+        try {
+            model = modelManager.resolveModel(modelIdentifier);
+        }
+        finally {
+            phaseEnded(CompilationListener.Phase.ModelLoading, modelIdentifier);
+        }
         loadConversionMap(model);
         return model;
     }
 
+    public CompilationListener getCompilationListener() {
+        return libraryManager.getCompilationListener();
+    }
+
+    void phaseStarted(CompilationListener.Phase phase, VersionedIdentifier identifier) {
+        CompilationListener listener = getCompilationListener();
+        if (listener != null) {
+            listener.phaseStarted(phase, identifier);
+        }
+    }
+
+    void phaseEnded(CompilationListener.Phase phase, VersionedIdentifier identifier) {
+        CompilationListener listener = getCompilationListener();
+        if (listener != null) {
+            listener.phaseEnded(phase, identifier);
+        }
+    }
+
     public Model getDefaultModel() {
         return defaultModel;
     }
@@ -423,11 +448,11 @@ public class LibraryBuilder implements ModelResolver {
         // listTypeSpecifier: 'list' '<' typeSpecifier '>'
         if (typeSpecifier.toLowerCase().startsWith("interval<")) {
             DataType pointType = resolveTypeSpecifier(typeSpecifier.substring(typeSpecifier.indexOf('<') + 1, typeSpecifier.lastIndexOf('>')));
-            return new IntervalType(pointType);
+            return CanonicalTypes.intervalOf(pointType);
         }
         else if (typeSpecifier.toLowerCase().startsWith("list<")) {
             DataType elementType = resolveTypeName(typeSpecifier.substring(typeSpecifier.indexOf('<') + 1, typeSpecifier.lastIndexOf('>')));
-            return new ListType(elementType);
+            return CanonicalTypes.listOf(elementType);
         }
         else if (typeSpecifier.indexOf(".") >= 0) {
             String modelName = typeSpecifier.substring(0, typeSpecifier.indexOf("."));
@@ -470,7 +495,8 @@ public class LibraryBuilder implements ModelResolver {
     }
 
     private void loadSystemLibrary() {
-        CompiledLibrary systemLibrary = SystemLibraryHelper.load(getSystemModel(), typeBuilder);
+        // The System library is built once per system model, generic instantiations for this compilation go to the overlay
+        CompiledLibrary systemLibrary = getSystemModel().getSystemLibrary().createOverlay();
         libraries.put(systemLibrary.getIdentifier().getId(), systemLibrary);
         loadConversionMap(systemLibrary);
     }
@@ -651,7 +677,14 @@ public class LibraryBuilder implements ModelResolver {
                 .withVersion(includeDef.getVersion());
 
         ArrayList<CqlCompilerException> errors = new ArrayList<CqlCompilerException>();
-        CompiledLibrary referencedLibrary = libraryManager.resolveLibrary(libraryIdentifier, this.options, errors);
+        CompiledLibrary referencedLibrary;
+        phaseStarted(CompilationListener.Phase.LibraryResolution, libraryIdentifier);
+        try {
+            referencedLibrary = libraryManager.resolveLibrary(libraryIdentifier, this.options, errors);
+        }
+        finally {
+            phaseEnded(CompilationListener.Phase.LibraryResolution, libraryIdentifier);
+        }
         for (CqlCompilerException error : errors) {
             this.recordParsingException(error);
         }
@@ -864,7 +897,7 @@ public class LibraryBuilder implements ModelResolver {
                 }
 
                 if (elementTypes.size() > 1) {
-                    ListType targetType = new ListType(new ChoiceType(elementTypes));
+                    ListType targetType = CanonicalTypes.listOf(CanonicalTypes.choiceOf(elementTypes));
                     left = of.createAs().withOperand(left).withAsTypeSpecifier(dataTypeToTypeSpecifier(targetType));
                     left.setResultType(targetType);
 
@@ -1204,6 +1237,11 @@ public class LibraryBuilder implements ModelResolver {
             result = resolveLibrary(callContext.getLibraryName()).resolveCall(callContext, conversionMap);
         }
 
+        CompilationListener listener = getCompilationListener();
+        if (listener != null) {
+            listener.operatorResolved(callContext, result);
+        }
+
         return result;
     }
 
@@ -1373,7 +1411,7 @@ public class LibraryBuilder implements ModelResolver {
     public Expression resolveToList(Expression expression) {
         // Use a ToList operator here to avoid duplicate evaluation of the operand.
         ToList toList = of.createToList().withOperand(expression);
-        toList.setResultType(new ListType(expression.getResultType()));
+        toList.setResultType(CanonicalTypes.listOf(expression.getResultType()));
         return toList;
     }
 
@@ -1408,9 +1446,9 @@ public class LibraryBuilder implements ModelResolver {
     public Expression resolveToInterval(Expression expression) {
         If condition = of.createIf();
         condition.setCondition(buildIsNull(expression));
-        condition.setThen(buildNull(new IntervalType(expression.getResultType())));
+        condition.setThen(buildNull(CanonicalTypes.intervalOf(expression.getResultType())));
         Interval toInterval = of.createInterval().withLow(expression).withHigh(expression).withLowClosed(true).withHighClosed(true);
-        toInterval.setResultType(new IntervalType(expression.getResultType()));
+        toInterval.setResultType(CanonicalTypes.intervalOf(expression.getResultType()));
         condition.setElse(toInterval);
         condition.setResultType(resolveTypeName("System", "Boolean"));
         return condition;
@@ -1701,7 +1739,7 @@ public class LibraryBuilder implements ModelResolver {
         }
 
         if (!second.isSubTypeOf(first)) {
-            return new ChoiceType(Arrays.asList(first, second));
+            return CanonicalTypes.choiceOf(Arrays.asList(first, second));
         }
 
         // The above construction of a choice type guarantees this will never be hit
@@ -1869,7 +1907,7 @@ public class LibraryBuilder implements ModelResolver {
                 .withHighClosed(highClosed);
 
         DataType pointType = ensureCompatibleTypes(result.getLow().getResultType(), result.getHigh().getResultType());
-        result.setResultType(new IntervalType(pointType));
+        result.setResultType(CanonicalTypes.intervalOf(pointType));
 
         result.setLow(ensureCompatible(result.getLow(), pointType));
         result.setHigh(ensureCompatible(result.getHigh(), pointType));
@@ -1916,30 +1954,32 @@ public class LibraryBuilder implements ModelResolver {
                 ClassType classType = (ClassType)currentType;
                 if (identifier.startsWith("?") && isCompatibleWith("1.5")) {
                     String searchPath = identifier.substring(1);
-                    for (SearchType s : classType.getSearches()) {
-                        if (s.getName().equals(searchPath)) {
-                            return new PropertyResolution(s);
-                        }
+                    SearchType s = classType.findSearch(searchPath, false);
+                    if (s != null) {
+                        return new PropertyResolution(s);
                     }
                 }
                 else {
-                    for (ClassTypeElement e : classType.getElements()) {
-                        if (e.getName().equals(identifier)) {
-                            if (e.isProhibited()) {
-                                throw new IllegalArgumentException(String.format("Element %s cannot be referenced because it is marked prohibited in type %s.", e.getName(), ((ClassType) currentType).getName()));
-                            }
-
-                            return new PropertyResolution(e);
+                    ClassTypeElement e = classType.findElement(identifier);
+                    if (e != null) {
+                        if (e.isProhibited()) {
+                            throw new IllegalArgumentException(String.format("Element %s cannot be referenced because it is marked prohibited in type %s.", e.getName(), getDeclaringType(classType, e).getName()));
                         }
+
+                        return new PropertyResolution(e);
                     }
                 }
+
+                // The lookups include the base class types, so continue from the first base type that is not a class type
+                while (currentType.getBaseType() instanceof ClassType) {
+                    currentType = currentType.getBaseType();
+                }
             }
             else if (currentType instanceof TupleType) {
                 TupleType tupleType = (TupleType)currentType;
-                for (TupleTypeElement e : tupleType.getElements()) {
-                    if (e.getName().equals(identifier)) {
-                        return new PropertyResolution(e);
-                    }
+                TupleTypeElement e = tupleType.findElement(identifier);
+                if (e != null) {
+                    return new PropertyResolution(e);
                 }
             }
             else if (currentType instanceof IntervalType) {
@@ -2000,7 +2040,7 @@ public class LibraryBuilder implements ModelResolver {
 
                 // The result type is a choice of all the resolved types
                 if (resultTypes.size() > 1) {
-                    return new PropertyResolution(new ChoiceType(resultTypes), name, resultTargetMaps);
+                    return new PropertyResolution(CanonicalTypes.choiceOf(resultTypes), name, resultTargetMaps);
                 }
 
                 if (resultTypes.size() == 1) {
@@ -2014,7 +2054,7 @@ public class LibraryBuilder implements ModelResolver {
                 // Resolve property as a list of items of property of the element type
                 ListType listType = (ListType)currentType;
                 PropertyResolution resolution = resolveProperty(listType.getElementType(), identifier);
-                return new PropertyResolution(new ListType(resolution.getType()), resolution.getTargetMap());
+                return new PropertyResolution(CanonicalTypes.listOf(resolution.getType()), resolution.getTargetMap());
             }
 
             if (currentType.getBaseType() != null) {
@@ -2033,6 +2073,20 @@ public class LibraryBuilder implements ModelResolver {
         return null;
     }
 
+    private ClassType getDeclaringType(ClassType classType, ClassTypeElement element) {
+        DataType currentType = classType;
+        while (currentType instanceof ClassType) {
+            for (ClassTypeElement e : ((ClassType)currentType).getElements()) {
+                if (e == element) {
+                    return (ClassType)currentType;
+                }
+            }
+            currentType = currentType.getBaseType();
+        }
+
+        return classType;
+    }
+
     public Expression resolveIdentifier(String identifier, boolean mustResolve) {
         // An Identifier will always be:
         // 1: The name of an alias
@@ -2617,7 +2671,7 @@ public class LibraryBuilder implements ModelResolver {
                     .withSource(source)
                     .withWhere(not)
                     .withReturn(of.createReturnClause().withDistinct(false).withExpression(accessor));
-            query.setResultType(new ListType(accessor.getResultType()));
+            query.setResultType(CanonicalTypes.listOf(accessor.getResultType()));
 
             if (accessor.getResultType() instanceof ListType) {
                 Flatten result = of.createFlatten().withOperand(query);
@@ -2746,7 +2800,7 @@ public class LibraryBuilder implements ModelResolver {
 
             DataType resultType = expressionDef.getResultType();
             if (!(resultType instanceof ListType)) {
-                return new ListType(resultType);
+                return CanonicalTypes.listOf(resultType);
             }
             else {
                 return resultType;
@@ -1,6 +1,9 @@
 package org.cqframework.cql.cql2elm;
 
 import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.cqframework.cql.cql2elm.preprocessor.IncludeDefinitionInfo;
+import org.cqframework.cql.cql2elm.preprocessor.LibraryInfo;
+import org.cqframework.cql.cql2elm.preprocessor.UsingDefinitionInfo;
 import org.fhir.ucum.UcumService;
 import org.hl7.elm.r1.CodeDef;
 import org.hl7.elm.r1.CodeSystemDef;
@@ -12,17 +15,35 @@ import org.hl7.elm.r1.ParameterDef;
 import org.hl7.elm.r1.UsingDef;
 import org.hl7.elm.r1.ValueSetDef;
 import org.hl7.elm.r1.VersionedIdentifier;
+import org.hl7.elm_modelinfo.r1.ModelInfo;
 
 import javax.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
 
 import static org.cqframework.cql.cql2elm.CqlCompilerException.HasErrors;
 
@@ -39,6 +60,27 @@ public class LibraryManager {
     private final Stack<String> compilatonStack;
     private LibrarySourceLoader librarySourceLoader;
     private boolean enableCache;
+    private CompiledLibraryCache compiledLibraryCache;
+    private CompilationListener compilationListener;
+    // Cache keys of the libraries compiled or loaded while a compiled library cache is set, by library path
+    private final Map<String, String> libraryKeys = new HashMap<>();
+    private boolean trackSourceChanges;
+    // Digests of the CQL sources of the libraries compiled or loaded from source while trackSourceChanges is set, by
+    // library path
+    private final Map<String, SourceDigest> sourceDigests = new HashMap<>();
+    // Paths of the libraries compiled or loaded during the current (or most recent) top-level compilation
+    private final Set<String> rebuiltLibraries = new LinkedHashSet<>();
+    private Executor includeExecutor;
+    // The included libraries being compiled ahead of the current top-level compilation, see prefetchLibraries
+    private LibraryPrefetcher prefetcher;
+    private FetchQueue fetchQueue;
+    private Duration fetchTimeout;
+    // The sources of included libraries being fetched ahead of their compilation, by prefetch key (see
+    // prefetchLibraries), shared with the library managers compiling prefetched libraries
+    private final Map<String, CompletableFuture<byte[]>> sourceFetches;
+    // The model info fetches started for the current top-level compilation, shared with the library managers
+    // compiling prefetched libraries, see ModelManager.cancelModelInfoFetches
+    private final Queue<CompletableFuture<ModelInfo>> modelInfoFetches;
 
     public LibraryManager(ModelManager modelManager) {
         if (modelManager == null) {
@@ -53,10 +95,37 @@ public class LibraryManager {
         }
         libraries = new HashMap<>();
         compilatonStack = new Stack<>();
+        sourceFetches = new ConcurrentHashMap<>();
+        modelInfoFetches = new ConcurrentLinkedQueue<>();
         this.enableCache = true;
         this.librarySourceLoader = new PriorityLibrarySourceLoader();
     }
 
+    /*
+    A library manager for compiling a prefetched library on behalf of the given library manager, within the given
+    compilations. It starts with no compiled libraries, so that it never shares a library the including compilation
+    may be modifying.
+     */
+    private LibraryManager(LibraryManager libraryManager, List<String> compilationStack) {
+        this.modelManager = libraryManager.modelManager;
+        this.namespaceManager = libraryManager.namespaceManager;
+        this.ucumService = libraryManager.ucumService;
+        this.librarySourceLoader = libraryManager.librarySourceLoader;
+        this.enableCache = true;
+        this.compiledLibraryCache = libraryManager.compiledLibraryCache;
+        this.compilationListener = libraryManager.compilationListener;
+        this.includeExecutor = libraryManager.includeExecutor;
+        this.prefetcher = libraryManager.prefetcher;
+        this.fetchQueue = libraryManager.fetchQueue;
+        this.fetchTimeout = libraryManager.fetchTimeout;
+        this.sourceFetches = libraryManager.sourceFetches;
+        this.modelInfoFetches = libraryManager.modelInfoFetches;
+        this.trackSourceChanges = libraryManager.trackSourceChanges;
+        libraries = new HashMap<>();
+        compilatonStack = new Stack<>();
+        compilatonStack.addAll(compilationStack);
+    }
+
     public ModelManager getModelManager(){
         return this.modelManager;
     }
@@ -97,10 +166,265 @@ public class LibraryManager {
 
     public boolean isCacheEnabled() { return enableCache; }
 
+    public CompiledLibraryCache getCompiledLibraryCache() {
+        return compiledLibraryCache;
+    }
+
+    /**
+     * Sets a persistent cache of compiled libraries. When set, libraries that are resolved from CQL source are
+     * loaded from the cache if their source (and that of the libraries they include) has not changed since they
+     * were cached, and stored in the cache when they are compiled without errors.
+     */
+    public void setCompiledLibraryCache(CompiledLibraryCache compiledLibraryCache) {
+        this.compiledLibraryCache = compiledLibraryCache;
+    }
+
+    public LibraryManager withCompiledLibraryCache(CompiledLibraryCache compiledLibraryCache) {
+        setCompiledLibraryCache(compiledLibraryCache);
+        return this;
+    }
+
+    public CompilationListener getCompilationListener() {
+        return compilationListener;
+    }
+
+    /**
+     * Sets a listener to be notified of the phases of the compilations using this library manager, including the
+     * compilations of included libraries.
+     */
+    public void setCompilationListener(CompilationListener compilationListener) {
+        this.compilationListener = compilationListener;
+    }
+
+    public LibraryManager withCompilationListener(CompilationListener compilationListener) {
+        setCompilationListener(compilationListener);
+        return this;
+    }
+
+    public Executor getIncludeExecutor() {
+        return includeExecutor;
+    }
+
+    /**
+     * Sets an executor used to compile included libraries concurrently. When set (and the cache is enabled), the
+     * libraries a library includes are compiled on the executor while the library is translated, and the
+     * translation uses them as it reaches each include, so independent includes are compiled in parallel.
+     *
+     * The output and the errors reported are the same as without an executor: a prefetched library is only used if
+     * it compiled without any errors, warnings or messages and is consistent with the libraries already resolved.
+     * Otherwise it is compiled again when its include is reached, as it would be without an executor. Compilation
+     * listeners are notified of the compilation of a prefetched library on the thread that compiled it.
+     */
+    public void setIncludeExecutor(Executor includeExecutor) {
+        this.includeExecutor = includeExecutor;
+    }
+
+    public LibraryManager withIncludeExecutor(Executor includeExecutor) {
+        setIncludeExecutor(includeExecutor);
+        return this;
+    }
+
+    public int getMaxConcurrentFetches() {
+        return fetchQueue != null ? fetchQueue.getMaxConcurrentFetches() : 0;
+    }
+
+    /**
+     * Sets the number of library sources that may be fetched concurrently ahead of their compilation. When set, the
+     * sources of the libraries a library includes are fetched (see LibrarySourceLoader.getLibrarySourceAsync) as
+     * soon as the library is preprocessed, so that includes served by an asynchronous provider (see
+     * AsyncLibrarySourceProvider) are fetched in parallel rather than one at a time. Zero, the default, fetches each
+     * source when its include is reached.
+     */
+    public void setMaxConcurrentFetches(int maxConcurrentFetches) {
+        if (maxConcurrentFetches < 0) {
+            throw new IllegalArgumentException("maxConcurrentFetches must not be negative.");
+        }
+
+        this.fetchQueue = maxConcurrentFetches > 0 ? new FetchQueue(maxConcurrentFetches) : null;
+    }
+
+    public LibraryManager withMaxConcurrentFetches(int maxConcurrentFetches) {
+        setMaxConcurrentFetches(maxConcurrentFetches);
+        return this;
+    }
+
+    public Duration getFetchTimeout() {
+        return fetchTimeout;
+    }
+
+    /**
+     * Sets how long to wait for a library source before failing the include, or null (the default) to wait
+     * indefinitely. When set, sources are fetched through LibrarySourceLoader.getLibrarySourceAsync.
+     */
+    public void setFetchTimeout(Duration fetchTimeout) {
+        this.fetchTimeout = fetchTimeout;
+    }
+
+    public LibraryManager withFetchTimeout(Duration fetchTimeout) {
+        setFetchTimeout(fetchTimeout);
+        return this;
+    }
+
+    public boolean isTrackSourceChanges() {
+        return trackSourceChanges;
+    }
+
+    /**
+     * Sets whether to record a digest of the CQL source of each library compiled, so that invalidateChangedLibraries
+     * can tell which sources have changed. Off by default, since recording the digest means reading each source into
+     * memory and hashing it.
+     */
+    public void setTrackSourceChanges(boolean trackSourceChanges) {
+        this.trackSourceChanges = trackSourceChanges;
+    }
+
+    public LibraryManager withTrackSourceChanges(boolean trackSourceChanges) {
+        setTrackSourceChanges(trackSourceChanges);
+        return this;
+    }
+
     public Map<String, CompiledLibrary> getCompiledLibraries() {
         return libraries;
     }
 
+    /**
+     * Returns the paths of the libraries that were compiled, or loaded, during the current or most recent top-level
+     * compilation, as opposed to reused from the libraries already resolved by this library manager. The library
+     * being compiled at the top level is not included.
+     */
+    public Set<String> getRebuiltLibraries() {
+        return Collections.unmodifiableSet(rebuiltLibraries);
+    }
+
+    /**
+     * Removes the given library, and the libraries that include it (directly or indirectly), from the libraries
+     * resolved by this library manager, so that they are compiled again when they are next included. The other
+     * libraries are reused. This is how a client that knows a library source changed (such as an editor) avoids
+     * recompiling every library.
+     *
+     * @return The paths of the libraries removed
+     */
+    public Set<String> invalidateLibrary(VersionedIdentifier libraryIdentifier) {
+        if (libraryIdentifier == null || libraryIdentifier.getId() == null) {
+            throw new IllegalArgumentException("libraryIdentifier is null.");
+        }
+
+        String libraryPath = NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId());
+        Set<String> invalidated = new LinkedHashSet<>();
+        if (libraries.containsKey(libraryPath)) {
+            invalidated.add(libraryPath);
+        }
+        return removeLibraries(invalidated);
+    }
+
+    /**
+     * Removes the libraries whose CQL source has changed (or can no longer be loaded) since they were compiled, and
+     * the libraries that include them (directly or indirectly), from the libraries resolved by this library manager,
+     * as invalidateLibrary does. The source of each library compiled from CQL is loaded again and compared with the
+     * source it was compiled from. Only the libraries compiled while trackSourceChanges is set are checked, libraries
+     * loaded from ELM, or cached by the client, are not.
+     *
+     * @return The paths of the libraries removed
+     */
+    public Set<String> invalidateChangedLibraries() {
+        Set<String> invalidated = new LinkedHashSet<>();
+        for (Map.Entry<String, CompiledLibrary> entry : libraries.entrySet()) {
+            SourceDigest sourceDigest = sourceDigests.get(entry.getKey());
+            if (sourceDigest == null) {
+                continue;
+            }
+
+            // The source is loaded as it was for the include, so that a different version it would now resolve to
+            // (such as a newer version for an include without a version) is detected
+            VersionedIdentifier identifier = sourceDigest.getLibraryIdentifier();
+            byte[] source;
+            try (InputStream cqlSource = loadLibrarySource(new VersionedIdentifier()
+                    .withSystem(identifier.getSystem()).withId(identifier.getId()).withVersion(identifier.getVersion()))) {
+                source = cqlSource != null ? cqlSource.readAllBytes() : null;
+            }
+            catch (IOException | RuntimeException e) {
+                source = null;
+            }
+
+            if (source == null || !MessageDigest.isEqual(sourceDigest.getDigest(), computeDigest(source))) {
+                invalidated.add(entry.getKey());
+            }
+        }
+
+        return removeLibraries(invalidated);
+    }
+
+    /*
+    Removes the given libraries and their dependents, the libraries that include them directly or indirectly. The
+    include graph is that of the resolved libraries, each of which records the libraries it includes.
+     */
+    private Set<String> removeLibraries(Set<String> libraryPaths) {
+        Set<String> removed = new LinkedHashSet<>(libraryPaths);
+        Deque<String> pending = new ArrayDeque<>(libraryPaths);
+        while (!pending.isEmpty()) {
+            String libraryPath = pending.pop();
+            for (Map.Entry<String, CompiledLibrary> entry : libraries.entrySet()) {
+                if (!removed.contains(entry.getKey()) && includes(entry.getValue(), libraryPath)) {
+                    removed.add(entry.getKey());
+                    pending.push(entry.getKey());
+                }
+            }
+        }
+
+        for (String libraryPath : removed) {
+            libraries.remove(libraryPath);
+            libraryKeys.remove(libraryPath);
+            sourceDigests.remove(libraryPath);
+        }
+
+        return removed;
+    }
+
+    private static boolean includes(CompiledLibrary library, String libraryPath) {
+        if (library.getLibrary() == null || library.getLibrary().getIncludes() == null) {
+            return false;
+        }
+
+        for (IncludeDef includeDef : library.getLibrary().getIncludes().getDef()) {
+            if (libraryPath.equals(includeDef.getPath())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+    The digest of the CQL source a library was compiled from, with the identifier of the library as it was requested
+    (by the include, or the client), which is how the source is loaded again to check whether it has changed
+     */
+    static class SourceDigest {
+        private final VersionedIdentifier libraryIdentifier;
+        private final byte[] digest;
+
+        SourceDigest(VersionedIdentifier libraryIdentifier, byte[] digest) {
+            this.libraryIdentifier = libraryIdentifier;
+            this.digest = digest;
+        }
+
+        VersionedIdentifier getLibraryIdentifier() {
+            return libraryIdentifier;
+        }
+
+        byte[] getDigest() {
+            return digest;
+        }
+    }
+
+    private static byte[] computeDigest(byte[] source) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(source);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
     /*
     A "well-known" library name is one that is allowed to resolve without a namespace in a namespace-aware context
      */
@@ -139,20 +463,33 @@ public class LibraryManager {
             }
         }
 
-        InputStream source = null;
         try {
+            // A source fetched ahead answers the probe without asking the providers again. With a fetch timeout,
+            // the probe is itself a fetch, which is kept for the compilation of the library.
+            CompletableFuture<byte[]> sourceFetch = getSourceFetch(libraryIdentifier);
+            if (sourceFetch != null) {
+                if (awaitSource(sourceFetch, libraryIdentifier) != null) {
+                    return true;
+                }
+                // Only the CQL source is fetched, the library may still be available in another form (such as ELM)
+                if (!(librarySourceLoader instanceof LibrarySourceLoaderExt)) {
+                    return false;
+                }
+            }
+
             if (librarySourceLoader instanceof LibrarySourceLoaderExt) {
                 return ((LibrarySourceLoaderExt) librarySourceLoader).isLibrarySourceAvailable(libraryIdentifier,
                         LibraryContentType.ANY);
             } else {
-                source = librarySourceLoader.getLibrarySource(libraryIdentifier);
+                // The source is only probed for, so it is closed rather than left open until it is collected
+                try (InputStream source = librarySourceLoader.getLibrarySource(libraryIdentifier)) {
+                    return source != null;
+                }
             }
 
         } catch (Exception e) {
             throw new CqlTranslatorIncludeException(e.getMessage(), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion(), e);
         }
-
-        return source != null;
     }
 
     public CompiledLibrary resolveLibrary(VersionedIdentifier libraryIdentifier, CqlTranslatorOptions options, List<CqlCompilerException> errors) {
@@ -181,9 +518,13 @@ public class LibraryManager {
             }
             return library;
         } else {
-            library = compileLibrary(libraryIdentifier, options, errors);
+            library = prefetcher != null ? takePrefetchedLibrary(libraryIdentifier, options) : null;
+            if (library == null) {
+                library = compileLibrary(libraryIdentifier, options, errors);
+            }
             if (!HasErrors(errors)) {
                 libraries.put(libraryPath, library);
+                rebuiltLibraries.add(libraryPath);
             }
         }
 
@@ -191,6 +532,245 @@ public class LibraryManager {
         return library;
     }
 
+    /*
+    Starts fetching the sources of the libraries included by the given (preprocessed) library and the model infos of
+    the models it uses, if concurrent fetches are enabled, and starts compiling the included libraries, if an include
+    executor is set. Called by the compiler before the library is translated. The includes are compiled within the
+    compilations under way, plus that of the library, so that include cycles are reported as they would be without
+    prefetching.
+     */
+    void prefetchLibraries(LibraryInfo libraryInfo, NamespaceInfo namespaceInfo, CqlTranslatorOptions options) {
+        if (libraryInfo == null || libraryInfo.getLibraryName() == null) {
+            return;
+        }
+
+        if (compilatonStack.isEmpty()) {
+            // A top-level compilation
+            if (prefetcher != null) {
+                prefetcher.close();
+                prefetcher = null;
+            }
+            cancelFetches();
+            if (includeExecutor != null && enableCache) {
+                prefetcher = new LibraryPrefetcher(includeExecutor, options);
+            }
+        }
+
+        for (UsingDefinitionInfo usingDefinition : libraryInfo.getUsingDefinitions()) {
+            // As the translation resolves the model, see Cql2ElmVisitor.visitUsingDefinition
+            String usingNamespaceName = usingDefinition.getNamespaceName() != null
+                    ? usingDefinition.getNamespaceName()
+                    : (modelManager.isWellKnownModelName(usingDefinition.getName()) || namespaceInfo == null
+                            ? null : namespaceInfo.getName());
+            String usingNamespaceUri = usingNamespaceName != null ? namespaceManager.resolveNamespaceUri(usingNamespaceName) : null;
+            if (usingNamespaceName == null || usingNamespaceUri != null) {
+                CompletableFuture<ModelInfo> modelInfoFetch = modelManager.prefetchModelInfo(new VersionedIdentifier()
+                        .withSystem(usingNamespaceUri)
+                        .withId(usingDefinition.getName())
+                        .withVersion(usingDefinition.getVersion()));
+                if (modelInfoFetch != null) {
+                    modelInfoFetches.add(modelInfoFetch);
+                }
+            }
+        }
+
+        if (prefetcher == null && fetchQueue == null) {
+            return;
+        }
+
+        String libraryNamespaceUri = libraryInfo.getNamespaceName() != null
+                ? namespaceManager.resolveNamespaceUri(libraryInfo.getNamespaceName())
+                : (namespaceInfo != null ? namespaceInfo.getUri() : null);
+        List<String> compilationStack = new ArrayList<>(compilatonStack);
+        compilationStack.add(NamespaceManager.getPath(libraryNamespaceUri, libraryInfo.getLibraryName()));
+
+        for (IncludeDefinitionInfo includeDefinition : libraryInfo.getIncludeDefinitions()) {
+            String includeNamespaceName = includeDefinition.getNamespaceName() != null
+                    ? includeDefinition.getNamespaceName()
+                    : (namespaceInfo != null ? namespaceInfo.getName() : null);
+            String includeNamespaceUri = includeNamespaceName != null
+                    ? namespaceManager.resolveNamespaceUri(includeNamespaceName) : null;
+            if (includeNamespaceName != null && includeNamespaceUri == null) {
+                // The translation reports the unknown namespace
+                continue;
+            }
+
+            VersionedIdentifier includeIdentifier = new VersionedIdentifier()
+                    .withSystem(includeNamespaceUri)
+                    .withId(includeDefinition.getName())
+                    .withVersion(includeDefinition.getVersion());
+            String includePath = NamespaceManager.getPath(includeNamespaceUri, includeDefinition.getName());
+            if (!libraries.containsKey(includePath) && !compilationStack.contains(includePath)) {
+                if (fetchQueue != null) {
+                    sourceFetches.computeIfAbsent(getPrefetchKey(includeIdentifier),
+                            k -> submitSourceFetch(includeIdentifier));
+                }
+                if (prefetcher != null) {
+                    prefetcher.prefetch(getPrefetchKey(includeIdentifier),
+                            () -> compilePrefetchedLibrary(includeIdentifier, compilationStack, options));
+                }
+            }
+        }
+    }
+
+    /*
+    Returns the fetch of the source of the given library that is under way, if there is one. With a fetch timeout,
+    sources are always fetched (so that the timeout applies), and a fetch is started and kept for the compilation of
+    the library if there is none.
+     */
+    private CompletableFuture<byte[]> getSourceFetch(VersionedIdentifier libraryIdentifier) {
+        return fetchTimeout != null
+                ? sourceFetches.computeIfAbsent(getPrefetchKey(libraryIdentifier), k -> submitSourceFetch(libraryIdentifier))
+                : sourceFetches.get(getPrefetchKey(libraryIdentifier));
+    }
+
+    /*
+    Starts fetching the source of the given library, through the fetch queue if concurrent fetches are enabled, so
+    that every fetch counts against the limit
+     */
+    private CompletableFuture<byte[]> submitSourceFetch(VersionedIdentifier libraryIdentifier) {
+        FetchQueue queue = fetchQueue;
+        return queue != null ? queue.submit(() -> fetchLibrarySource(libraryIdentifier)) : fetchLibrarySource(libraryIdentifier);
+    }
+
+    private InputStream loadLibrarySource(VersionedIdentifier libraryIdentifier) {
+        if (librarySourceLoader instanceof LibrarySourceLoaderExt) {
+            return ((LibrarySourceLoaderExt) librarySourceLoader).getLibrarySource(libraryIdentifier, LibraryContentType.CQL);
+        }
+        return librarySourceLoader.getLibrarySource(libraryIdentifier);
+    }
+
+    private CompletableFuture<byte[]> fetchLibrarySource(VersionedIdentifier libraryIdentifier) {
+        return librarySourceLoader.getLibrarySourceAsync(libraryIdentifier).thenApply(LibraryManager::readSource);
+    }
+
+    private static byte[] readSource(InputStream source) {
+        if (source == null) {
+            return null;
+        }
+
+        try (InputStream is = source) {
+            return is.readAllBytes();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+    Returns the CQL source of the given library, using the source fetched ahead if there is one.
+     */
+    private InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) throws IOException {
+        CompletableFuture<byte[]> sourceFetch = sourceFetches.remove(getPrefetchKey(libraryIdentifier));
+        if (sourceFetch == null) {
+            if (fetchTimeout == null) {
+                return loadLibrarySource(libraryIdentifier);
+            }
+            sourceFetch = submitSourceFetch(libraryIdentifier);
+        }
+
+        byte[] source = awaitSource(sourceFetch, libraryIdentifier);
+        return source != null ? new ByteArrayInputStream(source) : null;
+    }
+
+    private byte[] awaitSource(CompletableFuture<byte[]> sourceFetch, VersionedIdentifier libraryIdentifier) throws IOException {
+        String libraryPath = NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId());
+        try {
+            return FetchQueue.await(sourceFetch, fetchTimeout);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        catch (TimeoutException e) {
+            // The fetch is cancelled, so it is not used again
+            sourceFetches.remove(getPrefetchKey(libraryIdentifier), sourceFetch);
+            throw new CqlTranslatorIncludeException(String.format("Timed out loading source for library %s, version %s.",
+                    libraryPath, libraryIdentifier.getVersion()), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion(), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CqlTranslatorIncludeException(String.format("Interrupted while loading source for library %s, version %s.",
+                    libraryPath, libraryIdentifier.getVersion()), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion(), e);
+        }
+    }
+
+    private static String getPrefetchKey(VersionedIdentifier libraryIdentifier) {
+        return String.format("%s|%s", NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId()),
+                libraryIdentifier.getVersion());
+    }
+
+    /*
+    Compiles a prefetched library with its own library manager. The result is only kept if the library compiled
+    without any exceptions, otherwise it is compiled again when its include is reached, which reports them.
+     */
+    private LibraryPrefetcher.Result compilePrefetchedLibrary(VersionedIdentifier libraryIdentifier,
+            List<String> compilationStack, CqlTranslatorOptions options) {
+        LibraryManager libraryManager = new LibraryManager(this, compilationStack);
+        List<CqlCompilerException> errors = new ArrayList<>();
+        // The compilation may set the namespace of the identifier, as it does for an include
+        CompiledLibrary library = libraryManager.compileLibrary(new VersionedIdentifier()
+                .withSystem(libraryIdentifier.getSystem())
+                .withId(libraryIdentifier.getId())
+                .withVersion(libraryIdentifier.getVersion()), options, errors);
+        if (!errors.isEmpty()) {
+            return null;
+        }
+
+        libraryManager.libraries.put(NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId()), library);
+        // Nothing else modifies these libraries, the library managers that use them do so through overlays
+        for (CompiledLibrary compiledLibrary : libraryManager.libraries.values()) {
+            compiledLibrary.freeze();
+        }
+
+        return new LibraryPrefetcher.Result(library, libraryManager.libraries, libraryManager.libraryKeys,
+                libraryManager.sourceDigests);
+    }
+
+    /*
+    Returns the prefetched library for the given include, or null if there is none that can be used. A prefetched
+    library is only used if each library it was compiled against is either not yet resolved by this library manager,
+    or resolved to the same version, so that it is the library this library manager would compile.
+     */
+    private CompiledLibrary takePrefetchedLibrary(VersionedIdentifier libraryIdentifier, CqlTranslatorOptions options) {
+        LibraryPrefetcher.Result result = prefetcher.take(getPrefetchKey(libraryIdentifier), options);
+        if (result == null) {
+            return null;
+        }
+
+        for (Map.Entry<String, CompiledLibrary> entry : result.getLibraries().entrySet()) {
+            CompiledLibrary library = libraries.get(entry.getKey());
+            if (library != null && !Objects.equals(library.getIdentifier().getVersion(),
+                    entry.getValue().getIdentifier().getVersion())) {
+                return null;
+            }
+        }
+
+        CompiledLibrary overlay = null;
+        for (Map.Entry<String, CompiledLibrary> entry : result.getLibraries().entrySet()) {
+            CompiledLibrary library = libraries.get(entry.getKey());
+            if (library == null) {
+                library = entry.getValue().createOverlay();
+                libraries.put(entry.getKey(), library);
+                rebuiltLibraries.add(entry.getKey());
+                SourceDigest sourceDigest = result.getSourceDigests().get(entry.getKey());
+                if (sourceDigest != null) {
+                    sourceDigests.put(entry.getKey(), sourceDigest);
+                }
+            }
+            if (entry.getValue() == result.getLibrary()) {
+                overlay = library;
+            }
+        }
+        for (Map.Entry<String, String> entry : result.getLibraryKeys().entrySet()) {
+            libraryKeys.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+
+        if (libraryIdentifier.getSystem() == null && overlay.getIdentifier().getSystem() != null) {
+            libraryIdentifier.setSystem(overlay.getIdentifier().getSystem());
+        }
+        return overlay;
+    }
+
     private CompiledLibrary compileLibrary(VersionedIdentifier libraryIdentifier, CqlTranslatorOptions options, List<CqlCompilerException> errors) {
 
         CompiledLibrary result = null;
@@ -202,23 +782,56 @@ public class LibraryManager {
         String libraryPath = NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId());
 
         try {
-            InputStream cqlSource;
-            if (librarySourceLoader instanceof LibrarySourceLoaderExt) {
-                cqlSource = ((LibrarySourceLoaderExt) librarySourceLoader)
-                        .getLibrarySource(libraryIdentifier, LibraryContentType.CQL);
-            } else {
-                cqlSource = librarySourceLoader.getLibrarySource(libraryIdentifier);
+            InputStream cqlSource = getLibrarySource(libraryIdentifier);
+            if (cqlSource == null) {
+                throw new CqlTranslatorIncludeException(String.format("Could not load source for library %s, version %s.",
+                        libraryPath, libraryIdentifier.getVersion()), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion());
+            }
+
+            // The source is only read into memory if it is needed for the cache key or the digest
+            byte[] source = null;
+            if (compiledLibraryCache != null || trackSourceChanges) {
+                try (InputStream is = cqlSource) {
+                    source = is.readAllBytes();
+                }
+                cqlSource = new ByteArrayInputStream(source);
+            }
+
+            String key = null;
+            if (compiledLibraryCache != null) {
+                key = compiledLibraryCache.computeKey(libraryIdentifier.getSystem(), source, options);
+                result = loadCachedLibrary(key, libraryIdentifier, options);
             }
 
-            CqlCompiler compiler = new CqlCompiler(
-                    namespaceManager.getNamespaceInfoFromUri(libraryIdentifier.getSystem()),
-                    libraryIdentifier, modelManager, this, ucumService);
-            compiler.run(cqlSource, options);
-            if (errors != null) {
-                errors.addAll(compiler.getExceptions());
+            if (result == null) {
+                CqlCompiler compiler = new CqlCompiler(
+                        namespaceManager.getNamespaceInfoFromUri(libraryIdentifier.getSystem()),
+                        libraryIdentifier, modelManager, this, ucumService);
+                compiler.run(cqlSource, options);
+                if (errors != null) {
+                    errors.addAll(compiler.getExceptions());
+                }
+
+                result = compiler.getCompiledLibrary();
+                if (key != null && result != null && !HasErrors(compiler.getExceptions())) {
+                    storeCachedLibrary(key, result);
+                }
+            }
+
+            if (result != null && result.getIdentifier() != null) {
+                String resultPath = NamespaceManager.getPath(result.getIdentifier().getSystem(), result.getIdentifier().getId());
+                if (key != null) {
+                    libraryKeys.put(resultPath, key);
+                }
+                if (trackSourceChanges) {
+                    // Recorded so that invalidateChangedLibraries can tell whether the source has changed
+                    sourceDigests.put(resultPath, new SourceDigest(new VersionedIdentifier()
+                            .withSystem(libraryIdentifier.getSystem())
+                            .withId(libraryIdentifier.getId())
+                            .withVersion(libraryIdentifier.getVersion()), computeDigest(source)));
+                }
             }
 
-            result = compiler.getCompiledLibrary();
             if (libraryIdentifier.getVersion() != null && !libraryIdentifier.getVersion().equals(result.getIdentifier().getVersion())) {
                 throw new CqlTranslatorIncludeException(String.format("Library %s was included as version %s, but version %s of the library was found.",
                         libraryPath, libraryIdentifier.getVersion(), result.getIdentifier().getVersion()),
@@ -238,6 +851,107 @@ public class LibraryManager {
         }
     }
 
+    /*
+    Loads the library with the given key from the compiled library cache. The entry is only used if each library it
+    includes resolves to the same source it was compiled against, otherwise (or if the entry cannot be loaded) the
+    library is compiled as usual, so that any errors are reported by the compilation. The sources of the includes are
+    checked before any of them is resolved, so that a stale entry does not compile its includes only to compile them
+    again with the library.
+     */
+    private CompiledLibrary loadCachedLibrary(String key, VersionedIdentifier libraryIdentifier, CqlTranslatorOptions options) {
+        CompiledLibraryCache.Entry entry = compiledLibraryCache.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            CompiledLibrary result = entry.toCompiledLibrary(modelManager);
+            if (result.getLibrary().getIncludes() == null) {
+                return result;
+            }
+
+            List<VersionedIdentifier> includeIdentifiers = new ArrayList<>();
+            for (IncludeDef includeDef : result.getLibrary().getIncludes().getDef()) {
+                VersionedIdentifier includeIdentifier = new VersionedIdentifier()
+                        .withSystem(NamespaceManager.getUriPart(includeDef.getPath()))
+                        .withId(NamespaceManager.getNamePart(includeDef.getPath()))
+                        .withVersion(includeDef.getVersion());
+                if (!Objects.equals(getLibraryKey(includeIdentifier, options), entry.getIncludeKeys().get(includeDef.getPath()))) {
+                    return null;
+                }
+                includeIdentifiers.add(includeIdentifier);
+            }
+
+            // Keyed as the translation of the library would be (see LibraryBuilder.beginTranslation)
+            String libraryName = NamespaceManager.getPath(result.getIdentifier().getSystem(), result.getIdentifier().getId());
+            beginCompilation(libraryName);
+            try {
+                for (VersionedIdentifier includeIdentifier : includeIdentifiers) {
+                    List<CqlCompilerException> includeErrors = new ArrayList<>();
+                    resolveLibrary(includeIdentifier, options, includeErrors);
+                    String includePath = NamespaceManager.getPath(includeIdentifier.getSystem(), includeIdentifier.getId());
+                    if (HasErrors(includeErrors) || !Objects.equals(libraryKeys.get(includePath), entry.getIncludeKeys().get(includePath))) {
+                        return null;
+                    }
+                }
+            }
+            finally {
+                endCompilation(libraryName);
+            }
+
+            return result;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    /*
+    Returns the compiled library cache key of the CQL source the given library resolves to, or null if it has none.
+    The source of a library that is not yet resolved is fetched as it is for its compilation, and the fetch is kept
+    for the compilation.
+     */
+    private String getLibraryKey(VersionedIdentifier libraryIdentifier, CqlTranslatorOptions options) throws IOException {
+        String libraryPath = NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId());
+        if (libraries.containsKey(libraryPath)) {
+            return libraryKeys.get(libraryPath);
+        }
+
+        byte[] source;
+        CompletableFuture<byte[]> sourceFetch = getSourceFetch(libraryIdentifier);
+        if (sourceFetch != null) {
+            source = awaitSource(sourceFetch, libraryIdentifier);
+        }
+        else {
+            try (InputStream cqlSource = loadLibrarySource(libraryIdentifier)) {
+                source = cqlSource != null ? cqlSource.readAllBytes() : null;
+            }
+        }
+
+        return source != null ? compiledLibraryCache.computeKey(libraryIdentifier.getSystem(), source, options) : null;
+    }
+
+    private void storeCachedLibrary(String key, CompiledLibrary library) {
+        Map<String, String> includeKeys = new HashMap<>();
+        if (library.getLibrary().getIncludes() != null) {
+            for (IncludeDef includeDef : library.getLibrary().getIncludes().getDef()) {
+                String includeKey = libraryKeys.get(includeDef.getPath());
+                if (includeKey == null) {
+                    // The included library was not resolved from source, so changes to it cannot be detected
+                    return;
+                }
+                includeKeys.put(includeDef.getPath(), includeKey);
+            }
+        }
+
+        try {
+            compiledLibraryCache.put(key, library, includeKeys, modelManager);
+        }
+        catch (IOException e) {
+            // The cache is an optimization, failing to store an entry does not fail the compilation
+        }
+    }
+
     private CompiledLibrary tryCompiledLibraryElm(VersionedIdentifier libraryIdentifier, CqlTranslatorOptions options) {
         CompiledLibrary result = null;
         InputStream librarySource = null;
@@ -275,7 +989,8 @@ public class LibraryManager {
         CompiledLibrary compiledLibrary = null;
         try {
             if (type.equals(LibraryContentType.JSON)) {
-                library = ElmJsonLibraryReader.read(new InputStreamReader(librarySource));
+                // Read the bytes directly, rather than decoding them with the platform charset first
+                library = ElmJsonLibraryReader.read(librarySource);
             } else if (type.equals(LibraryContentType.XML)) {
                 library = ElmXmlLibraryReader.read(new InputStreamReader(librarySource));
             }
@@ -383,6 +1098,9 @@ public class LibraryManager {
             throw new IllegalArgumentException(String.format("Circular library reference %s.", libraryName));
         }
 
+        if (compilatonStack.isEmpty()) {
+            rebuiltLibraries.clear();
+        }
         compilatonStack.push(libraryName);
     }
 
@@ -395,5 +1113,31 @@ public class LibraryManager {
         if (!libraryName.equals(currentLibraryName)) {
             throw new IllegalArgumentException(String.format("Compilation stack imbalance for library %s.", libraryName));
         }
+
+        if (compilatonStack.isEmpty()) {
+            // The top-level compilation is complete, any prefetches not yet used are not needed
+            if (prefetcher != null) {
+                prefetcher.close();
+                prefetcher = null;
+            }
+            cancelFetches();
+        }
+    }
+
+    /*
+    Cancels the fetches of library sources and model infos started by this library manager that were not used,
+    releasing their places in the fetch queues. The model manager may be shared, so only the model info fetches this
+    library manager started are cancelled.
+     */
+    private void cancelFetches() {
+        for (CompletableFuture<byte[]> sourceFetch : sourceFetches.values()) {
+            sourceFetch.cancel(true);
+        }
+        sourceFetches.clear();
+        List<CompletableFuture<ModelInfo>> fetches = new ArrayList<>();
+        for (CompletableFuture<ModelInfo> fetch; (fetch = modelInfoFetches.poll()) != null; ) {
+            fetches.add(fetch);
+        }
+        modelManager.cancelModelInfoFetches(fetches);
     }
 }
@@ -0,0 +1,194 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * The included libraries being compiled ahead of the translation that includes them, for one top-level compilation
+ * (see LibraryManager.setIncludeExecutor). The prefetcher is shared by the library managers of the compilation, so
+ * an included library is compiled once however many libraries of the compilation include it.
+ *
+ * A prefetch is compiled on the executor, or by the first thread that needs it if the executor has not started it
+ * yet. A thread that needs a prefetch another thread is compiling waits for it, unless the other thread is (directly
+ * or through further prefetches) waiting for it, as it is when the libraries include each other. In that case the
+ * prefetch is not used, and the library is compiled by the thread that needs it, which reports the cycle.
+ */
+class LibraryPrefetcher {
+
+    /**
+     * A library compiled without any errors, warnings or messages, along with the libraries compiled or resolved
+     * for it, by library path, and their cache keys and source digests. The libraries are frozen, and are used
+     * through overlays.
+     */
+    static class Result {
+        private final CompiledLibrary library;
+        private final Map<String, CompiledLibrary> libraries;
+        private final Map<String, String> libraryKeys;
+        private final Map<String, LibraryManager.SourceDigest> sourceDigests;
+
+        Result(CompiledLibrary library, Map<String, CompiledLibrary> libraries, Map<String, String> libraryKeys,
+                Map<String, LibraryManager.SourceDigest> sourceDigests) {
+            this.library = library;
+            this.libraries = libraries;
+            this.libraryKeys = libraryKeys;
+            this.sourceDigests = sourceDigests;
+        }
+
+        CompiledLibrary getLibrary() {
+            return library;
+        }
+
+        Map<String, CompiledLibrary> getLibraries() {
+            return libraries;
+        }
+
+        Map<String, String> getLibraryKeys() {
+            return libraryKeys;
+        }
+
+        Map<String, LibraryManager.SourceDigest> getSourceDigests() {
+            return sourceDigests;
+        }
+    }
+
+    private static class Task {
+        private final Supplier<Result> compilation;
+        private final CompletableFuture<Result> result = new CompletableFuture<>();
+        // The thread compiling the library, guarded by the prefetcher
+        private Thread owner;
+
+        Task(Supplier<Result> compilation) {
+            this.compilation = compilation;
+        }
+
+        void compile() {
+            Result compiled = null;
+            try {
+                compiled = compilation.get();
+            }
+            catch (RuntimeException e) {
+                // The library is compiled again when it is needed, which reports the failure
+            }
+            finally {
+                result.complete(compiled);
+            }
+        }
+    }
+
+    private final Executor executor;
+    private final CqlTranslatorOptions options;
+    // Guarded by this
+    private final Map<String, Task> tasks = new HashMap<>();
+    private final Map<Thread, Task> waiting = new HashMap<>();
+    private boolean closed;
+
+    LibraryPrefetcher(Executor executor, CqlTranslatorOptions options) {
+        this.executor = executor;
+        this.options = options;
+    }
+
+    /**
+     * Starts compiling the library with the given key, unless it has already been started.
+     */
+    void prefetch(String key, Supplier<Result> compilation) {
+        Task task;
+        synchronized (this) {
+            if (closed || tasks.containsKey(key)) {
+                return;
+            }
+            task = new Task(compilation);
+            tasks.put(key, task);
+        }
+
+        try {
+            executor.execute(() -> {
+                if (claim(task)) {
+                    task.compile();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // The library is compiled by the first thread that needs it
+        }
+    }
+
+    /**
+     * Returns the prefetched library with the given key, waiting for it if it is being compiled, or null if the
+     * library was not prefetched for these options, could not be compiled cleanly, or cannot be waited for.
+     */
+    Result take(String key, CqlTranslatorOptions options) {
+        if (options != this.options) {
+            return null;
+        }
+
+        Thread current = Thread.currentThread();
+        Task task;
+        boolean claimed = false;
+        synchronized (this) {
+            task = tasks.get(key);
+            if (task == null) {
+                return null;
+            }
+
+            if (task.owner == null) {
+                if (closed) {
+                    return null;
+                }
+                task.owner = current;
+                claimed = true;
+            }
+            else if (!task.result.isDone()) {
+                if (dependsOn(task, current)) {
+                    return null;
+                }
+                waiting.put(current, task);
+            }
+        }
+
+        if (claimed) {
+            task.compile();
+        }
+
+        try {
+            return task.result.join();
+        }
+        finally {
+            synchronized (this) {
+                waiting.remove(current);
+            }
+        }
+    }
+
+    /**
+     * Stops compiling the prefetches that have not been started.
+     */
+    synchronized void close() {
+        closed = true;
+    }
+
+    private synchronized boolean claim(Task task) {
+        if (task.owner != null || closed) {
+            return false;
+        }
+
+        task.owner = Thread.currentThread();
+        return true;
+    }
+
+    // Whether the task is being compiled by the given thread, or by a thread (transitively) waiting for the given thread
+    private boolean dependsOn(Task task, Thread thread) {
+        for (Task current = task; current != null && !current.result.isDone(); current = waiting.get(current.owner)) {
+            if (current.owner == thread) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -1,6 +1,7 @@
 package org.cqframework.cql.cql2elm;
 
 import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
 import org.hl7.elm.r1.VersionedIdentifier;
 
 /**
@@ -13,6 +14,19 @@ public interface LibrarySourceLoader {
 
   InputStream getLibrarySource(VersionedIdentifier libraryIdentifier);
 
+  /**
+   * Starts fetching the CQL source of the given library. The future is completed with null if no provider has the
+   * library. This implementation fetches the source synchronously.
+   */
+  default CompletableFuture<InputStream> getLibrarySourceAsync(VersionedIdentifier libraryIdentifier) {
+    try {
+      return CompletableFuture.completedFuture(getLibrarySource(libraryIdentifier));
+    }
+    catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
   void registerProvider(LibrarySourceProvider provider);
   
 }
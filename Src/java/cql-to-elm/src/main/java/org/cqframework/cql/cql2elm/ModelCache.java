@@ -0,0 +1,92 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.Model;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A thread-safe cache of built models, keyed by (system, id, version).
+ *
+ * A ModelCache can be shared by any number of ModelManager instances, including instances used concurrently
+ * from different threads. The first request for a given model builds it; concurrent requests for the same
+ * model block until that build completes rather than duplicating it. Failed builds are not cached.
+ *
+ * Because the cache is keyed only by model identifier, managers sharing a cache are expected to have
+ * equivalent model info provider configurations.
+ */
+public class ModelCache {
+    private static final ModelCache sharedInstance = new ModelCache();
+
+    /**
+     * Returns the process-wide model cache.
+     */
+    public static ModelCache getSharedInstance() {
+        return sharedInstance;
+    }
+
+    private final ConcurrentHashMap<String, Future<Model>> models = new ConcurrentHashMap<>();
+
+    public static String getKey(VersionedIdentifier modelIdentifier) {
+        return String.format("%s|%s|%s",
+                modelIdentifier.getSystem() == null ? "" : modelIdentifier.getSystem(),
+                modelIdentifier.getId(),
+                modelIdentifier.getVersion() == null ? "" : modelIdentifier.getVersion());
+    }
+
+    public Model resolve(VersionedIdentifier modelIdentifier, Callable<Model> builder) {
+        String key = getKey(modelIdentifier);
+        Future<Model> future = models.get(key);
+        if (future == null) {
+            FutureTask<Model> task = new FutureTask<>(builder);
+            future = models.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(String.format("Interrupted while waiting for model %s, version %s.",
+                    modelIdentifier.getId(), modelIdentifier.getVersion()), e);
+        }
+        catch (ExecutionException e) {
+            models.remove(key, future);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IllegalArgumentException(String.format("Could not load model information for model %s, version %s.",
+                    modelIdentifier.getId(), modelIdentifier.getVersion()), e.getCause());
+        }
+    }
+
+    /**
+     * Registers an already built model under the given identifier, unless a model is already cached for it.
+     */
+    public void put(VersionedIdentifier modelIdentifier, Model model) {
+        FutureTask<Model> task = new FutureTask<>(() -> model);
+        if (models.putIfAbsent(getKey(modelIdentifier), task) == null) {
+            task.run();
+        }
+    }
+
+    public boolean contains(VersionedIdentifier modelIdentifier) {
+        return models.containsKey(getKey(modelIdentifier));
+    }
+
+    public int size() {
+        return models.size();
+    }
+
+    public void clear() {
+        models.clear();
+    }
+}
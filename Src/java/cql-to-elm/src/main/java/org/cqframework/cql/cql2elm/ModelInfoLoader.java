@@ -5,6 +5,7 @@ import org.hl7.elm_modelinfo.r1.ModelInfo;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class ModelInfoLoader {
 
@@ -52,6 +53,42 @@ public class ModelInfoLoader {
         return modelInfo;
     }
 
+    /**
+     * Loads the model info of the given model from the providers in order, as getModelInfo does. Each provider is
+     * only asked once the providers before it have not found the model. Asynchronous providers (see
+     * AsyncModelInfoProvider) are asked asynchronously, other providers are called on the thread that completed the
+     * previous load.
+     */
+    public CompletableFuture<ModelInfo> getModelInfoAsync(VersionedIdentifier modelIdentifier) {
+        checkModelIdentifier(modelIdentifier);
+        CompletableFuture<ModelInfo> result = CompletableFuture.completedFuture(null);
+        for (ModelInfoProvider provider : new ArrayList<>(providers)) {
+            result = result.thenCompose(modelInfo -> modelInfo != null
+                    ? CompletableFuture.completedFuture(modelInfo)
+                    : loadAsync(provider, modelIdentifier));
+        }
+
+        return result.thenApply(modelInfo -> {
+            if (modelInfo == null) {
+                throw new IllegalArgumentException(String.format("Could not resolve model info provider for model %s, version %s.",
+                        modelIdentifier.getSystem() == null ? modelIdentifier.getId() : NamespaceManager.getPath(modelIdentifier.getSystem(), modelIdentifier.getId()),
+                        modelIdentifier.getVersion()));
+            }
+            return modelInfo;
+        });
+    }
+
+    private static CompletableFuture<ModelInfo> loadAsync(ModelInfoProvider provider, VersionedIdentifier modelIdentifier) {
+        try {
+            return provider instanceof AsyncModelInfoProvider
+                    ? ((AsyncModelInfoProvider) provider).loadAsync(modelIdentifier)
+                    : CompletableFuture.completedFuture(provider.load(modelIdentifier));
+        }
+        catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public void registerModelInfoProvider(ModelInfoProvider provider) {
         registerModelInfoProvider(provider, false);
     }
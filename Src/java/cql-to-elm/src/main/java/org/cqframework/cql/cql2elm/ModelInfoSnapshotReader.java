@@ -0,0 +1,147 @@
+package org.cqframework.cql.cql2elm;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationModule;
+import org.hl7.cql_annotations.r1.CqlToElmBase;
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+import org.hl7.elm_modelinfo.r1.TypeInfo;
+import org.hl7.elm_modelinfo.r1.TypeSpecifier;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes precompiled (binary) model info snapshots.
+ *
+ * A snapshot is the Smile (binary JSON) encoding of a ModelInfo, written next to the model info XML resource it was
+ * generated from, with the .xml extension replaced by .smile. Snapshots for the bundled model infos are generated at
+ * build time by the quick and qdm modules using the main method of this class. The well-known model info providers
+ * load resources through readResource, which prefers a snapshot and falls back to the XML when no snapshot exists
+ * or it cannot be read.
+ */
+public class ModelInfoSnapshotReader {
+    public static final String SNAPSHOT_EXTENSION = ".smile";
+
+    static SmileMapper mapper = SmileMapper.builder()
+            .defaultMergeable(true)
+            .enable(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+            .enable(MapperFeature.USE_BASE_TYPE_AS_DEFAULT_IMPL)
+            .addModule(new JaxbAnnotationModule())
+            .addMixIn(TypeInfo.class, TypeInfoMixIn.class)
+            .addMixIn(TypeSpecifier.class, TypeSpecifierMixIn.class)
+            .addMixIn(CqlToElmBase.class, CqlToElmBaseMixIn.class)
+            .build();
+
+    private ModelInfoSnapshotReader() {
+    }
+
+    public static String getSnapshotName(String xmlResourceName) {
+        if (xmlResourceName.endsWith(".xml")) {
+            return xmlResourceName.substring(0, xmlResourceName.length() - ".xml".length()) + SNAPSHOT_EXTENSION;
+        }
+
+        return xmlResourceName + SNAPSHOT_EXTENSION;
+    }
+
+    /**
+     * Loads the model info for the given XML resource, using the snapshot for the resource if one is available.
+     * @param xmlResourceName The absolute classpath resource name of the model info XML
+     */
+    public static ModelInfo readResource(String xmlResourceName) throws IOException {
+        URL snapshot = ModelInfoSnapshotReader.class.getResource(getSnapshotName(xmlResourceName));
+        if (snapshot != null) {
+            try {
+                return read(snapshot);
+            }
+            catch (IOException e) {
+                // Fall through to the XML source if the snapshot is unreadable (e.g. written by a different version)
+            }
+        }
+
+        InputStream xml = ModelInfoSnapshotReader.class.getResourceAsStream(xmlResourceName);
+        if (xml == null) {
+            throw new FileNotFoundException(String.format("Could not find model info resource %s.", xmlResourceName));
+        }
+
+        try (InputStream is = xml) {
+            return ModelInfoXmlReader.readValue(is, ModelInfo.class);
+        }
+    }
+
+    public static ModelInfo read(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return read(Paths.get(url.toURI()));
+            }
+            catch (URISyntaxException e) {
+                // Not representable as a path, read it as a stream
+            }
+        }
+
+        try (InputStream is = url.openStream()) {
+            return read(is);
+        }
+    }
+
+    /**
+     * Reads a snapshot file using memory-mapped I/O.
+     */
+    public static ModelInfo read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return mapper.readValue(new ByteBufferBackedInputStream(buffer), ModelInfo.class);
+        }
+    }
+
+    public static ModelInfo read(InputStream inputStream) throws IOException {
+        return mapper.readValue(inputStream, ModelInfo.class);
+    }
+
+    public static void write(ModelInfo modelInfo, OutputStream outputStream) throws IOException {
+        mapper.writeValue(outputStream, modelInfo);
+    }
+
+    /**
+     * Generates snapshots for every model info XML file under a source directory.
+     *
+     * Usage: ModelInfoSnapshotReader &lt;sourceDirectory&gt; &lt;outputDirectory&gt;
+     *
+     * Files named *-modelinfo*.xml are converted, and the snapshot is written to the same relative location under the
+     * output directory so that it is packaged alongside the XML resource.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: ModelInfoSnapshotReader <sourceDirectory> <outputDirectory>");
+        }
+
+        Path source = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        try (Stream<Path> files = Files.walk(source)) {
+            for (Path file : (Iterable<Path>)files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (!Files.isRegularFile(file) || !fileName.contains("-modelinfo") || !fileName.endsWith(".xml")) {
+                    continue;
+                }
+
+                ModelInfo modelInfo;
+                try (InputStream is = Files.newInputStream(file)) {
+                    modelInfo = ModelInfoXmlReader.readValue(is, ModelInfo.class);
+                }
+
+                Path target = output.resolve(source.relativize(file).toString()).resolveSibling(getSnapshotName(fileName));
+                Files.createDirectories(target.getParent());
+                try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(target))) {
+                    write(modelInfo, os);
+                }
+            }
+        }
+    }
+}
@@ -2,8 +2,10 @@ package org.cqframework.cql.cql2elm;
 
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
@@ -108,4 +110,27 @@ public class ModelInfoXmlReader {
     public static void writeValue(Object value, Writer dest) throws IOException {
         mapper.writeValue(dest, value);
     }
+
+    /**
+     * Writes the value to the given writer as it is serialized, without buffering the document. The writer is not
+     * closed.
+     * @param compact Whether to omit the indentation
+     */
+    public static void writeValue(Object value, Writer dest, boolean compact) throws IOException {
+        getWriter(compact).writeValue(dest, value);
+    }
+
+    /**
+     * Writes the value to the given stream (UTF-8 encoded) as it is serialized, without buffering the document. The
+     * stream is not closed.
+     * @param compact Whether to omit the indentation
+     */
+    public static void writeValue(Object value, OutputStream dest, boolean compact) throws IOException {
+        getWriter(compact).writeValue(dest, value);
+    }
+
+    private static ObjectWriter getWriter(boolean compact) {
+        ObjectWriter writer = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return compact ? writer.without(SerializationFeature.INDENT_OUTPUT) : writer;
+    }
 }
@@ -5,10 +5,15 @@ import org.cqframework.cql.cql2elm.model.SystemModel;
 import org.hl7.elm.r1.VersionedIdentifier;
 import org.hl7.elm_modelinfo.r1.ModelInfo;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by Bryn on 12/29/2016.
@@ -16,10 +21,16 @@ import java.util.Set;
 public class ModelManager {
     private NamespaceManager namespaceManager;
     private ModelInfoLoader modelInfoLoader;
-    private final Map<String, Model> models = new HashMap<>();
-    private final Set<String> loadingModels = new HashSet<>();
-    private final Map<String, Model> modelsByUri = new HashMap<>();
+    private final Map<String, Model> models = new ConcurrentHashMap<>();
+    private final ThreadLocal<Set<String>> loadingModels = ThreadLocal.withInitial(HashSet::new);
+    private final Map<String, Model> modelsByUri = new ConcurrentHashMap<>();
     private boolean enableDefaultModelInfoLoading = true;
+    private ModelCache modelCache;
+    private boolean enableLazyTypeResolution = false;
+    private FetchQueue fetchQueue;
+    private Duration fetchTimeout;
+    // Model infos being loaded ahead of their use, see prefetchModelInfo
+    private final Map<String, CompletableFuture<ModelInfo>> modelInfoFetches = new ConcurrentHashMap<>();
 
     public ModelManager() {
         namespaceManager = new NamespaceManager();
@@ -43,6 +54,24 @@ public class ModelManager {
         initialize();
     }
 
+    /**
+     * Creates a model manager that resolves models through the given cache. Models built by any manager
+     * sharing the cache are reused, and concurrent requests for the same model share a single build.
+     * Use ModelCache.getSharedInstance() for a process-wide cache.
+     */
+    public ModelManager(ModelCache modelCache) {
+        namespaceManager = new NamespaceManager();
+        this.modelCache = modelCache;
+        initialize();
+    }
+
+    public ModelManager(NamespaceManager namespaceManager, boolean enableDefaultModelInfoLoading, ModelCache modelCache) {
+        this.namespaceManager = namespaceManager;
+        this.enableDefaultModelInfoLoading = enableDefaultModelInfoLoading;
+        this.modelCache = modelCache;
+        initialize();
+    }
+
     private void initialize() {
         modelInfoLoader = new ModelInfoLoader(enableDefaultModelInfoLoading);
     }
@@ -59,6 +88,137 @@ public class ModelManager {
         return enableDefaultModelInfoLoading;
     }
 
+    public ModelCache getModelCache() {
+        return this.modelCache;
+    }
+
+    /*
+    When enabled, models built by this manager resolve their types on first use rather than importing every type
+    in the model info up front
+     */
+    public void enableLazyTypeResolution() { this.enableLazyTypeResolution = true; }
+
+    public ModelManager withEnableLazyTypeResolution() {
+        enableLazyTypeResolution();
+        return this;
+    }
+
+    public void disableLazyTypeResolution() { this.enableLazyTypeResolution = false; }
+
+    public boolean isLazyTypeResolutionEnabled() { return enableLazyTypeResolution; }
+
+    public int getMaxConcurrentFetches() {
+        return fetchQueue != null ? fetchQueue.getMaxConcurrentFetches() : 0;
+    }
+
+    /**
+     * Sets the number of model infos that may be loaded concurrently ahead of their use (see prefetchModelInfo).
+     * Zero, the default, loads each model info when the model is first resolved.
+     */
+    public void setMaxConcurrentFetches(int maxConcurrentFetches) {
+        if (maxConcurrentFetches < 0) {
+            throw new IllegalArgumentException("maxConcurrentFetches must not be negative.");
+        }
+
+        this.fetchQueue = maxConcurrentFetches > 0 ? new FetchQueue(maxConcurrentFetches) : null;
+    }
+
+    public ModelManager withMaxConcurrentFetches(int maxConcurrentFetches) {
+        setMaxConcurrentFetches(maxConcurrentFetches);
+        return this;
+    }
+
+    public Duration getFetchTimeout() {
+        return fetchTimeout;
+    }
+
+    /**
+     * Sets how long to wait for a model info to load before failing the resolution of the model, or null (the
+     * default) to wait indefinitely. When set, model infos are loaded through ModelInfoLoader.getModelInfoAsync.
+     */
+    public void setFetchTimeout(Duration fetchTimeout) {
+        this.fetchTimeout = fetchTimeout;
+    }
+
+    public ModelManager withFetchTimeout(Duration fetchTimeout) {
+        setFetchTimeout(fetchTimeout);
+        return this;
+    }
+
+    /**
+     * Starts loading the model info of the given model, if concurrent fetches are enabled (see
+     * setMaxConcurrentFetches) and the model is not already resolved. The model info is used when the model is
+     * resolved. The library manager calls this for the models a library uses before the library is translated.
+     *
+     * @return The fetch started by this call, or null if none was started (including when the model info is already
+     * being fetched), which the caller may pass to cancelModelInfoFetches if it does not resolve the model
+     */
+    public CompletableFuture<ModelInfo> prefetchModelInfo(VersionedIdentifier modelIdentifier) {
+        FetchQueue queue = fetchQueue;
+        if (queue == null || models.containsKey(NamespaceManager.getPath(modelIdentifier.getSystem(), modelIdentifier.getId()))) {
+            return null;
+        }
+
+        VersionedIdentifier key = new VersionedIdentifier()
+                .withSystem(modelIdentifier.getSystem()).withId(modelIdentifier.getId()).withVersion(modelIdentifier.getVersion());
+        // A model in the model cache is shared rather than built, so its model info is not needed
+        if (modelCache != null && modelCache.contains(key)) {
+            return null;
+        }
+
+        AtomicReference<CompletableFuture<ModelInfo>> started = new AtomicReference<>();
+        modelInfoFetches.computeIfAbsent(getFetchKey(key), k -> {
+            started.set(queue.submit(() -> modelInfoLoader.getModelInfoAsync(key)));
+            return started.get();
+        });
+        return started.get();
+    }
+
+    /**
+     * Cancels those of the given fetches (as returned by prefetchModelInfo) that have not been used, releasing their
+     * places in the fetch queue. A fetch already taken to resolve its model is left to complete, so fetches started
+     * for one compilation never fail the resolution of a model by another compilation sharing this model manager.
+     * The library manager calls this with the fetches it started when a top-level compilation is complete.
+     */
+    public void cancelModelInfoFetches(Collection<CompletableFuture<ModelInfo>> fetches) {
+        for (CompletableFuture<ModelInfo> fetch : fetches) {
+            if (modelInfoFetches.values().remove(fetch)) {
+                fetch.cancel(true);
+            }
+        }
+    }
+
+    private static String getFetchKey(VersionedIdentifier modelIdentifier) {
+        return String.format("%s|%s", NamespaceManager.getPath(modelIdentifier.getSystem(), modelIdentifier.getId()),
+                modelIdentifier.getVersion());
+    }
+
+    private ModelInfo getModelInfo(VersionedIdentifier modelIdentifier) {
+        CompletableFuture<ModelInfo> fetch = modelInfoFetches.remove(getFetchKey(modelIdentifier));
+        if (fetch == null) {
+            if (fetchTimeout == null) {
+                return modelInfoLoader.getModelInfo(modelIdentifier);
+            }
+            FetchQueue queue = fetchQueue;
+            fetch = queue != null
+                    ? queue.submit(() -> modelInfoLoader.getModelInfoAsync(modelIdentifier))
+                    : modelInfoLoader.getModelInfoAsync(modelIdentifier);
+        }
+
+        try {
+            return FetchQueue.await(fetch, fetchTimeout);
+        }
+        catch (TimeoutException e) {
+            throw new IllegalArgumentException(String.format("Timed out loading model information for model %s, version %s.",
+                    modelIdentifier.getId(), modelIdentifier.getVersion()), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException(String.format("Interrupted while loading model information for model %s, version %s.",
+                    modelIdentifier.getId(), modelIdentifier.getVersion()), e);
+        }
+    }
+
     /*
     A "well-known" model name is one that is allowed to resolve without a namespace in a namespace-aware context
      */
@@ -90,12 +250,12 @@ public class ModelManager {
         String modelPath = NamespaceManager.getPath(identifier.getSystem(), identifier.getId());
         pushLoading(modelPath);
         try {
-            ModelInfo modelInfo = modelInfoLoader.getModelInfo(identifier);
+            ModelInfo modelInfo = getModelInfo(identifier);
             if (identifier.getId().equals("System")) {
                 model = new SystemModel(modelInfo);
             }
             else {
-                model = new Model(modelInfo, this);
+                model = new Model(modelInfo, this, enableLazyTypeResolution);
             }
         }
         catch (ClassNotFoundException e) {
@@ -109,15 +269,37 @@ public class ModelManager {
         return model;
     }
 
-    private void pushLoading(String modelId) {
-        if (loadingModels.contains(modelId)) {
+    private void checkLoading(String modelId) {
+        if (loadingModels.get().contains(modelId)) {
             throw new IllegalArgumentException(String.format("Circular model reference %s", modelId));
         }
-        loadingModels.add(modelId);
+    }
+
+    private void pushLoading(String modelId) {
+        checkLoading(modelId);
+        loadingModels.get().add(modelId);
     }
 
     private void popLoading(String modelId) {
-        loadingModels.remove(modelId);
+        loadingModels.get().remove(modelId);
+    }
+
+    private Model buildOrShareModel(VersionedIdentifier identifier) {
+        if (modelCache == null) {
+            return buildModel(identifier);
+        }
+
+        // Check for circularity before consulting the cache, waiting on our own in-flight build would never return
+        checkLoading(NamespaceManager.getPath(identifier.getSystem(), identifier.getId()));
+        VersionedIdentifier key = new VersionedIdentifier()
+                .withSystem(identifier.getSystem()).withId(identifier.getId()).withVersion(identifier.getVersion());
+        Model model = modelCache.resolve(key, () -> buildModel(key));
+        if (key.getVersion() == null && model.getModelInfo().getVersion() != null) {
+            modelCache.put(new VersionedIdentifier().withSystem(key.getSystem()).withId(key.getId())
+                    .withVersion(model.getModelInfo().getVersion()), model);
+        }
+
+        return model;
     }
 
     public Model resolveModel(String modelName) {
@@ -132,9 +314,14 @@ public class ModelManager {
         String modelPath = NamespaceManager.getPath(modelIdentifier.getSystem(), modelIdentifier.getId());
         Model model = models.get(modelPath);
         if (model == null) {
-            model = buildModel(modelIdentifier);
-            models.put(modelPath, model);
-            modelsByUri.put(model.getModelInfo().getUrl(), model);
+            model = buildOrShareModel(modelIdentifier);
+            Model existing = models.putIfAbsent(modelPath, model);
+            if (existing != null) {
+                model = existing;
+            }
+            else if (model.getModelInfo().getUrl() != null) {
+                modelsByUri.put(model.getModelInfo().getUrl(), model);
+            }
         }
 
         if (modelIdentifier.getVersion() != null && !modelIdentifier.getVersion().equals(model.getModelInfo().getVersion())) {
@@ -146,7 +333,7 @@ public class ModelManager {
     }
 
     public Model resolveModelByUri(String namespaceUri) {
-        Model model = modelsByUri.get(namespaceUri);
+        Model model = namespaceUri != null ? modelsByUri.get(namespaceUri) : null;
         if (model == null) {
             throw new IllegalArgumentException(String.format("Could not resolve model with namespace %s", namespaceUri));
         }
@@ -2,12 +2,14 @@ package org.cqframework.cql.cql2elm;
 
 import org.hl7.elm.r1.VersionedIdentifier;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Used by LibraryManager to manage a set of library source providers that
@@ -78,7 +80,6 @@ public class PriorityLibrarySourceLoader implements LibrarySourceLoaderExt, Name
     public boolean isLibrarySourceAvailable(VersionedIdentifier libraryIdentifier, LibraryContentType type) {
         validateInput(libraryIdentifier, type);
 
-        InputStream source;
         for (LibrarySourceProvider provider : PROVIDERS) {
             if (provider instanceof LibrarySourceProviderExt) {
                 LibrarySourceProviderExt providerExt = (LibrarySourceProviderExt) provider;
@@ -86,8 +87,14 @@ public class PriorityLibrarySourceLoader implements LibrarySourceLoaderExt, Name
                     return true;
                 }
             } else {
-                source = provider.getLibrarySource(libraryIdentifier);
-                if (source != null) {
+                // The source is only probed for, so it is closed rather than left open until it is collected
+                try (InputStream source = provider.getLibrarySource(libraryIdentifier)) {
+                    if (source != null) {
+                        return true;
+                    }
+                }
+                catch (IOException e) {
+                    // The source was found, it just could not be closed
                     return true;
                 }
             }
@@ -100,6 +107,44 @@ public class PriorityLibrarySourceLoader implements LibrarySourceLoaderExt, Name
         return getLibrarySource(libraryIdentifier, LibraryContentType.CQL);
     }
 
+    /**
+     * Fetches the CQL source of the given library from the providers in priority order, as getLibrarySource does.
+     * Each provider is only asked once the providers before it have not found the library. Asynchronous providers
+     * (see AsyncLibrarySourceProvider) are asked asynchronously, other providers are called on the thread that
+     * completed the previous fetch.
+     */
+    @Override
+    public CompletableFuture<InputStream> getLibrarySourceAsync(VersionedIdentifier libraryIdentifier) {
+        validateInput(libraryIdentifier, LibraryContentType.CQL);
+        CompletableFuture<InputStream> result = CompletableFuture.completedFuture(null);
+        for (LibrarySourceProvider provider : new ArrayList<>(PROVIDERS)) {
+            result = result.thenCompose(source -> source != null
+                    ? CompletableFuture.completedFuture(source)
+                    : getLibrarySourceAsync(provider, libraryIdentifier));
+        }
+
+        return result;
+    }
+
+    private static CompletableFuture<InputStream> getLibrarySourceAsync(LibrarySourceProvider provider, VersionedIdentifier libraryIdentifier) {
+        try {
+            if (provider instanceof AsyncLibrarySourceProvider) {
+                return ((AsyncLibrarySourceProvider) provider).getLibrarySourceAsync(libraryIdentifier);
+            }
+
+            if (provider instanceof LibrarySourceProviderExt) {
+                LibrarySourceProviderExt providerExt = (LibrarySourceProviderExt) provider;
+                return CompletableFuture.completedFuture(providerExt.isLibrarySourceAvailable(libraryIdentifier, LibraryContentType.CQL)
+                        ? providerExt.getLibrarySource(libraryIdentifier, LibraryContentType.CQL) : null);
+            }
+
+            return CompletableFuture.completedFuture(provider.getLibrarySource(libraryIdentifier));
+        }
+        catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     private NamespaceManager namespaceManager;
 
     @Override
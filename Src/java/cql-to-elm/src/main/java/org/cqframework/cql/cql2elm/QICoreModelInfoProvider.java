@@ -27,15 +27,12 @@ public class QICoreModelInfoProvider implements ModelInfoProvider {
             try {
                 switch (localVersion) {
                     case "4.0.0":
-                        return ModelInfoXmlReader.readValue(QICoreModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/qicore-modelinfo-4.0.0.xml"),
-                                ModelInfo.class);
+                        return ModelInfoSnapshotReader.readResource("/org/hl7/fhir/qicore-modelinfo-4.0.0.xml");
                     case "4.1.0":
-                        return ModelInfoXmlReader.readValue(QICoreModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/qicore-modelinfo-4.1.0.xml"),
-                                ModelInfo.class);
+                        return ModelInfoSnapshotReader.readResource("/org/hl7/fhir/qicore-modelinfo-4.1.0.xml");
                     case "4.1.1":
                     default:
-                        return ModelInfoXmlReader.readValue(QICoreModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/qicore-modelinfo-4.1.1.xml"),
-                                ModelInfo.class);
+                        return ModelInfoSnapshotReader.readResource("/org/hl7/fhir/qicore-modelinfo-4.1.1.xml");
                 }
             } catch (IOException e) {
                 e.printStackTrace();
@@ -31,8 +31,7 @@ public class QuickFhirModelInfoProvider implements ModelInfoProvider {
                 switch (localVersion) {
                     case "3.0.1":
                     case "":
-                        return ModelInfoXmlReader.readValue(QuickFhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/quickfhir-modelinfo-3.0.1.xml"),
-                                ModelInfo.class);
+                        return ModelInfoSnapshotReader.readResource("/org/hl7/fhir/quickfhir-modelinfo-3.0.1.xml");
                 }
             } catch (IOException e) {
                 e.printStackTrace();
@@ -28,14 +28,11 @@ public class QuickModelInfoProvider implements ModelInfoProvider {
             try {
                 switch (localVersion) {
                     case "3.3.0":
-                        return ModelInfoXmlReader.readValue(QuickModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/quick-modelinfo-3.3.0.xml"),
-                                ModelInfo.class);
+                        return ModelInfoSnapshotReader.readResource("/org/hl7/fhir/quick-modelinfo-3.3.0.xml");
                     case "3.0.0":
-                        return ModelInfoXmlReader.readValue(QuickModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/quick-modelinfo-3.0.0.xml"),
-                                ModelInfo.class);
+                        return ModelInfoSnapshotReader.readResource("/org/hl7/fhir/quick-modelinfo-3.0.0.xml");
                     default:
-                        return ModelInfoXmlReader.readValue(QuickModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/quick-modelinfo.xml"),
-                                ModelInfo.class);
+                        return ModelInfoSnapshotReader.readResource("/org/hl7/fhir/quick-modelinfo.xml");
                 }
             } catch (IOException e) {
                 e.printStackTrace();
@@ -171,7 +171,7 @@ public class SystemMethodResolver {
             repeat.setScope("$this");
             // TODO: This isn't quite right, it glosses over the fact that the type of the result may include the result of invoking the element expression on intermediate results
             if (isSingular) {
-                repeat.setResultType(new ListType(select.getResultType()));
+                repeat.setResultType(CanonicalTypes.listOf(select.getResultType()));
             }
             else {
                 repeat.setResultType(select.getResultType());
@@ -211,7 +211,7 @@ public class SystemMethodResolver {
             letRef = of.createQueryLetRef().withName("$a");
             letRef.setResultType(select.getResultType());
             returnClause.setExpression(letRef);
-            returnClause.setResultType(isSingular ? letRef.getResultType() : new ListType(letRef.getResultType()));
+            returnClause.setResultType(isSingular ? letRef.getResultType() : CanonicalTypes.listOf(letRef.getResultType()));
 
             Query query = createQuery(source, let, where, returnClause);
 
@@ -272,7 +272,7 @@ public class SystemMethodResolver {
                 ReturnClause returnClause = of.createReturnClause();
                 returnClause.setExpression(builder.createLiteral(Boolean.valueOf(true)));
                 if (query.getResultType() instanceof ListType) {
-                    returnClause.setResultType(new ListType(returnClause.getExpression().getResultType()));
+                    returnClause.setResultType(CanonicalTypes.listOf(returnClause.getExpression().getResultType()));
                 }
                 else {
                     returnClause.setResultType(returnClause.getExpression().getResultType());
@@ -296,10 +296,10 @@ public class SystemMethodResolver {
                 Set<DataType> dataTypes = new java.util.HashSet<DataType>();
                 gatherChildTypes(target.getResultType(), false, dataTypes);
                 if (dataTypes.size() == 1) {
-                    children.setResultType(new ListType((DataType)dataTypes.toArray()[0]));
+                    children.setResultType(CanonicalTypes.listOf((DataType)dataTypes.toArray()[0]));
                 }
                 else {
-                    children.setResultType(new ListType(new ChoiceType(dataTypes)));
+                    children.setResultType(CanonicalTypes.listOf(CanonicalTypes.choiceOf(dataTypes)));
                 }
                 return children;
             }
@@ -311,7 +311,7 @@ public class SystemMethodResolver {
                 elements.add(argument);
                 DataType elementType = builder.ensureCompatibleTypes(target.getResultType(), argument.getResultType());
                 org.hl7.elm.r1.List list = of.createList();
-                list.setResultType(new ListType(elementType));
+                list.setResultType(CanonicalTypes.listOf(elementType));
                 list.getElement().add(builder.ensureCompatible(target, elementType));
                 list.getElement().add(builder.ensureCompatible(argument, elementType));
                 ArrayList<Expression> params = new ArrayList<Expression>();
@@ -346,10 +346,10 @@ public class SystemMethodResolver {
                 Set<DataType> dataTypes = new java.util.HashSet<DataType>();
                 gatherChildTypes(target.getResultType(), true, dataTypes);
                 if (dataTypes.size() == 1) {
-                    descendents.setResultType(new ListType((DataType)dataTypes.toArray()[0]));
+                    descendents.setResultType(CanonicalTypes.listOf((DataType)dataTypes.toArray()[0]));
                 }
                 else {
-                    descendents.setResultType(new ListType(new ChoiceType(dataTypes)));
+                    descendents.setResultType(CanonicalTypes.listOf(CanonicalTypes.choiceOf(dataTypes)));
                 }
                 return descendents;
             }
@@ -28,12 +28,10 @@ public class UsCoreModelInfoProvider implements ModelInfoProvider {
             try {
                 switch (localVersion) {
                     case "3.1.0":
-                        return ModelInfoXmlReader.readValue(QuickModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/uscore-modelinfo-3.1.0.xml"),
-                                ModelInfo.class);
+                        return ModelInfoSnapshotReader.readResource("/org/hl7/fhir/uscore-modelinfo-3.1.0.xml");
                     case "3.1.1":
                     default:
-                        return ModelInfoXmlReader.readValue(QuickModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/uscore-modelinfo-3.1.1.xml"),
-                                ModelInfo.class);
+                        return ModelInfoSnapshotReader.readResource("/org/hl7/fhir/uscore-modelinfo-3.1.1.xml");
                 }
             } catch (IOException e) {
                 e.printStackTrace();
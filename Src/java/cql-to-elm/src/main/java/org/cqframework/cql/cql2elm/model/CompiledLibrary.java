@@ -12,10 +12,47 @@ import java.util.List;
 public class CompiledLibrary {
     private VersionedIdentifier identifier;
     private Library library;
-    private final Map<String, Element> namespace = new HashMap<>();
-    private final OperatorMap operators = new OperatorMap();
-    private final Map<Operator, FunctionDef> functionDefs = new HashMap<>();
-    private final java.util.List<Conversion> conversions = new ArrayList<>();
+    private final Map<String, Element> namespace;
+    private final OperatorMap operators;
+    private final Map<Operator, FunctionDef> functionDefs;
+    private final java.util.List<Conversion> conversions;
+
+    public CompiledLibrary() {
+        namespace = new HashMap<>();
+        operators = new OperatorMap();
+        functionDefs = new HashMap<>();
+        conversions = new ArrayList<>();
+    }
+
+    private CompiledLibrary(CompiledLibrary shared) {
+        identifier = shared.identifier;
+        library = shared.library;
+        namespace = Collections.unmodifiableMap(shared.namespace);
+        operators = new OperatorMap(shared.operators);
+        functionDefs = Collections.unmodifiableMap(shared.functionDefs);
+        conversions = Collections.unmodifiableList(shared.conversions);
+    }
+
+    /**
+     * Prevents further changes to the operators of this library so that it can be shared by multiple compilations.
+     * Compilations use the library through an overlay (see createOverlay).
+     */
+    public void freeze() {
+        operators.freeze();
+    }
+
+    /**
+     * Returns a view of this (frozen) library for use by a single compilation. The view shares the definitions of this
+     * library and cannot be added to, but operators registered while resolving calls against it (such as generic
+     * instantiations) are recorded in the view only.
+     */
+    public CompiledLibrary createOverlay() {
+        if (!operators.isFrozen()) {
+            throw new IllegalStateException("Only a frozen library can be shared through an overlay.");
+        }
+
+        return new CompiledLibrary(this);
+    }
 
     public VersionedIdentifier getIdentifier() {
         return identifier;
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public class ConversionMap {
     public enum ConversionScore {
@@ -53,13 +54,41 @@ public class ConversionMap {
     private boolean listPromotion = true;
     private boolean intervalDemotion = false;
     private boolean intervalPromotion = false;
+    private int version;
+    // Results of findConversion (including failures to find one), valid while the version is cacheVersion
+    private final Map<ConversionKey, Conversion> conversions = new HashMap<>();
+    private int cacheVersion;
+    private long conversionCacheHits;
+    private long conversionCacheMisses;
+
+    /**
+     * Returns a counter that changes whenever a conversion is added or a promotion/demotion setting changes, so that
+     * results computed against this map (such as cached operator resolutions) can be recognized as stale.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public long getConversionCacheHits() {
+        return conversionCacheHits;
+    }
+
+    public long getConversionCacheMisses() {
+        return conversionCacheMisses;
+    }
+
+    public void clearConversionCache() {
+        conversions.clear();
+    }
 
     public void enableListDemotion() {
         listDemotion = true;
+        version++;
     }
 
     public void disableListDemotion() {
         listDemotion = false;
+        version++;
     }
 
     public boolean isListDemotionEnabled() {
@@ -68,10 +97,12 @@ public class ConversionMap {
 
     public void enableListPromotion() {
         listPromotion = true;
+        version++;
     }
 
     public void disableListPromotion() {
         listPromotion = false;
+        version++;
     }
 
     public boolean isListPromotionEnabled() {
@@ -80,10 +111,12 @@ public class ConversionMap {
 
     public void enableIntervalDemotion() {
         intervalDemotion = true;
+        version++;
     }
 
     public void disableIntervalDemotion() {
         intervalDemotion = false;
+        version++;
     }
 
     public boolean isIntervalDemotionEnabled() {
@@ -92,10 +125,12 @@ public class ConversionMap {
 
     public void enableIntervalPromotion() {
         intervalPromotion = true;
+        version++;
     }
 
     public void disableIntervalPromotion() {
         intervalPromotion = false;
+        version++;
     }
 
     public boolean isIntervalPromotionEnabled() {
@@ -150,6 +185,7 @@ public class ConversionMap {
             conversions.add(conversion);
         }
 
+        version++;
     }
 
     public List<Conversion> getGenericConversions() {
@@ -341,7 +377,41 @@ public class ConversionMap {
         return result;
     }
 
+    /**
+     * Finds the conversion from fromType to toType, if any.
+     *
+     * Results (including failures to find a conversion) are memoized by from and to type, and implicit and promotion
+     * flags, until a conversion is added or a promotion/demotion setting changes. Results are not memoized while
+     * there are generic conversions, since finding a conversion may then instantiate operators in the operator map.
+     */
     public Conversion findConversion(DataType fromType, DataType toType, boolean isImplicit, boolean allowPromotionAndDemotion, OperatorMap operatorMap) {
+        if (!genericConversions.isEmpty()) {
+            return computeConversion(fromType, toType, isImplicit, allowPromotionAndDemotion, operatorMap);
+        }
+
+        if (cacheVersion != version) {
+            conversions.clear();
+            cacheVersion = version;
+        }
+
+        ConversionKey key = new ConversionKey(fromType, toType, isImplicit, allowPromotionAndDemotion);
+        Conversion result = conversions.get(key);
+        if (result != null || conversions.containsKey(key)) {
+            conversionCacheHits++;
+            return result;
+        }
+
+        conversionCacheMisses++;
+        int startVersion = version;
+        result = computeConversion(fromType, toType, isImplicit, allowPromotionAndDemotion, operatorMap);
+        if (version == startVersion) {
+            conversions.put(key, result);
+        }
+
+        return result;
+    }
+
+    private Conversion computeConversion(DataType fromType, DataType toType, boolean isImplicit, boolean allowPromotionAndDemotion, OperatorMap operatorMap) {
         Conversion result = findCompatibleConversion(fromType, toType);
         if (result == null) {
             result = internalFindConversion(fromType, toType, isImplicit);
@@ -396,4 +466,39 @@ public class ConversionMap {
 
         return result;
     }
+
+    private static final class ConversionKey {
+        private final DataType fromType;
+        private final DataType toType;
+        private final boolean isImplicit;
+        private final boolean allowPromotionAndDemotion;
+        private final int hashCode;
+
+        ConversionKey(DataType fromType, DataType toType, boolean isImplicit, boolean allowPromotionAndDemotion) {
+            this.fromType = fromType;
+            this.toType = toType;
+            this.isImplicit = isImplicit;
+            this.allowPromotionAndDemotion = allowPromotionAndDemotion;
+            this.hashCode = Objects.hash(fromType, toType, isImplicit, allowPromotionAndDemotion);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof ConversionKey) {
+                ConversionKey that = (ConversionKey)o;
+                return this.hashCode == that.hashCode
+                        && this.isImplicit == that.isImplicit
+                        && this.allowPromotionAndDemotion == that.allowPromotionAndDemotion
+                        && Objects.equals(this.fromType, that.fromType)
+                        && Objects.equals(this.toType, that.toType);
+            }
+
+            return false;
+        }
+    }
 }
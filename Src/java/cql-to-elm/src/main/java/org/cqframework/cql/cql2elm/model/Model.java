@@ -6,17 +6,32 @@ import org.hl7.elm_modelinfo.r1.ModelInfo;
 
 import java.util.*;
 
+/**
+ * The resolved types, conversions and contexts of a model. The indexes of a Model are not modified once it is
+ * constructed, so a single instance can be shared by multiple ModelManagers (see ModelCache).
+ *
+ * A lazily imported model resolves its types on first request instead. Its indexes are empty, and type
+ * resolution is delegated to the (synchronized) ModelImporter.
+ */
 public class Model {
     public Model(ModelInfo modelInfo, ModelManager modelManager) throws ClassNotFoundException {
+        this(modelInfo, modelManager, false);
+    }
+
+    public Model(ModelInfo modelInfo, ModelManager modelManager, boolean lazy) throws ClassNotFoundException {
         info = modelInfo;
-        index = new HashMap<>();
-        nameIndex = new HashMap<>();
-        classIndex = new HashMap<>();
-        conversions = new ArrayList<>();
-        contexts = new ArrayList<>();
-
-        ModelImporter importer = new ModelImporter(info, modelManager);
-        index = importer.getTypes();
+        Map<String, ClassType> classIndex = new HashMap<>();
+        Map<String, DataType> nameIndex = new HashMap<>();
+        List<Conversion> conversions = new ArrayList<>();
+        List<ModelContext> contexts = new ArrayList<>();
+
+        ModelImporter importer = new ModelImporter(info, modelManager, lazy);
+        this.importer = lazy ? importer : null;
+        index = lazy ? Collections.emptyMap() : Collections.unmodifiableMap(importer.getTypes());
+        if (!lazy) {
+            // The types are all resolved, so subtype checks between them can use precomputed ancestor sets
+            TypeLattice.build(index.values());
+        }
         for (Conversion c : importer.getConversions()) {
             conversions.add(c);
         }
@@ -36,20 +51,30 @@ public class Model {
                 nameIndex.put(casify(((NamedType)t).getSimpleName()), t);
             }
         }
+
+        this.classIndex = Collections.unmodifiableMap(classIndex);
+        this.nameIndex = Collections.unmodifiableMap(nameIndex);
+        this.conversions = Collections.unmodifiableList(conversions);
+        this.contexts = Collections.unmodifiableList(contexts);
     }
 
-    private ModelInfo info;
+    private final ModelInfo info;
     public ModelInfo getModelInfo() { return info; }
 
-    private Map<String, DataType> index;
-    private Map<String, ClassType> classIndex;
-    private Map<String, DataType> nameIndex;
+    private final ModelImporter importer;
+    public boolean isLazy() {
+        return importer != null;
+    }
+
+    private final Map<String, DataType> index;
+    private final Map<String, ClassType> classIndex;
+    private final Map<String, DataType> nameIndex;
     protected Map<String, DataType> getNameIndex() {
         return nameIndex;
     }
-    private List<Conversion> conversions;
-    private List<ModelContext> contexts;
-    private String defaultContext;
+    private final List<Conversion> conversions;
+    private final List<ModelContext> contexts;
+    private final String defaultContext;
     public String getDefaultContext() {
         return defaultContext;
     }
@@ -65,6 +90,10 @@ public class Model {
             result = nameIndex.get(typeName);
         }
 
+        if (result == null && importer != null) {
+            result = importer.resolveType(typeName);
+        }
+
         return result;
     }
 
@@ -103,7 +132,12 @@ public class Model {
     }
 
     public ClassType resolveLabel(String label) {
-        return classIndex.get(casify(label));
+        ClassType result = classIndex.get(casify(label));
+        if (result == null && importer != null) {
+            result = importer.resolveLabel(casify(label));
+        }
+
+        return result;
     }
 
     private String casify(String typeName) {
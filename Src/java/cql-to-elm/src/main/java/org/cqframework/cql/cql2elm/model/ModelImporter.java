@@ -19,20 +19,37 @@ public class ModelImporter {
     private List<Conversion> conversions;
     private List<ModelContext> contexts;
     private ModelContext defaultContext;
+    private boolean lazy;
+    private Map<String, TypeInfo> typeInfoStubs;
+    private Map<String, ClassInfo> labelStubs;
+    private List<Map.Entry<ClassInfo, ClassType>> pendingRelationships;
 
     public ModelImporter(ModelInfo modelInfo, ModelManager modelManager) {
+        this(modelInfo, modelManager, false);
+    }
+
+    /**
+     * @param lazy When true, only the types referenced by the model's conversions and contexts are resolved during
+     *             construction. Other types are resolved on first request through resolveType and resolveLabel,
+     *             along with the types they depend on.
+     */
+    public ModelImporter(ModelInfo modelInfo, ModelManager modelManager, boolean lazy) {
         if (modelInfo == null) {
             throw new IllegalArgumentException("modelInfo is null");
         }
 
         this.modelInfo = modelInfo;
         this.modelManager = modelManager;
+        this.lazy = lazy;
         this.modelIndex = new HashMap<>();
         this.typeInfoIndex = new HashMap<>();
         this.resolvedTypes = new HashMap<>();
         this.dataTypes = new ArrayList<>();
         this.conversions = new ArrayList<>();
         this.contexts = new ArrayList<>();
+        this.typeInfoStubs = new HashMap<>();
+        this.labelStubs = new HashMap<>();
+        this.pendingRelationships = new ArrayList<>();
 
         if (modelManager != null) {
             // Import required models
@@ -68,6 +85,16 @@ public class ModelImporter {
             }
         }
 
+        if (lazy) {
+            for (Map.Entry<String, TypeInfo> entry : typeInfoIndex.entrySet()) {
+                typeInfoStubs.put(casify(entry.getKey()), entry.getValue());
+                typeInfoStubs.put(casify(ensureQualified(entry.getKey())), entry.getValue());
+                if (entry.getValue() instanceof ClassInfo && ((ClassInfo)entry.getValue()).getLabel() != null) {
+                    labelStubs.put(casify(((ClassInfo)entry.getValue()).getLabel()), (ClassInfo)entry.getValue());
+                }
+            }
+        }
+
         // Import model conversions
         for (ConversionInfo c : this.modelInfo.getConversionInfo()) {
             DataType fromType = resolveTypeNameOrSpecifier(c.getFromType(), c.getFromTypeSpecifier());
@@ -107,6 +134,12 @@ public class ModelImporter {
             }
         }
 
+        if (lazy) {
+            // Relationships of class types resolved for conversions and contexts can only be imported once all contexts are known
+            importPendingRelationships();
+            return;
+        }
+
         for (TypeInfo t: this.modelInfo.getTypeInfo()) {
             DataType type = resolveTypeInfo(t);
             dataTypes.add(type);
@@ -117,6 +150,11 @@ public class ModelImporter {
         }
     }
 
+    public boolean isLazy() { return lazy; }
+
+    /**
+     * Returns the types resolved so far. In lazy mode this does not include types that have not yet been requested.
+     */
     public Map<String, DataType> getTypes() { return resolvedTypes; }
     public Iterable<Conversion> getConversions() { return conversions; }
     public Iterable<ModelContext> getContexts() { return contexts; }
@@ -133,6 +171,44 @@ public class ModelImporter {
         return null;
     }
 
+    /**
+     * Resolves the type with the given (casified, qualified or unqualified) name in lazy mode, importing it if
+     * necessary. Returns null if the model defines no such type.
+     */
+    public synchronized DataType resolveType(String typeName) {
+        DataType result = resolvedTypes.get(typeName);
+        if (result == null) {
+            TypeInfo typeInfo = typeInfoStubs.get(typeName);
+            if (typeInfo != null) {
+                result = resolveTypeInfo(typeInfo);
+                importPendingRelationships();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolves the class type with the given (casified) label in lazy mode, importing it if necessary.
+     */
+    public synchronized ClassType resolveLabel(String label) {
+        ClassInfo classInfo = labelStubs.get(label);
+        if (classInfo == null) {
+            return null;
+        }
+
+        ClassType result = resolveClassType(classInfo);
+        importPendingRelationships();
+        return result;
+    }
+
+    private void importPendingRelationships() {
+        while (!pendingRelationships.isEmpty()) {
+            Map.Entry<ClassInfo, ClassType> pending = pendingRelationships.remove(pendingRelationships.size() - 1);
+            importRelationships(pending.getKey(), pending.getValue());
+        }
+    }
+
     private String casify(String typeName) {
         return casify(typeName, this.modelInfo.isCaseSensitive() != null ? this.modelInfo.isCaseSensitive() : false);
     }
@@ -186,14 +262,14 @@ public class ModelImporter {
         if (typeSpecifier instanceof IntervalTypeSpecifier) {
             IntervalTypeSpecifier intervalTypeSpecifier = (IntervalTypeSpecifier)typeSpecifier;
             DataType pointType = resolveTypeNameOrSpecifier(intervalTypeSpecifier.getPointType(), intervalTypeSpecifier.getPointTypeSpecifier());
-            return new IntervalType(pointType);
+            return CanonicalTypes.intervalOf(pointType);
         }
 
         if (typeSpecifier instanceof ListTypeSpecifier) {
             ListTypeSpecifier listTypeSpecifier = (ListTypeSpecifier)typeSpecifier;
             DataType elementType = resolveTypeNameOrSpecifier(listTypeSpecifier.getElementType(), listTypeSpecifier.getElementTypeSpecifier());
             if (elementType != null) {
-                return new ListType(elementType);
+                return CanonicalTypes.listOf(elementType);
             }
         }
 
@@ -213,7 +289,7 @@ public class ModelImporter {
                 DataType choiceType = resolveTypeSpecifier(choice);
                 choices.add(choiceType);
             }
-            return new ChoiceType(choices);
+            return CanonicalTypes.choiceOf(choices);
         }
 
         return null;
@@ -231,11 +307,11 @@ public class ModelImporter {
         // listTypeSpecifier: 'list' '<' typeSpecifier '>'
         if (typeName.toLowerCase().startsWith("interval<")) {
             DataType pointType = resolveTypeName(typeName.substring(typeName.indexOf('<') + 1, typeName.lastIndexOf('>')));
-            return new IntervalType(pointType);
+            return CanonicalTypes.intervalOf(pointType);
         }
         else if (typeName.toLowerCase().startsWith("list<")) {
             DataType elementType = resolveTypeName(typeName.substring(typeName.indexOf('<') + 1, typeName.lastIndexOf('>')));
-            return new ListType(elementType);
+            return CanonicalTypes.listOf(elementType);
         }
 
         DataType result = lookupType(typeName);
@@ -365,7 +441,7 @@ public class ModelImporter {
     }
 
     private TupleType resolveTupleType(TupleTypeInfo t) {
-        TupleType result = new TupleType(resolveTupleTypeElements(t.getElement()));
+        TupleType result = CanonicalTypes.tupleOf(resolveTupleTypeElements(t.getElement()));
         return result;
     }
 
@@ -569,6 +645,10 @@ public class ModelImporter {
             result.setTarget(t.getTarget());
             result.setRetrievable(t.isRetrievable());
             result.setPrimaryCodePath(t.getPrimaryCodePath());
+
+            if (lazy) {
+                pendingRelationships.add(new AbstractMap.SimpleEntry<>(t, result));
+            }
         }
 
         return result;
@@ -602,12 +682,12 @@ public class ModelImporter {
     }
 
     private IntervalType resolveIntervalType(IntervalTypeInfo t) {
-        IntervalType result = new IntervalType(resolveTypeNameOrSpecifier(t.getPointType(), t.getPointTypeSpecifier()));
+        IntervalType result = CanonicalTypes.intervalOf(resolveTypeNameOrSpecifier(t.getPointType(), t.getPointTypeSpecifier()));
         return result;
     }
 
     private ListType resolveListType(ListTypeInfo t) {
-        ListType result = new ListType(resolveTypeNameOrSpecifier(t.getElementType(), t.getElementTypeSpecifier()));
+        ListType result = CanonicalTypes.listOf(resolveTypeNameOrSpecifier(t.getElementType(), t.getElementTypeSpecifier()));
         return result;
     }
 
@@ -623,7 +703,7 @@ public class ModelImporter {
                 types.add(resolveTypeSpecifier(typeSpecifier));
             }
         }
-        return new ChoiceType(types);
+        return CanonicalTypes.choiceOf(types);
     }
 
     /**
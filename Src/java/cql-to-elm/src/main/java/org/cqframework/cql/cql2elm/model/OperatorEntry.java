@@ -21,6 +21,21 @@ public class OperatorEntry {
 
     private SignatureNodes signatures = new SignatureNodes();
     private Map<Signature, GenericOperator> genericOperators = new HashMap<>();
+    // Registration order, used to rebuild an identical entry in copy()
+    private List<Operator> registrations = new ArrayList<>();
+
+    /**
+     * Returns a copy of this entry with the same registrations. The copy is built by replaying the registrations in
+     * order, so its signature tree (and therefore its resolution behavior) is identical to this entry's.
+     */
+    OperatorEntry copy() {
+        OperatorEntry result = new OperatorEntry(name);
+        for (Operator operator : registrations) {
+            result.addOperator(operator);
+        }
+
+        return result;
+    }
 
     private static class SignatureNode {
         public SignatureNode(Operator operator) {
@@ -184,6 +199,8 @@ public class OperatorEntry {
         else {
             signatures.add(new SignatureNode(operator));
         }
+
+        registrations.add(operator);
     }
 
     private boolean containsGenericOperator(GenericOperator operator) {
@@ -258,19 +275,24 @@ public class OperatorEntry {
         if (results == null || allResultsUseConversion(results)) {
             // If the callContext signature contains choices, attempt instantiation with all possible combinations of the call signature (ouch, this could really hurt...)
             boolean signaturesInstantiated = false;
+            // Instantiations are registered in the operator map's own copy of this entry, this entry may be shared
+            OperatorEntry target = this;
             List<Signature> callSignatures = expandChoices(callContext.getSignature());
             for (Signature callSignature : callSignatures) {
                 Operator result = instantiate(callSignature, operatorMap, conversionMap, callContext.getAllowPromotionAndDemotion());
-                if (result != null && !signatures.contains(result)) {
+                if (result != null && !target.signatures.contains(result)) {
                     // If the generic signature was instantiated, store it as an actual signature.
-                    signatures.add(new SignatureNode(result));
+                    if (!signaturesInstantiated) {
+                        target = operatorMap.getMutableEntry(name);
+                    }
+                    target.addOperator(result);
                     signaturesInstantiated = true;
                 }
             }
 
             // re-attempt the resolution with the instantiated signature registered
             if (signaturesInstantiated) {
-                results = signatures.resolve(callContext, conversionMap, operatorMap);
+                results = target.signatures.resolve(callContext, conversionMap, operatorMap);
             }
         }
 
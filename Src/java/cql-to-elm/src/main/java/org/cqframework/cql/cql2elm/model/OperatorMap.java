@@ -3,28 +3,89 @@ package org.cqframework.cql.cql2elm.model;
 import org.hl7.cql.model.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class OperatorMap {
     private Map<String, OperatorEntry> operators = new HashMap<>();
+    private OperatorMap shared;
+    private boolean frozen;
+    // Incremented whenever an entry of this map changes, see getMutableEntry
+    private int version;
+
+    // Memoized results of resolveOperator, keyed by the canonical form of the call
+    private final Map<ResolutionKey, CachedResolution> resolutions = new ConcurrentHashMap<>();
+    private final AtomicLong resolutionCacheHits = new AtomicLong();
+    private final AtomicLong resolutionCacheMisses = new AtomicLong();
+
+    public OperatorMap() {
+    }
+
+    /**
+     * Creates an overlay of the given (frozen) operator map. Lookups fall through to the shared map, which is never
+     * modified: the first change to one of its entries, such as a generic instantiation, copies the entry into the overlay.
+     */
+    public OperatorMap(OperatorMap shared) {
+        if (shared == null) {
+            throw new IllegalArgumentException("shared is null.");
+        }
+
+        this.shared = shared;
+    }
+
+    /**
+     * Prevents any further changes to this map so that it can be shared by multiple compilations through overlays.
+     */
+    public void freeze() {
+        this.frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
 
     public boolean containsOperator(Operator operator) {
-        OperatorEntry entry = getEntry(operator.getName());
-        return entry.containsOperator(operator);
+        OperatorEntry entry = findEntry(operator.getName());
+        return entry != null && entry.containsOperator(operator);
     }
 
     public void addOperator(Operator operator) {
-        OperatorEntry entry = getEntry(operator.getName());
+        OperatorEntry entry = getMutableEntry(operator.getName());
         entry.addOperator(operator);
     }
 
-    private OperatorEntry getEntry(String operatorName) {
+    private void checkOperatorName(String operatorName) {
         if (operatorName == null || operatorName.equals("")) {
             throw new IllegalArgumentException("operatorName is null or empty.");
         }
+    }
+
+    private OperatorEntry findEntry(String operatorName) {
+        checkOperatorName(operatorName);
+
+        OperatorEntry entry = operators.get(operatorName);
+        if (entry == null && shared != null) {
+            entry = shared.findEntry(operatorName);
+        }
+
+        return entry;
+    }
+
+    OperatorEntry getMutableEntry(String operatorName) {
+        checkOperatorName(operatorName);
+
+        if (frozen) {
+            throw new IllegalStateException(String.format("Operator %s cannot be modified because the operator map is frozen.", operatorName));
+        }
+
+        // The caller is about to change the entry, any cached resolution may now be stale
+        version++;
+        resolutions.clear();
 
         OperatorEntry entry = operators.get(operatorName);
         if (entry == null) {
-            entry = new OperatorEntry(operatorName);
+            OperatorEntry sharedEntry = shared != null ? shared.findEntry(operatorName) : null;
+            entry = sharedEntry != null ? sharedEntry.copy() : new OperatorEntry(operatorName);
             operators.put(operatorName, entry);
         }
 
@@ -52,9 +113,51 @@ public class OperatorMap {
         return supportsOperator("System", "LessOrEqual", type, type) && supportsOperator("System", "Successor", type);
     }
 
+    public long getResolutionCacheHits() {
+        return resolutionCacheHits.get();
+    }
+
+    public long getResolutionCacheMisses() {
+        return resolutionCacheMisses.get();
+    }
+
+    public void clearResolutionCache() {
+        resolutions.clear();
+    }
+
+    /**
+     * Resolves the call against the operators in this map.
+     *
+     * Results (including failures to resolve) are memoized by operator name, call signature, and promotion and
+     * resolution flags. A memoized result is only used while this map and the given conversion map are unchanged, and
+     * each call returns its own copy of the resolution, since callers annotate the result.
+     */
     public OperatorResolution resolveOperator(CallContext callContext, ConversionMap conversionMap) {
-        OperatorEntry entry = getEntry(callContext.getOperatorName());
-        List<OperatorResolution> results = entry.resolve(callContext, this, conversionMap);
+        ResolutionKey key = new ResolutionKey(callContext, conversionMap != null);
+        CachedResolution cached = resolutions.get(key);
+        if (cached != null && cached.isCurrent(version, conversionMap)) {
+            resolutionCacheHits.incrementAndGet();
+            return cached.resolution == null ? null : new OperatorResolution(cached.resolution);
+        }
+
+        resolutionCacheMisses.incrementAndGet();
+        int startVersion = version;
+        int startConversionMapVersion = conversionMap != null ? conversionMap.getVersion() : 0;
+        OperatorResolution result = internalResolveOperator(callContext, conversionMap);
+
+        // Only cache the result if neither map was changed while resolving (e.g. by a generic instantiation)
+        if (version == startVersion
+                && (conversionMap == null || conversionMap.getVersion() == startConversionMapVersion)) {
+            resolutions.put(key, new CachedResolution(result == null ? null : new OperatorResolution(result),
+                    version, conversionMap));
+        }
+
+        return result;
+    }
+
+    private OperatorResolution internalResolveOperator(CallContext callContext, ConversionMap conversionMap) {
+        OperatorEntry entry = findEntry(callContext.getOperatorName());
+        List<OperatorResolution> results = entry != null ? entry.resolve(callContext, this, conversionMap) : null;
 
         // Score each resolution and return the lowest score
         // Duplicate scores indicate ambiguous match
@@ -107,4 +210,62 @@ public class OperatorMap {
 
         return result;
     }
+
+    private static final class ResolutionKey {
+        private final String operatorName;
+        private final Signature signature;
+        private final boolean allowPromotionAndDemotion;
+        private final boolean mustResolve;
+        private final boolean allowConversions;
+        private final int hashCode;
+
+        ResolutionKey(CallContext callContext, boolean allowConversions) {
+            this.operatorName = callContext.getOperatorName();
+            this.signature = callContext.getSignature();
+            this.allowPromotionAndDemotion = callContext.getAllowPromotionAndDemotion();
+            this.mustResolve = callContext.getMustResolve();
+            this.allowConversions = allowConversions;
+            this.hashCode = Objects.hash(operatorName, signature, allowPromotionAndDemotion, mustResolve, allowConversions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof ResolutionKey) {
+                ResolutionKey that = (ResolutionKey)o;
+                return this.hashCode == that.hashCode
+                        && this.allowPromotionAndDemotion == that.allowPromotionAndDemotion
+                        && this.mustResolve == that.mustResolve
+                        && this.allowConversions == that.allowConversions
+                        && this.operatorName.equals(that.operatorName)
+                        && this.signature.equals(that.signature);
+            }
+
+            return false;
+        }
+    }
+
+    private static final class CachedResolution {
+        private final OperatorResolution resolution;
+        private final int operatorMapVersion;
+        private final ConversionMap conversionMap;
+        private final int conversionMapVersion;
+
+        CachedResolution(OperatorResolution resolution, int operatorMapVersion, ConversionMap conversionMap) {
+            this.resolution = resolution;
+            this.operatorMapVersion = operatorMapVersion;
+            this.conversionMap = conversionMap;
+            this.conversionMapVersion = conversionMap != null ? conversionMap.getVersion() : 0;
+        }
+
+        boolean isCurrent(int operatorMapVersion, ConversionMap conversionMap) {
+            return this.operatorMapVersion == operatorMapVersion
+                    && this.conversionMap == conversionMap
+                    && (conversionMap == null || this.conversionMapVersion == conversionMap.getVersion());
+        }
+    }
 }
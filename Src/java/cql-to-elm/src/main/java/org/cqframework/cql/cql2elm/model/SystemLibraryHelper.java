@@ -97,7 +97,7 @@ public class SystemLibraryHelper {
         //add(system, tb, new Conversion(booleanToBoolean, false));
 
         // ToChars(String) : List(String)
-        Operator toChars = new Operator("ToChars", new Signature(systemModel.getString()), new ListType(systemModel.getString()));
+        Operator toChars = new Operator("ToChars", new Signature(systemModel.getString()), CanonicalTypes.listOf(systemModel.getString()));
         add(system, tb, toChars);
         add(system, tb, new Conversion(toChars, false));
 
@@ -442,8 +442,8 @@ public class SystemLibraryHelper {
 
         // String operators
         add(system, tb, new Operator("Add", new Signature(systemModel.getString(), systemModel.getString()), systemModel.getString()));
-        add(system, tb, new Operator("Combine", new Signature(new ListType(systemModel.getString())), systemModel.getString()));
-        add(system, tb, new Operator("Combine", new Signature(new ListType(systemModel.getString()), systemModel.getString()), systemModel.getString()));
+        add(system, tb, new Operator("Combine", new Signature(CanonicalTypes.listOf(systemModel.getString())), systemModel.getString()));
+        add(system, tb, new Operator("Combine", new Signature(CanonicalTypes.listOf(systemModel.getString()), systemModel.getString()), systemModel.getString()));
         add(system, tb, new Operator("Concatenate", new Signature(systemModel.getString(), systemModel.getString()), systemModel.getString()));
         add(system, tb, new Operator("EndsWith", new Signature(systemModel.getString(), systemModel.getString()), systemModel.getBoolean()));
         add(system, tb, new Operator("Indexer", new Signature(systemModel.getString(), systemModel.getInteger()), systemModel.getString()));
@@ -453,8 +453,8 @@ public class SystemLibraryHelper {
         add(system, tb, new Operator("Matches", new Signature(systemModel.getString(), systemModel.getString()), systemModel.getBoolean()));
         add(system, tb, new Operator("PositionOf", new Signature(systemModel.getString(), systemModel.getString()), systemModel.getInteger()));
         add(system, tb, new Operator("ReplaceMatches", new Signature(systemModel.getString(), systemModel.getString(), systemModel.getString()), systemModel.getString()));
-        add(system, tb, new Operator("Split", new Signature(systemModel.getString(), systemModel.getString()), new ListType(systemModel.getString())));
-        add(system, tb, new Operator("SplitOnMatches", new Signature(systemModel.getString(), systemModel.getString()), new ListType(systemModel.getString())));
+        add(system, tb, new Operator("Split", new Signature(systemModel.getString(), systemModel.getString()), CanonicalTypes.listOf(systemModel.getString())));
+        add(system, tb, new Operator("SplitOnMatches", new Signature(systemModel.getString(), systemModel.getString()), CanonicalTypes.listOf(systemModel.getString())));
         add(system, tb, new Operator("StartsWith", new Signature(systemModel.getString(), systemModel.getString()), systemModel.getBoolean()));
         add(system, tb, new Operator("Substring", new Signature(systemModel.getString(), systemModel.getInteger()), systemModel.getString()));
         add(system, tb, new Operator("Substring", new Signature(systemModel.getString(), systemModel.getInteger(), systemModel.getInteger()), systemModel.getString()));
@@ -650,51 +650,51 @@ public class SystemLibraryHelper {
         //add(system, tb, new Conversion(toList, true));
 
         // Aggregate Operators
-        add(system, tb, new Operator("AllTrue", new Signature(new ListType(systemModel.getBoolean())), systemModel.getBoolean()));
-        add(system, tb, new Operator("AnyTrue", new Signature(new ListType(systemModel.getBoolean())), systemModel.getBoolean()));
-        add(system, tb, new Operator("Avg", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("Avg", new Signature(new ListType(systemModel.getQuantity())), systemModel.getQuantity()));
+        add(system, tb, new Operator("AllTrue", new Signature(CanonicalTypes.listOf(systemModel.getBoolean())), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyTrue", new Signature(CanonicalTypes.listOf(systemModel.getBoolean())), systemModel.getBoolean()));
+        add(system, tb, new Operator("Avg", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("Avg", new Signature(CanonicalTypes.listOf(systemModel.getQuantity())), systemModel.getQuantity()));
         // Count<T>(list<T>) : Integer
         add(system, tb, new GenericOperator("Count", new Signature(new ListType(new TypeParameter("T"))), systemModel.getInteger(), new TypeParameter("T")));
         //// Count(list<Any>) : Integer
-        //add(system, tb, new Operator("Count", new Signature(new ListType(systemModel.getAny())), systemModel.getInteger()));
-        add(system, tb, new Operator("GeometricMean", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("Max", new Signature(new ListType(systemModel.getInteger())), systemModel.getInteger()));
-        add(system, tb, new Operator("Max", new Signature(new ListType(systemModel.getLong())), systemModel.getLong()));
-        add(system, tb, new Operator("Max", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("Max", new Signature(new ListType(systemModel.getQuantity())), systemModel.getQuantity()));
-        add(system, tb, new Operator("Max", new Signature(new ListType(systemModel.getDateTime())), systemModel.getDateTime()));
-        add(system, tb, new Operator("Max", new Signature(new ListType(systemModel.getDate())), systemModel.getDate()));
-        add(system, tb, new Operator("Max", new Signature(new ListType(systemModel.getTime())), systemModel.getTime()));
-        add(system, tb, new Operator("Max", new Signature(new ListType(systemModel.getString())), systemModel.getString()));
-        add(system, tb, new Operator("Min", new Signature(new ListType(systemModel.getInteger())), systemModel.getInteger()));
-        add(system, tb, new Operator("Min", new Signature(new ListType(systemModel.getLong())), systemModel.getLong()));
-        add(system, tb, new Operator("Min", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("Min", new Signature(new ListType(systemModel.getQuantity())), systemModel.getQuantity()));
-        add(system, tb, new Operator("Min", new Signature(new ListType(systemModel.getDateTime())), systemModel.getDateTime()));
-        add(system, tb, new Operator("Min", new Signature(new ListType(systemModel.getDate())), systemModel.getDate()));
-        add(system, tb, new Operator("Min", new Signature(new ListType(systemModel.getTime())), systemModel.getTime()));
-        add(system, tb, new Operator("Min", new Signature(new ListType(systemModel.getString())), systemModel.getString()));
-        add(system, tb, new Operator("Median", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("Median", new Signature(new ListType(systemModel.getQuantity())), systemModel.getQuantity()));
+        //add(system, tb, new Operator("Count", new Signature(CanonicalTypes.listOf(systemModel.getAny())), systemModel.getInteger()));
+        add(system, tb, new Operator("GeometricMean", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("Max", new Signature(CanonicalTypes.listOf(systemModel.getInteger())), systemModel.getInteger()));
+        add(system, tb, new Operator("Max", new Signature(CanonicalTypes.listOf(systemModel.getLong())), systemModel.getLong()));
+        add(system, tb, new Operator("Max", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("Max", new Signature(CanonicalTypes.listOf(systemModel.getQuantity())), systemModel.getQuantity()));
+        add(system, tb, new Operator("Max", new Signature(CanonicalTypes.listOf(systemModel.getDateTime())), systemModel.getDateTime()));
+        add(system, tb, new Operator("Max", new Signature(CanonicalTypes.listOf(systemModel.getDate())), systemModel.getDate()));
+        add(system, tb, new Operator("Max", new Signature(CanonicalTypes.listOf(systemModel.getTime())), systemModel.getTime()));
+        add(system, tb, new Operator("Max", new Signature(CanonicalTypes.listOf(systemModel.getString())), systemModel.getString()));
+        add(system, tb, new Operator("Min", new Signature(CanonicalTypes.listOf(systemModel.getInteger())), systemModel.getInteger()));
+        add(system, tb, new Operator("Min", new Signature(CanonicalTypes.listOf(systemModel.getLong())), systemModel.getLong()));
+        add(system, tb, new Operator("Min", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("Min", new Signature(CanonicalTypes.listOf(systemModel.getQuantity())), systemModel.getQuantity()));
+        add(system, tb, new Operator("Min", new Signature(CanonicalTypes.listOf(systemModel.getDateTime())), systemModel.getDateTime()));
+        add(system, tb, new Operator("Min", new Signature(CanonicalTypes.listOf(systemModel.getDate())), systemModel.getDate()));
+        add(system, tb, new Operator("Min", new Signature(CanonicalTypes.listOf(systemModel.getTime())), systemModel.getTime()));
+        add(system, tb, new Operator("Min", new Signature(CanonicalTypes.listOf(systemModel.getString())), systemModel.getString()));
+        add(system, tb, new Operator("Median", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("Median", new Signature(CanonicalTypes.listOf(systemModel.getQuantity())), systemModel.getQuantity()));
         // Mode<T>(list<T>) : T
         add(system, tb, new GenericOperator("Mode", new Signature(new ListType(new TypeParameter("T"))), new TypeParameter("T"), new TypeParameter("T")));
-        add(system, tb, new Operator("PopulationStdDev", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("PopulationStdDev", new Signature(new ListType(systemModel.getQuantity())), systemModel.getQuantity()));
-        add(system, tb, new Operator("PopulationVariance", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("PopulationVariance", new Signature(new ListType(systemModel.getQuantity())), systemModel.getQuantity()));
-        add(system, tb, new Operator("Product", new Signature(new ListType(systemModel.getInteger())), systemModel.getInteger()));
-        add(system, tb, new Operator("Product", new Signature(new ListType(systemModel.getLong())), systemModel.getLong()));
-        add(system, tb, new Operator("Product", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("Product", new Signature(new ListType(systemModel.getQuantity())), systemModel.getQuantity()));
-        add(system, tb, new Operator("StdDev", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("StdDev", new Signature(new ListType(systemModel.getQuantity())), systemModel.getQuantity()));
-        add(system, tb, new Operator("Sum", new Signature(new ListType(systemModel.getInteger())), systemModel.getInteger()));
-        add(system, tb, new Operator("Sum", new Signature(new ListType(systemModel.getLong())), systemModel.getLong()));
-        add(system, tb, new Operator("Sum", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("Sum", new Signature(new ListType(systemModel.getQuantity())), systemModel.getQuantity()));
-        add(system, tb, new Operator("Variance", new Signature(new ListType(systemModel.getDecimal())), systemModel.getDecimal()));
-        add(system, tb, new Operator("Variance", new Signature(new ListType(systemModel.getQuantity())), systemModel.getQuantity()));
+        add(system, tb, new Operator("PopulationStdDev", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("PopulationStdDev", new Signature(CanonicalTypes.listOf(systemModel.getQuantity())), systemModel.getQuantity()));
+        add(system, tb, new Operator("PopulationVariance", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("PopulationVariance", new Signature(CanonicalTypes.listOf(systemModel.getQuantity())), systemModel.getQuantity()));
+        add(system, tb, new Operator("Product", new Signature(CanonicalTypes.listOf(systemModel.getInteger())), systemModel.getInteger()));
+        add(system, tb, new Operator("Product", new Signature(CanonicalTypes.listOf(systemModel.getLong())), systemModel.getLong()));
+        add(system, tb, new Operator("Product", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("Product", new Signature(CanonicalTypes.listOf(systemModel.getQuantity())), systemModel.getQuantity()));
+        add(system, tb, new Operator("StdDev", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("StdDev", new Signature(CanonicalTypes.listOf(systemModel.getQuantity())), systemModel.getQuantity()));
+        add(system, tb, new Operator("Sum", new Signature(CanonicalTypes.listOf(systemModel.getInteger())), systemModel.getInteger()));
+        add(system, tb, new Operator("Sum", new Signature(CanonicalTypes.listOf(systemModel.getLong())), systemModel.getLong()));
+        add(system, tb, new Operator("Sum", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("Sum", new Signature(CanonicalTypes.listOf(systemModel.getQuantity())), systemModel.getQuantity()));
+        add(system, tb, new Operator("Variance", new Signature(CanonicalTypes.listOf(systemModel.getDecimal())), systemModel.getDecimal()));
+        add(system, tb, new Operator("Variance", new Signature(CanonicalTypes.listOf(systemModel.getQuantity())), systemModel.getQuantity()));
 
         // Clinical
         // ToConcept(Code)
@@ -702,7 +702,7 @@ public class SystemLibraryHelper {
         add(system, tb, codeToConcept);
         add(system, tb, new Conversion(codeToConcept, true));
         // ToConcept(list<Code>)
-        Operator codesToConcept = new Operator("ToConcept", new Signature(new ListType(systemModel.getCode())), systemModel.getConcept());
+        Operator codesToConcept = new Operator("ToConcept", new Signature(CanonicalTypes.listOf(systemModel.getCode())), systemModel.getConcept());
         add(system, tb, codesToConcept);
         add(system, tb, new Conversion(codesToConcept, false));
 
@@ -719,13 +719,13 @@ public class SystemLibraryHelper {
         add(system, tb, new Operator("InValueSet", new Signature(systemModel.getCode(), systemModel.getValueSet()), systemModel.getBoolean()));
         add(system, tb, new Operator("InValueSet", new Signature(systemModel.getConcept(), systemModel.getValueSet()), systemModel.getBoolean()));
 
-        add(system, tb, new Operator("AnyInValueSet", new Signature(new ListType(systemModel.getString())), systemModel.getBoolean()));
-        add(system, tb, new Operator("AnyInValueSet", new Signature(new ListType(systemModel.getCode())), systemModel.getBoolean()));
-        add(system, tb, new Operator("AnyInValueSet", new Signature(new ListType(systemModel.getConcept())), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInValueSet", new Signature(CanonicalTypes.listOf(systemModel.getString())), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInValueSet", new Signature(CanonicalTypes.listOf(systemModel.getCode())), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInValueSet", new Signature(CanonicalTypes.listOf(systemModel.getConcept())), systemModel.getBoolean()));
 
-        add(system, tb, new Operator("AnyInValueSet", new Signature(new ListType(systemModel.getString()), systemModel.getValueSet()), systemModel.getBoolean()));
-        add(system, tb, new Operator("AnyInValueSet", new Signature(new ListType(systemModel.getCode()), systemModel.getValueSet()), systemModel.getBoolean()));
-        add(system, tb, new Operator("AnyInValueSet", new Signature(new ListType(systemModel.getConcept()), systemModel.getValueSet()), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInValueSet", new Signature(CanonicalTypes.listOf(systemModel.getString()), systemModel.getValueSet()), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInValueSet", new Signature(CanonicalTypes.listOf(systemModel.getCode()), systemModel.getValueSet()), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInValueSet", new Signature(CanonicalTypes.listOf(systemModel.getConcept()), systemModel.getValueSet()), systemModel.getBoolean()));
 
         add(system, tb, new Operator("InCodeSystem", new Signature(systemModel.getString()), systemModel.getBoolean()));
         add(system, tb, new Operator("InCodeSystem", new Signature(systemModel.getCode()), systemModel.getBoolean()));
@@ -735,15 +735,15 @@ public class SystemLibraryHelper {
         add(system, tb, new Operator("InCodeSystem", new Signature(systemModel.getCode(), systemModel.getCodeSystem()), systemModel.getBoolean()));
         add(system, tb, new Operator("InCodeSystem", new Signature(systemModel.getConcept(), systemModel.getCodeSystem()), systemModel.getBoolean()));
 
-        add(system, tb, new Operator("AnyInCodeSystem", new Signature(new ListType(systemModel.getString())), systemModel.getBoolean()));
-        add(system, tb, new Operator("AnyInCodeSystem", new Signature(new ListType(systemModel.getCode())), systemModel.getBoolean()));
-        add(system, tb, new Operator("AnyInCodeSystem", new Signature(new ListType(systemModel.getConcept())), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInCodeSystem", new Signature(CanonicalTypes.listOf(systemModel.getString())), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInCodeSystem", new Signature(CanonicalTypes.listOf(systemModel.getCode())), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInCodeSystem", new Signature(CanonicalTypes.listOf(systemModel.getConcept())), systemModel.getBoolean()));
 
-        add(system, tb, new Operator("AnyInCodeSystem", new Signature(new ListType(systemModel.getString()), systemModel.getCodeSystem()), systemModel.getBoolean()));
-        add(system, tb, new Operator("AnyInCodeSystem", new Signature(new ListType(systemModel.getCode()), systemModel.getCodeSystem()), systemModel.getBoolean()));
-        add(system, tb, new Operator("AnyInCodeSystem", new Signature(new ListType(systemModel.getConcept()), systemModel.getCodeSystem()), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInCodeSystem", new Signature(CanonicalTypes.listOf(systemModel.getString()), systemModel.getCodeSystem()), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInCodeSystem", new Signature(CanonicalTypes.listOf(systemModel.getCode()), systemModel.getCodeSystem()), systemModel.getBoolean()));
+        add(system, tb, new Operator("AnyInCodeSystem", new Signature(CanonicalTypes.listOf(systemModel.getConcept()), systemModel.getCodeSystem()), systemModel.getBoolean()));
 
-        Operator expandValueSet = new Operator("ExpandValueSet", new Signature(systemModel.getValueSet()), new ListType(systemModel.getCode()));
+        Operator expandValueSet = new Operator("ExpandValueSet", new Signature(systemModel.getValueSet()), CanonicalTypes.listOf(systemModel.getCode()));
         add(system, tb, expandValueSet);
         add(system, tb, new Conversion(expandValueSet, true));
 
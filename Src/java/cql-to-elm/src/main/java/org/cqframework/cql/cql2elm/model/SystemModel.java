@@ -1,7 +1,9 @@
 package org.cqframework.cql.cql2elm.model;
 
+import org.cqframework.cql.cql2elm.TypeBuilder;
 import org.hl7.cql.model.DataType;
 import org.hl7.cql.model.SimpleType;
+import org.hl7.elm.r1.ObjectFactory;
 import org.hl7.elm_modelinfo.r1.ModelInfo;
 
 public class SystemModel extends Model {
@@ -9,6 +11,23 @@ public class SystemModel extends Model {
         super(modelInfo, null);
     }
 
+    private CompiledLibrary systemLibrary;
+
+    /**
+     * Returns the System library for this model, building it on first use. The library is frozen and shared by every
+     * compilation using this model, compilations access it through CompiledLibrary.createOverlay().
+     */
+    public synchronized CompiledLibrary getSystemLibrary() {
+        if (systemLibrary == null) {
+            // All the types in the System library are System types, so this model is the only one the builder needs
+            CompiledLibrary library = SystemLibraryHelper.load(this, new TypeBuilder(new ObjectFactory(), modelName -> this));
+            library.freeze();
+            systemLibrary = library;
+        }
+
+        return systemLibrary;
+    }
+
     public DataType getAny() {
         return this.resolveTypeName("Any");
     }
@@ -109,6 +109,10 @@ public class LibraryInfo extends BaseInfo {
         return usingDefinitions.get(identifier);
     }
 
+    public Collection<UsingDefinitionInfo> getUsingDefinitions() {
+        return Collections.unmodifiableCollection(usingDefinitions.values());
+    }
+
     public UsingDefinitionInfo getDefaultUsingDefinition() {
         return preferredUsingDefinition;
     }
@@ -131,6 +135,10 @@ public class LibraryInfo extends BaseInfo {
         return includeDefinitions.get(identifier);
     }
 
+    public Collection<IncludeDefinitionInfo> getIncludeDefinitions() {
+        return Collections.unmodifiableCollection(includeDefinitions.values());
+    }
+
     public String resolveLibraryName(String identifier) {
         IncludeDefinitionInfo includeDefinition = resolveLibraryReference(identifier);
         if (includeDefinition != null) {
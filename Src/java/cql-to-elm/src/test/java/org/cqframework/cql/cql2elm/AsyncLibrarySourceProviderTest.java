@@ -0,0 +1,190 @@
+package org.cqframework.cql.cql2elm;
+
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class AsyncLibrarySourceProviderTest {
+    private static final String MAIN = "library Main\n"
+            + "include A called A\n"
+            + "include B called B\n"
+            + "include C called C\n"
+            + "include D called D\n"
+            + "define Value: A.Value + B.Value + C.Value + D.Value\n";
+
+    private static final Map<String, String> SOURCES = new HashMap<>();
+    static {
+        SOURCES.put("A", "library A\ndefine Value: 1\n");
+        SOURCES.put("B", "library B\ndefine Value: 2\n");
+        SOURCES.put("C", "library C\ndefine Value: 3\n");
+        SOURCES.put("D", "library D\ninclude A called A\ndefine Value: A.Value + 4\n");
+    }
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+
+    @AfterClass
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * A stand-in for a remote repository, that completes each fetch after a delay and records the number of
+     * fetches in flight. Libraries it does not have are never completed.
+     */
+    private class DelayedRepository implements AsyncLibrarySourceProvider {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final AtomicInteger fetches = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<InputStream> getLibrarySourceAsync(VersionedIdentifier libraryIdentifier) {
+            CompletableFuture<InputStream> result = new CompletableFuture<>();
+            String source = SOURCES.get(libraryIdentifier.getId());
+            if (source == null) {
+                return result;
+            }
+
+            fetches.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            executor.schedule(() -> {
+                inFlight.decrementAndGet();
+                result.complete(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+            }, 100, TimeUnit.MILLISECONDS);
+            return result;
+        }
+    }
+
+    /**
+     * A stand-in for a remote repository with a blocking API, that records the number of requests in flight. Slow
+     * takes longer to fetch than the fetch timeout it is used with.
+     */
+    private static class BlockingRepository implements LibrarySourceProvider {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        public InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) {
+            boolean slow = libraryIdentifier.getId().equals("Slow");
+            String source = slow ? "library Slow\ndefine Value: 0\n" : SOURCES.get(libraryIdentifier.getId());
+            if (source == null) {
+                return null;
+            }
+
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(slow ? 1000 : 10);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                inFlight.decrementAndGet();
+            }
+            return new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static CqlTranslator translate(String text, LibrarySourceProvider provider, LibraryManager libraryManager) {
+        libraryManager.getLibrarySourceLoader().registerProvider(provider);
+        return CqlTranslator.fromText(text, libraryManager.getModelManager(), libraryManager);
+    }
+
+    private static String translateSynchronously() {
+        LibrarySourceProvider provider = libraryIdentifier -> SOURCES.containsKey(libraryIdentifier.getId())
+                ? new ByteArrayInputStream(SOURCES.get(libraryIdentifier.getId()).getBytes(StandardCharsets.UTF_8))
+                : null;
+        return translate(MAIN, provider, new LibraryManager(new ModelManager())).toJson();
+    }
+
+    private static List<String> getMessages(CqlTranslator translator) {
+        return translator.getErrors().stream().map(Throwable::getMessage).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testConcurrentFetches() {
+        DelayedRepository repository = new DelayedRepository();
+        CqlTranslator translator = translate(MAIN, repository,
+                new LibraryManager(new ModelManager()).withMaxConcurrentFetches(2));
+        assertThat(translator.getErrors().toString(), translator.getErrors().size(), is(0));
+        assertThat(translator.toJson(), is(translateSynchronously()));
+
+        // The includes of Main are fetched two at a time, and A is fetched once, for Main
+        assertThat(repository.maxInFlight.get(), is(2));
+        assertThat(repository.fetches.get(), is(4));
+    }
+
+    @Test
+    public void testSequentialFetches() {
+        DelayedRepository repository = new DelayedRepository();
+        CqlTranslator translator = translate(MAIN, repository, new LibraryManager(new ModelManager()));
+        assertThat(translator.getErrors().toString(), translator.getErrors().size(), is(0));
+        assertThat(translator.toJson(), is(translateSynchronously()));
+        assertThat(repository.maxInFlight.get(), is(1));
+    }
+
+    @Test
+    public void testAdaptedProvider() {
+        LibrarySourceProvider provider = libraryIdentifier -> SOURCES.containsKey(libraryIdentifier.getId())
+                ? new ByteArrayInputStream(SOURCES.get(libraryIdentifier.getId()).getBytes(StandardCharsets.UTF_8))
+                : null;
+        CqlTranslator translator = translate(MAIN, new AsyncLibrarySourceProviderAdapter(provider, executor),
+                new LibraryManager(new ModelManager()).withMaxConcurrentFetches(4));
+        assertThat(translator.getErrors().toString(), translator.getErrors().size(), is(0));
+        assertThat(translator.toJson(), is(translateSynchronously()));
+    }
+
+    @Test
+    public void testFetchTimeout() {
+        CqlTranslator translator = translate("library Main\ninclude Missing called M\ninclude A called A\n",
+                new DelayedRepository(), new LibraryManager(new ModelManager())
+                        .withMaxConcurrentFetches(2)
+                        .withFetchTimeout(Duration.ofMillis(500)));
+        assertThat(getMessages(translator), hasItem(startsWith("Timed out loading source for library Missing")));
+
+        // Without fetching ahead, the timeout applies to each fetch
+        translator = translate("library Main\ninclude Missing called M\n",
+                new DelayedRepository(), new LibraryManager(new ModelManager()).withFetchTimeout(Duration.ofMillis(500)));
+        assertThat(getMessages(translator), hasItem(startsWith("Timed out loading source for library Missing")));
+    }
+
+    @Test
+    public void testFetchTimeoutKeepsLimit() {
+        BlockingRepository repository = new BlockingRepository();
+        CqlTranslator translator = translate("library Main\ninclude Slow called S\ninclude A called A\ninclude B called B\n",
+                new AsyncLibrarySourceProviderAdapter(repository, executor), new LibraryManager(new ModelManager())
+                        .withMaxConcurrentFetches(1)
+                        .withFetchTimeout(Duration.ofMillis(200)));
+        assertThat(getMessages(translator), hasItem(startsWith("Timed out loading source for library Slow")));
+
+        // The request for Slow is still running after the timeout, so no other request is made until it completes
+        assertThat(repository.maxInFlight.get(), is(1));
+    }
+
+    @Test
+    public void testAsyncModelInfoProvider() {
+        ModelManager modelManager = new ModelManager().withMaxConcurrentFetches(2).withFetchTimeout(Duration.ofSeconds(30));
+        modelManager.getModelInfoLoader().registerModelInfoProvider(
+                new AsyncModelInfoProviderAdapter(new TestModelInfoProvider(), executor), true);
+        LibraryManager libraryManager = new LibraryManager(modelManager);
+        CqlTranslator translator = CqlTranslator.fromText("library Main\nusing Test\n", modelManager, libraryManager);
+        assertThat(translator.getErrors().toString(), translator.getErrors().size(), is(0));
+        assertThat(modelManager.resolveModel("Test"), notNullValue());
+    }
+}
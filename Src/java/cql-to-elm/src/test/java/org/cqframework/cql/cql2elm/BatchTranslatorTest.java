@@ -0,0 +1,108 @@
+package org.cqframework.cql.cql2elm;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BatchTranslatorTest {
+    private TestDirectory directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = new TestDirectory("batch");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        directory.close();
+    }
+
+    @Test
+    public void testBatchTranslationInDependencyOrder() throws IOException, InterruptedException {
+        Path common = directory.write("Common.cql",
+                "library Common version '1.0.0'\ndefine function Double(value Integer): value * 2\n");
+        Path first = directory.write("First.cql",
+                "library First\ninclude Common version '1.0.0'\ndefine Value: Common.Double(2)\n");
+        Path second = directory.write("Second.cql",
+                "library Second\ncodesystem \"LOINC\": 'http://loinc.org'\ninclude Common version '1.0.0'\ninclude First\n"
+                        + "define Value: First.Value + Common.Double(3)\n");
+        Path invalid = directory.write("Invalid.cql",
+                "library Invalid\ndefine Value: 1 +\n");
+
+        Map<Path, Path> inputs = new LinkedHashMap<>();
+        inputs.put(second, directory.resolve("Second.json"));
+        inputs.put(first, directory.resolve("First.json"));
+        inputs.put(invalid, directory.resolve("Invalid.json"));
+        inputs.put(common, directory.resolve("Common.json"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BatchTranslator translator = new BatchTranslator(3, CqlTranslator.Format.JSON, new CqlTranslatorOptions(),
+                new PrintStream(output, true, "UTF-8"));
+        List<BatchTranslator.Result> results = translator.translate(inputs);
+
+        assertThat(results.size(), is(4));
+        for (BatchTranslator.Result result : results) {
+            assertThat(result.getInput().toString(), result.isSuccess(), is(!result.getInput().equals(invalid)));
+        }
+
+        // Common is included by both other libraries, and First by Second, so they complete in that order
+        int commonIndex = -1;
+        int firstIndex = -1;
+        int secondIndex = -1;
+        for (int i = 0; i < results.size(); i++) {
+            Path input = results.get(i).getInput();
+            if (input.equals(common)) {
+                commonIndex = i;
+            }
+            else if (input.equals(first)) {
+                firstIndex = i;
+            }
+            else if (input.equals(second)) {
+                secondIndex = i;
+            }
+        }
+        assertThat(commonIndex, lessThan(firstIndex));
+        assertThat(firstIndex, lessThan(secondIndex));
+
+        assertThat(Files.exists(directory.resolve("Second.json")), is(true));
+        assertThat(Files.exists(directory.resolve("Invalid.json")), is(false));
+        assertThat(translator.getModelManager(directory.getPath()), notNullValue());
+        assertThat(output.toString("UTF-8"), containsString("Translated 4 libraries (3 succeeded, 1 failed)"));
+    }
+
+    @Test
+    public void testCompiledLibraryCache() throws IOException, InterruptedException {
+        // Common is not an input, so each batch compiles it for First, or loads it from the cache
+        directory.write("Common.cql",
+                "library Common version '1.0.0'\ndefine function Double(value Integer): value * 2\n");
+        Path first = directory.write("First.cql",
+                "library First\ninclude Common version '1.0.0'\ndefine Value: Common.Double(2)\n");
+        Map<Path, Path> inputs = new LinkedHashMap<>();
+        inputs.put(first, directory.resolve("First.json"));
+
+        try (TestDirectory cacheDirectory = new TestDirectory("batch-cache")) {
+            CompiledLibraryCache cache = new CompiledLibraryCache(cacheDirectory.getPath());
+            for (int i = 0; i < 2; i++) {
+                BatchTranslator translator = new BatchTranslator(2, CqlTranslator.Format.JSON, new CqlTranslatorOptions(),
+                        new PrintStream(new ByteArrayOutputStream(), true, "UTF-8")).withCompiledLibraryCache(cache);
+                List<BatchTranslator.Result> results = translator.translate(inputs);
+                assertThat(results.get(0).isSuccess(), is(true));
+            }
+
+            assertThat(cache.getStores(), is(1L));
+            assertThat(cache.getHits(), is(1L));
+        }
+    }
+}
@@ -2,12 +2,17 @@ package org.cqframework.cql.cql2elm;
 
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 import static uk.co.datumedge.hamcrest.json.SameJSONAs.sameJSONAs;
 
 public class CMS146JsonTest {
@@ -22,4 +27,26 @@ public class CMS146JsonTest {
         String actualJson = CqlTranslator.fromFile(cms146, modelManager, new LibraryManager(modelManager)).toJson();
         assertThat(actualJson, sameJSONAs(expectedJson));
     }
+
+    @Test
+    public void testCms146Streaming() throws IOException {
+        File cms146 = new File(URLDecoder.decode(CMS146JsonTest.class.getResource("CMS146v2_Test_CQM.cql").getFile(), "UTF-8"));
+        ModelManager modelManager = new ModelManager();
+        CqlTranslator translator = CqlTranslator.fromFile(cms146, modelManager, new LibraryManager(modelManager));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        translator.toJson(out, false);
+        String streamedJson = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(streamedJson, equalTo(translator.toJson()));
+
+        out = new ByteArrayOutputStream();
+        translator.toJson(out, true);
+        String compactJson = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(compactJson, not(containsString("\n")));
+        assertThat(compactJson, sameJSONAs(streamedJson));
+
+        out = new ByteArrayOutputStream();
+        translator.toXml(out, false);
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), equalTo(translator.toXml()));
+    }
 }
@@ -0,0 +1,104 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.CallContext;
+import org.cqframework.cql.cql2elm.model.OperatorResolution;
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CompilationListenerTest {
+
+    private static class RecordingListener implements CompilationListener {
+        private final Deque<Phase> open = new ArrayDeque<>();
+        private final List<String> events = new ArrayList<>();
+        private int operatorResolutions;
+
+        @Override
+        public void phaseStarted(Phase phase, VersionedIdentifier identifier) {
+            open.push(phase);
+            events.add(String.format("start %s %s", phase, identifier != null ? identifier.getId() : null));
+        }
+
+        @Override
+        public void phaseEnded(Phase phase, VersionedIdentifier identifier) {
+            assertThat(open.pop(), is(phase));
+            events.add(String.format("end %s %s", phase, identifier != null ? identifier.getId() : null));
+        }
+
+        @Override
+        public void operatorResolved(CallContext callContext, OperatorResolution resolution) {
+            operatorResolutions++;
+        }
+    }
+
+    private CqlTranslator translate(CompilationListener listener) throws IOException {
+        ModelManager modelManager = new ModelManager();
+        LibraryManager libraryManager = new LibraryManager(modelManager).withCompilationListener(listener);
+        libraryManager.getLibrarySourceLoader().registerProvider(new TestLibrarySourceProvider());
+        return CqlTranslator.fromStream(CompilationListenerTest.class.getResourceAsStream("LibraryTests/ReferencingLibrary.cql"),
+                modelManager, libraryManager, CqlTranslatorOptions.Options.EnableAnnotations);
+    }
+
+    @Test
+    public void testPhasesAreNested() throws IOException {
+        RecordingListener listener = new RecordingListener();
+        CqlTranslator translator = translate(listener);
+        assertThat(translator.getErrors().size(), is(0));
+        assertThat(listener.open, empty());
+        assertThat(listener.operatorResolutions, greaterThan(0));
+
+        // The included library is compiled within the resolution of the include
+        int resolution = listener.events.indexOf("start LibraryResolution BaseLibrary");
+        int compilation = listener.events.indexOf("start Compilation BaseLibrary");
+        int compiled = listener.events.indexOf("end Compilation BaseLibrary");
+        int resolved = listener.events.indexOf("end LibraryResolution BaseLibrary");
+        assertThat(resolution, greaterThan(0));
+        assertThat(compilation, greaterThan(resolution));
+        assertThat(compiled, greaterThan(compilation));
+        assertThat(resolved, greaterThan(compiled));
+
+        assertThat(listener.events, hasItem("end Compilation ReferencingLibrary"));
+        assertThat(listener.events, hasItem("end Annotation ReferencingLibrary"));
+        assertThat(listener.events, hasItem("start ModelLoading System"));
+    }
+
+    @Test
+    public void testListenerDoesNotChangeOutput() throws IOException {
+        assertThat(translate(new CompilationTimingListener()).toJson(), is(translate(null).toJson()));
+    }
+
+    @Test
+    public void testTimingReport() throws IOException {
+        CompilationTimingListener listener = new CompilationTimingListener();
+        assertThat(translate(listener).getErrors().size(), is(0));
+
+        Map<String, CompilationTimingListener.LibraryTimings> timings = listener.getLibraryTimings();
+        assertThat(timings.keySet(), contains("BaseLibrary", "ReferencingLibrary"));
+
+        CompilationTimingListener.LibraryTimings referencing = timings.get("ReferencingLibrary");
+        assertThat(referencing.getPhases().keySet(), hasItems(CompilationListener.Phase.Compilation,
+                CompilationListener.Phase.Lexing, CompilationListener.Phase.Parsing,
+                CompilationListener.Phase.Preprocessing, CompilationListener.Phase.Translation,
+                CompilationListener.Phase.LibraryResolution, CompilationListener.Phase.Annotation));
+        assertThat(referencing.getIncludes().keySet(), contains("BaseLibrary"));
+        assertThat(referencing.getOperatorResolutions(), greaterThan(0L));
+
+        // The included library is compiled once, within the resolution of its include
+        assertThat(timings.get("BaseLibrary").getPhases().get(CompilationListener.Phase.Compilation).getCount(), is(1L));
+
+        // The timings returned are a snapshot, so later compilations are not reflected in them
+        assertThat(translate(listener).getErrors().size(), is(0));
+        assertThat(timings.get("BaseLibrary").getPhases().get(CompilationListener.Phase.Compilation).getCount(), is(1L));
+        assertThat(listener.getLibraryTimings().get("BaseLibrary")
+                .getPhases().get(CompilationListener.Phase.Compilation).getCount(), is(2L));
+    }
+}
@@ -0,0 +1,148 @@
+package org.cqframework.cql.cql2elm;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CompiledLibraryCacheTest {
+    private static final String MAIN = "library Main\n"
+            + "include Common version '1.0.0' called C\n"
+            + "define Value: C.Double(2)\n"
+            + "define Total: Count(C.Numbers)\n"
+            + "define Range: C.Pair.range\n";
+
+    private static final String COMMON = "library Common version '1.0.0'\n"
+            + "define function Double(value Integer): value * 2\n"
+            + "define Numbers: { 1, 2, 3 }\n"
+            + "define Pair: Tuple { name: 'a', range: Interval[1, 5] }\n";
+
+    private TestDirectory directory;
+    private TestDirectory cacheDirectory;
+
+    @BeforeMethod
+    public void createDirectories() throws IOException {
+        directory = new TestDirectory("cached-library-source");
+        cacheDirectory = new TestDirectory("cached-library");
+    }
+
+    @AfterMethod
+    public void deleteDirectories() throws IOException {
+        directory.close();
+        cacheDirectory.close();
+    }
+
+    private static CqlTranslator translate(String text, Path directory, CompiledLibraryCache cache, CompilationListener listener) {
+        ModelManager modelManager = new ModelManager();
+        LibraryManager libraryManager = new LibraryManager(modelManager).withCompiledLibraryCache(cache)
+                .withCompilationListener(listener);
+        libraryManager.getLibrarySourceLoader().registerProvider(new DefaultLibrarySourceProvider(directory));
+        CqlTranslator translator = CqlTranslator.fromText(text, modelManager, libraryManager);
+        assertThat(translator.getErrors().toString(), translator.getErrors().size(), is(0));
+        return translator;
+    }
+
+    private static CqlTranslator translate(Path directory, CompiledLibraryCache cache) {
+        return translate(MAIN, directory, cache, null);
+    }
+
+    @Test
+    public void testCachedIncludeIsReused() throws IOException {
+        directory.write("Common.cql", COMMON);
+        CompiledLibraryCache cache = new CompiledLibraryCache(cacheDirectory.getPath());
+
+        translate(directory.getPath(), cache);
+        assertThat(cache.getStores(), is(1L));
+        assertThat(cache.getHits(), is(0L));
+
+        // A new library manager (as in a new process) loads Common from the cache, with its definition types
+        CqlTranslator translator = translate(directory.getPath(), cache);
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getStores(), is(1L));
+        assertThat(translator.getTranslatedLibrary().resolveExpressionRef("Value").getResultType().toString(), is("System.Integer"));
+        assertThat(translator.getTranslatedLibrary().resolveExpressionRef("Total").getResultType().toString(), is("System.Integer"));
+        assertThat(translator.getTranslatedLibrary().resolveExpressionRef("Range").getResultType().toString(), is("interval<System.Integer>"));
+
+        // Changing the source of the library compiles it again
+        directory.write("Common.cql", COMMON.replace("value * 2", "value * 3"));
+        translate(directory.getPath(), cache);
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getStores(), is(2L));
+    }
+
+    @Test
+    public void testStaleEntryIsNotUsed() throws IOException {
+        String main = "library Main\n"
+                + "include Middle called M\n"
+                + "define Value: M.Value\n";
+        directory.write("Common.cql", COMMON);
+        directory.write("Middle.cql", "library Middle\n"
+                + "include Common version '1.0.0' called C\n"
+                + "define Value: C.Double(2)\n");
+        CompiledLibraryCache cache = new CompiledLibraryCache(cacheDirectory.getPath());
+        translate(main, directory.getPath(), cache, null);
+        assertThat(cache.getStores(), is(2L));
+
+        // The entry for Middle is found, but it was compiled against the previous source of Common, so it is not
+        // used. Middle and Common are compiled again, and Common is compiled once, for Middle.
+        directory.write("Common.cql", COMMON.replace("value * 2", "value * 3"));
+        CompilationTimingListener listener = new CompilationTimingListener();
+        translate(main, directory.getPath(), cache, listener);
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getStores(), is(4L));
+        assertThat(listener.getLibraryTimings().get("Common version 1.0.0")
+                .getPhases().get(CompilationListener.Phase.Compilation).getCount(), is(1L));
+    }
+
+    @Test
+    public void testIncludedModelTypes() throws IOException {
+        String main = "library Main\n"
+                + "include Middle called M\n"
+                + "define Value: M.Patients\n";
+        directory.write("Common.cql", "library Common version '1.0.0'\n"
+                + "using FHIR version '4.0.1'\n"
+                + "define Patients: [Patient]\n");
+        // Middle does not use FHIR itself, but the type of its definition is a FHIR type
+        directory.write("Middle.cql", "library Middle\n"
+                + "include Common version '1.0.0' called C\n"
+                + "define Patients: C.Patients\n");
+        CompiledLibraryCache cache = new CompiledLibraryCache(cacheDirectory.getPath());
+        translate(main, directory.getPath(), cache, null);
+        assertThat(cache.getStores(), is(2L));
+
+        CqlTranslator translator = translate(main, directory.getPath(), cache, null);
+        assertThat(cache.getHits(), is(2L));
+        assertThat(cache.getStores(), is(2L));
+        assertThat(translator.getTranslatedLibrary().resolveExpressionRef("Value").getResultType().toString(), is("list<FHIR.Patient>"));
+    }
+
+    @Test
+    public void testNamespaceIsPartOfKey() {
+        CompiledLibraryCache cache = new CompiledLibraryCache(cacheDirectory.getPath());
+        byte[] source = COMMON.getBytes(StandardCharsets.UTF_8);
+        CqlTranslatorOptions options = new CqlTranslatorOptions();
+        assertThat(cache.computeKey("http://example.org/a", source, options),
+                not(cache.computeKey("http://example.org/b", source, options)));
+        assertThat(cache.computeKey(null, source, options), not(cache.computeKey("http://example.org/a", source, options)));
+    }
+
+    @Test
+    public void testCacheIsBounded() throws IOException {
+        directory.write("Common.cql", COMMON);
+        CompiledLibraryCache cache = new CompiledLibraryCache(cacheDirectory.getPath(), 1);
+
+        translate(directory.getPath(), cache);
+        assertThat(cache.getStores(), is(1L));
+        try (Stream<Path> entries = Files.list(cache.getDirectory())) {
+            assertThat(entries.count(), is(0L));
+        }
+    }
+}
@@ -155,6 +155,26 @@ public class ElmDeserializeTests {
         }
     }
 
+    @Test
+    public void testJsonReadPaths() throws IOException {
+        String[] fixtures = {"ANCFHIRDummy.json", "ANCFHIRTerminologyDummy.json",
+                "fhir/AdultOutpatientEncounters_FHIR4-2.0.000.json", "qdm/Adult_Outpatient_Encounters-1.2.000.json"};
+        for (String fixture : fixtures) {
+            byte[] content;
+            try (InputStream inputStream = ElmDeserializeTests.class.getResourceAsStream("ElmDeserialize/" + fixture)) {
+                content = inputStream.readAllBytes();
+            }
+
+            Library fromReader = ElmJsonLibraryReader.read(new InputStreamReader(new ByteArrayInputStream(content), "UTF-8"));
+            Library fromStream = ElmJsonLibraryReader.read(new ByteArrayInputStream(content));
+            Library fromBytes = ElmJsonLibraryReader.read(content);
+
+            Assert.assertEquals(fromStream, fromReader, fixture);
+            Assert.assertEquals(fromBytes, fromReader, fixture);
+            Assert.assertEquals(CqlTranslator.convertToJson(fromStream), CqlTranslator.convertToJson(fromReader), fixture);
+        }
+    }
+
     private void testElmDeserialization(String directoryName) throws URISyntaxException, IOException, JAXBException {
         URL dirURL = ElmDeserializeTests.class.getResource(String.format("ElmDeserialize/%s/", directoryName));
         File file = new File(dirURL.toURI());
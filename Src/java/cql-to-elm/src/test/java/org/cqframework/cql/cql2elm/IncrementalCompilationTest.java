@@ -0,0 +1,123 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IncrementalCompilationTest {
+    private TestDirectory directory;
+    private Path main;
+
+    @BeforeMethod
+    public void createLibraries() throws IOException {
+        directory = new TestDirectory("incremental-library-source");
+        main = directory.copyIncludeTree();
+    }
+
+    @AfterMethod
+    public void deleteLibraries() throws IOException {
+        directory.close();
+    }
+
+    private LibraryManager createLibraryManager() {
+        LibraryManager libraryManager = new LibraryManager(new ModelManager()).withTrackSourceChanges(true);
+        libraryManager.getLibrarySourceLoader().registerProvider(new DefaultLibrarySourceProvider(directory.getPath()));
+        return libraryManager;
+    }
+
+    private CqlTranslator translate(LibraryManager libraryManager) throws IOException {
+        return translate(main, libraryManager);
+    }
+
+    private static CqlTranslator translate(Path file, LibraryManager libraryManager) throws IOException {
+        CqlTranslator translator = CqlTranslator.fromFile(file.toFile(), libraryManager.getModelManager(), libraryManager);
+        assertThat(translator.getErrors().toString(), translator.getErrors().size(), is(0));
+        return translator;
+    }
+
+    @Test
+    public void testChangedLibraryIsRebuiltWithItsDependents() throws IOException {
+        LibraryManager libraryManager = createLibraryManager();
+        translate(libraryManager);
+        assertThat(libraryManager.getRebuiltLibraries(), containsInAnyOrder("Left", "Right", "Leaf", "Common"));
+
+        // Nothing changed, so every library is reused
+        assertThat(libraryManager.invalidateChangedLibraries(), empty());
+        translate(libraryManager);
+        assertThat(libraryManager.getRebuiltLibraries(), empty());
+
+        CompiledLibrary leaf = libraryManager.getCompiledLibraries().get("Leaf");
+        directory.write("Common-1.0.0.cql", "library Common version '1.0.0'\n"
+                + "define function Double(value Integer): value + value\n");
+        assertThat(libraryManager.invalidateChangedLibraries(), containsInAnyOrder("Common", "Left", "Right"));
+        CqlTranslator translator = translate(libraryManager);
+        assertThat(libraryManager.getRebuiltLibraries(), containsInAnyOrder("Common", "Left", "Right"));
+        assertThat(libraryManager.getCompiledLibraries().get("Leaf"), sameInstance(leaf));
+
+        // The output is that of compiling every library again
+        assertThat(translator.toJson(), is(translate(createLibraryManager()).toJson()));
+    }
+
+    @Test
+    public void testNewVersionOfUnversionedIncludeIsDetected() throws IOException {
+        Path unversioned = directory.write("Unversioned.cql", "library Unversioned\n"
+                + "include Common called C\n"
+                + "define Value: C.Double(1)\n");
+        LibraryManager libraryManager = createLibraryManager();
+        translate(unversioned, libraryManager);
+        assertThat(libraryManager.getCompiledLibraries().get("Common").getIdentifier().getVersion(), is("1.0.0"));
+
+        // The include does not name a version, so it now resolves to the new version
+        directory.write("Common-1.1.0.cql", "library Common version '1.1.0'\n"
+                + "define function Double(value Integer): value + value\n");
+        assertThat(libraryManager.invalidateChangedLibraries(), hasItem("Common"));
+        translate(unversioned, libraryManager);
+        assertThat(libraryManager.getCompiledLibraries().get("Common").getIdentifier().getVersion(), is("1.1.0"));
+    }
+
+    @Test
+    public void testChangesAreNotTrackedByDefault() throws IOException {
+        LibraryManager libraryManager = createLibraryManager().withTrackSourceChanges(false);
+        translate(libraryManager);
+
+        directory.write("Common-1.0.0.cql", "library Common version '1.0.0'\n"
+                + "define function Double(value Integer): value + value\n");
+        assertThat(libraryManager.invalidateChangedLibraries(), empty());
+    }
+
+    @Test
+    public void testInvalidateLibrary() throws IOException {
+        LibraryManager libraryManager = createLibraryManager();
+        translate(libraryManager);
+
+        assertThat(libraryManager.invalidateLibrary(new VersionedIdentifier().withId("Leaf")), contains("Leaf"));
+        assertThat(libraryManager.invalidateLibrary(new VersionedIdentifier().withId("Leaf")), empty());
+        assertThat(libraryManager.invalidateLibrary(new VersionedIdentifier().withId("Left")), contains("Left"));
+        assertThat(libraryManager.getCompiledLibraries().keySet(), hasItems("Right", "Common"));
+        assertThat(libraryManager.getCompiledLibraries().keySet(), not(hasItem("Left")));
+        assertThat(libraryManager.getCompiledLibraries().keySet(), not(hasItem("Leaf")));
+
+        translate(libraryManager);
+        assertThat(libraryManager.getRebuiltLibraries(), containsInAnyOrder("Left", "Leaf"));
+    }
+
+    @Test
+    public void testRemovedLibraryIsInvalidated() throws IOException {
+        LibraryManager libraryManager = createLibraryManager();
+        translate(libraryManager);
+
+        Files.delete(directory.resolve("Leaf.cql"));
+        assertThat(libraryManager.invalidateChangedLibraries(), contains("Leaf"));
+        assertThat(libraryManager.getCompiledLibraries().keySet(), hasItems("Left", "Right", "Common"));
+        assertThat(libraryManager.getCompiledLibraries().keySet(), not(hasItem("Leaf")));
+    }
+}
@@ -0,0 +1,129 @@
+package org.cqframework.cql.cql2elm;
+
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IndexedLibrarySourceProviderTest {
+    private TestDirectory libraries;
+    private Path directory;
+
+    @BeforeMethod
+    public void createLibraries() throws IOException {
+        libraries = new TestDirectory("indexed-library-source");
+        libraries.write("Common-1.0.0.cql", "library Common version '1.0.0'\n");
+        libraries.write("sub/Common-1.2.0.cql", "library Common version '1.2.0'\n");
+        libraries.write("Common-2.0.0.cql", "library Common version '2.0.0'\n");
+        libraries.write("Helpers.cql", "library Helpers\n");
+        libraries.write("Helpers.txt", "not a library\n");
+        directory = libraries.getPath();
+    }
+
+    @AfterMethod
+    public void deleteLibraries() throws IOException {
+        libraries.close();
+    }
+
+    private static VersionedIdentifier identifier(String id, String version) {
+        return new VersionedIdentifier().withId(id).withVersion(version);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(condition.getAsBoolean(), is(true));
+    }
+
+    @Test
+    public void testResolution() throws IOException {
+        try (IndexedLibrarySourceProvider provider = new IndexedLibrarySourceProvider(directory)) {
+            assertThat(provider.resolve(identifier("Common", "1.0.0")), is(directory.resolve("Common-1.0.0.cql")));
+            // The most recent compatible version
+            assertThat(provider.resolve(identifier("Common", "1.1")), is(directory.resolve("sub/Common-1.2.0.cql")));
+            assertThat(provider.resolve(identifier("Common", null)), is(directory.resolve("Common-2.0.0.cql")));
+            // The file without a version is used for any version
+            assertThat(provider.resolve(identifier("Helpers", "3.0.0")), is(directory.resolve("Helpers.cql")));
+            assertThat(provider.resolve(identifier("Missing", null)), nullValue());
+
+            assertThat(provider.isLibrarySourceAvailable(identifier("Helpers", null), LibraryContentType.CQL), is(true));
+            assertThat(provider.isLibrarySourceAvailable(identifier("Helpers", null), LibraryContentType.JSON), is(false));
+            assertThat(provider.getLibrarySource(identifier("Missing", null)), nullValue());
+            try (InputStream source = provider.getLibrarySource(identifier("Common", "1.0.0"))) {
+                assertThat(new String(source.readAllBytes(), StandardCharsets.UTF_8), is("library Common version '1.0.0'\n"));
+            }
+        }
+    }
+
+    @Test
+    public void testSingleDirectory() throws IOException {
+        try (IndexedLibrarySourceProvider provider = new IndexedLibrarySourceProvider(directory, false, false)) {
+            // The compatible version is in a subdirectory
+            assertThat(provider.resolve(identifier("Common", "1.1")), nullValue());
+            assertThat(provider.resolve(identifier("Common", null)), is(directory.resolve("Common-2.0.0.cql")));
+        }
+    }
+
+    @Test
+    public void testSymbolicLink() throws IOException {
+        Path target = libraries.write("targets/Linked.txt", "library Linked\n");
+        try {
+            Files.createSymbolicLink(directory.resolve("Linked.cql"), target);
+        }
+        catch (UnsupportedOperationException | IOException e) {
+            throw new SkipException("Symbolic links are not supported", e);
+        }
+
+        // A linked file is indexed, as DefaultLibrarySourceProvider resolves it
+        try (IndexedLibrarySourceProvider provider = new IndexedLibrarySourceProvider(directory, false, false)) {
+            assertThat(provider.resolve(identifier("Linked", null)), is(directory.resolve("Linked.cql")));
+        }
+    }
+
+    @Test
+    public void testRefresh() throws IOException {
+        try (IndexedLibrarySourceProvider provider = new IndexedLibrarySourceProvider(directory)) {
+            libraries.write("Late.cql", "library Late\n");
+            Files.delete(directory.resolve("Common-2.0.0.cql"));
+            assertThat(provider.resolve(identifier("Late", null)), nullValue());
+
+            // A file removed since it was indexed is dropped from the index when its source is requested
+            try (InputStream source = provider.getLibrarySource(identifier("Common", null))) {
+                assertThat(new String(source.readAllBytes(), StandardCharsets.UTF_8), is("library Common version '1.2.0'\n"));
+            }
+
+            provider.refresh();
+            assertThat(provider.resolve(identifier("Late", null)), is(directory.resolve("Late.cql")));
+        }
+    }
+
+    @Test
+    public void testWatch() throws IOException, InterruptedException {
+        try (IndexedLibrarySourceProvider provider = new IndexedLibrarySourceProvider(directory, true)) {
+            assertThat(provider.isWatching(), is(true));
+
+            libraries.write("Late.cql", "library Late\n");
+            waitFor(() -> provider.resolve(identifier("Late", null)) != null);
+
+            libraries.write("new/Later.cql", "library Later\n");
+            waitFor(() -> provider.resolve(identifier("Later", null)) != null);
+
+            Files.delete(directory.resolve("Common-2.0.0.cql"));
+            waitFor(() -> directory.resolve("sub/Common-1.2.0.cql").equals(provider.resolve(identifier("Common", null))));
+        }
+    }
+}
@@ -2,8 +2,14 @@ package org.cqframework.cql.cql2elm;
 
 import org.hl7.elm_modelinfo.r1.*;
 import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
 public class JacksonModelInfoLoadingTests {
     @Test
     public void testSystem() throws IOException {
@@ -149,4 +155,19 @@ public class JacksonModelInfoLoadingTests {
     public void testFhirModelInfo401() throws IOException {
         ModelInfoXmlReader.readValue(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-4.0.1.xml"), ModelInfo.class);
     }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        ModelInfo modelInfo = ModelInfoXmlReader.readValue(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-4.0.1.xml"), ModelInfo.class);
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        ModelInfoSnapshotReader.write(modelInfo, snapshot);
+        ModelInfo snapshotModelInfo = ModelInfoSnapshotReader.read(new ByteArrayInputStream(snapshot.toByteArray()));
+        assertThat(snapshotModelInfo, is(modelInfo));
+    }
+
+    @Test
+    public void testSnapshotFallsBackToXml() throws IOException {
+        ModelInfo modelInfo = ModelInfoSnapshotReader.readResource("/org/hl7/elm/r1/system-modelinfo.xml");
+        assertThat(modelInfo.getName(), is("System"));
+    }
 }
@@ -0,0 +1,121 @@
+package org.cqframework.cql.cql2elm;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class LibraryPrefetcherTest {
+    private TestDirectory directory;
+    private Path main;
+
+    @BeforeMethod
+    public void createLibraries() throws IOException {
+        directory = new TestDirectory("prefetched-library-source");
+        main = directory.copyIncludeTree();
+    }
+
+    @AfterMethod
+    public void deleteLibraries() throws IOException {
+        directory.close();
+    }
+
+    private CqlTranslator translate(Executor executor, CompilationListener listener) throws IOException {
+        ModelManager modelManager = new ModelManager();
+        LibraryManager libraryManager = new LibraryManager(modelManager)
+                .withIncludeExecutor(executor)
+                .withCompilationListener(listener);
+        libraryManager.getLibrarySourceLoader().registerProvider(new DefaultLibrarySourceProvider(directory.getPath()));
+        return CqlTranslator.fromFile(main.toFile(), modelManager, libraryManager);
+    }
+
+    private static List<String> getMessages(CqlTranslator translator) {
+        return translator.getExceptions().stream().map(Throwable::getMessage).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPrefetchedIncludes() throws IOException {
+        CompilationTimingListener listener = new CompilationTimingListener();
+        // Prefetches are compiled as they are started, before the including library is translated
+        CqlTranslator prefetched = translate(Runnable::run, listener);
+        assertThat(prefetched.getErrors().toString(), prefetched.getErrors().size(), is(0));
+        assertThat(prefetched.toJson(), is(translate(null, null).toJson()));
+
+        // Common is compiled once, for Left, and used by Right
+        assertThat(listener.getLibraryTimings().get("Common version 1.0.0")
+                .getPhases().get(CompilationListener.Phase.Compilation).getCount(), is(1L));
+        assertThat(prefetched.getTranslatedLibraries().keySet(), hasItems("Left", "Right", "Leaf", "Common"));
+    }
+
+    @Test
+    public void testConcurrentIncludes() throws IOException {
+        String expected = translate(null, null).toJson();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 10; i++) {
+                CqlTranslator translator = translate(executor, null);
+                assertThat(translator.getErrors().toString(), translator.getErrors().size(), is(0));
+                assertThat(translator.toJson(), is(expected));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testErrorsAreReportedAsWithoutPrefetching() throws IOException {
+        // Right includes a version of Common other than the one already loaded for Left
+        directory.write("Common-2.0.0.cql", "library Common version '2.0.0'\n"
+                + "define function Double(value Integer): value * 2\n");
+        directory.write("Right.cql", "library Right\n"
+                + "include Common version '2.0.0' called C\n"
+                + "define Value: C.Double(2)\n");
+        List<String> expected = getMessages(translate(null, null));
+        assertThat(expected, not(empty()));
+        assertThat(getMessages(translate(Runnable::run, null)), is(expected));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertThat(getMessages(translate(executor, null)), is(expected));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCyclesAreReportedAsWithoutPrefetching() throws IOException {
+        directory.write("Left.cql", "library Left\n"
+                + "include Right called R\n"
+                + "define Value: 1\n");
+        directory.write("Right.cql", "library Right\n"
+                + "include Left called L\n"
+                + "define Value: 2\n");
+        List<String> expected = getMessages(translate(null, null));
+        assertThat(expected, not(empty()));
+        assertThat(getMessages(translate(Runnable::run, null)), is(expected));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertThat(getMessages(translate(executor, null)), is(expected));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.cqframework.cql.cql2elm;
 
+import org.cqframework.cql.cql2elm.model.Model;
 import org.hl7.elm.r1.Library;
 import org.hl7.elm.r1.VersionedIdentifier;
 import org.testng.annotations.AfterClass;
@@ -7,9 +8,15 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class ModelTests {
     private ModelManager modelManager;
@@ -38,4 +45,33 @@ public class ModelTests {
             e.printStackTrace();
         }
     }
+
+    @Test
+    public void testSharedModelCache() {
+        ModelCache modelCache = new ModelCache();
+        Model first = new ModelManager(modelCache).resolveModel("FHIR", "4.0.1");
+        Model second = new ModelManager(modelCache).resolveModel("FHIR", "4.0.1");
+        assertThat(second, sameInstance(first));
+        assertThat(new ModelManager(modelCache).resolveModel("System"), sameInstance(new ModelManager(modelCache).resolveModel("System")));
+    }
+
+    @Test
+    public void testConcurrentModelResolution() throws Exception {
+        ModelCache modelCache = new ModelCache();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Model>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> new ModelManager(modelCache).resolveModel("FHIR", "4.0.1")));
+            }
+
+            Model model = results.get(0).get();
+            for (Future<Model> result : results) {
+                assertThat(result.get(), sameInstance(model));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
 }
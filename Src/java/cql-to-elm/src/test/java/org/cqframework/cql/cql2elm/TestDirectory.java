@@ -0,0 +1,79 @@
+package org.cqframework.cql.cql2elm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * A temporary directory of library sources, for tests of the components that read libraries from the file system.
+ * Tests create one per test method and close it in an @AfterMethod, which deletes the directory.
+ */
+public class TestDirectory implements Closeable {
+    private final Path path;
+
+    public TestDirectory(String prefix) throws IOException {
+        path = Files.createTempDirectory(prefix);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Path resolve(String fileName) {
+        return path.resolve(fileName);
+    }
+
+    /**
+     * Writes the given text to the given file (which may be in a subdirectory), replacing it if it exists.
+     */
+    public Path write(String fileName, String text) throws IOException {
+        Path file = path.resolve(fileName);
+        Files.createDirectories(file.getParent());
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Copies the given files from the given test resource directory (relative to this class) to the directory.
+     */
+    public void copyResources(String resourceDirectory, String... fileNames) throws IOException {
+        for (String fileName : fileNames) {
+            try (InputStream is = TestDirectory.class.getResourceAsStream(resourceDirectory + "/" + fileName)) {
+                if (is == null) {
+                    throw new IllegalArgumentException(String.format("Resource %s/%s not found.", resourceDirectory, fileName));
+                }
+                Files.copy(is, path.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Copies the libraries of the IncludeTree test resources to the directory: Main includes Left, Right and Leaf,
+     * and Left and Right both include Common version 1.0.0.
+     *
+     * @return The Main library file
+     */
+    public Path copyIncludeTree() throws IOException {
+        copyResources("IncludeTree", "Main.cql", "Left.cql", "Right.cql", "Leaf.cql", "Common-1.0.0.cql");
+        return path.resolve("Main.cql");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
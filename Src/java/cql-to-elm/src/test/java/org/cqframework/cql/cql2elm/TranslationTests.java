@@ -1,6 +1,7 @@
 package org.cqframework.cql.cql2elm;
 
 import org.cqframework.cql.elm.tracking.TrackBack;
+import org.cqframework.cql.cql2elm.model.SystemModel;
 import org.hl7.cql_annotations.r1.CqlToElmInfo;
 import org.hl7.elm.r1.*;
 import org.testng.annotations.Test;
@@ -141,4 +142,17 @@ public class TranslationTests {
         As as = (As)operand;
         assertThat(as.getAsTypeSpecifier(), is(instanceOf(ChoiceTypeSpecifier.class)));
     }
+
+    @Test
+    public void testSharedSystemLibrary() {
+        ModelManager modelManager = new ModelManager();
+        String cql = "library Test\ndefine Value: Coalesce(null, 1, 2)\ndefine Items: flatten { { 1 }, { 2 } }\n";
+        CqlTranslator first = CqlTranslator.fromText(cql, modelManager, new LibraryManager(modelManager));
+        CqlTranslator second = CqlTranslator.fromText(cql, modelManager, new LibraryManager(modelManager));
+        assertEquals(0, first.getErrors().size());
+        assertEquals(0, second.getErrors().size());
+
+        SystemModel systemModel = (SystemModel)modelManager.resolveModel("System");
+        assertTrue(systemModel.getSystemLibrary().getOperatorMap().isFrozen());
+    }
 }
@@ -0,0 +1,62 @@
+package org.cqframework.cql.cql2elm.model;
+
+import org.hl7.cql.model.ListType;
+import org.hl7.cql.model.SimpleType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ConversionMapTest {
+    private static final SimpleType integerType = new SimpleType("System.Integer");
+    private static final SimpleType decimalType = new SimpleType("System.Decimal");
+    private static final SimpleType stringType = new SimpleType("System.String");
+
+    private static Conversion toDecimal() {
+        return new Conversion(new Operator("ToDecimal", new Signature(integerType), decimalType), true);
+    }
+
+    @Test
+    public void testConversionCacheHits() {
+        ConversionMap conversionMap = new ConversionMap();
+        conversionMap.add(toDecimal());
+        OperatorMap operatorMap = new OperatorMap();
+
+        Conversion first = conversionMap.findConversion(integerType, decimalType, true, false, operatorMap);
+        Conversion second = conversionMap.findConversion(integerType, decimalType, true, false, operatorMap);
+        Assert.assertNotNull(first);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(conversionMap.getConversionCacheMisses(), 1);
+        Assert.assertEquals(conversionMap.getConversionCacheHits(), 1);
+
+        // Failures to find a conversion are cached too
+        Assert.assertNull(conversionMap.findConversion(stringType, decimalType, true, false, operatorMap));
+        Assert.assertNull(conversionMap.findConversion(stringType, decimalType, true, false, operatorMap));
+        Assert.assertEquals(conversionMap.getConversionCacheMisses(), 2);
+        Assert.assertEquals(conversionMap.getConversionCacheHits(), 2);
+
+        // The flags are part of the key
+        Assert.assertNotNull(conversionMap.findConversion(integerType, decimalType, false, false, operatorMap));
+        Assert.assertEquals(conversionMap.getConversionCacheMisses(), 3);
+    }
+
+    @Test
+    public void testConversionCacheInvalidatedByAdd() {
+        ConversionMap conversionMap = new ConversionMap();
+        OperatorMap operatorMap = new OperatorMap();
+        Assert.assertNull(conversionMap.findConversion(integerType, decimalType, true, false, operatorMap));
+
+        conversionMap.add(toDecimal());
+        Assert.assertNotNull(conversionMap.findConversion(integerType, decimalType, true, false, operatorMap));
+        Assert.assertEquals(conversionMap.getConversionCacheHits(), 0);
+    }
+
+    @Test
+    public void testConversionCacheInvalidatedByPromotionSettings() {
+        ConversionMap conversionMap = new ConversionMap();
+        OperatorMap operatorMap = new OperatorMap();
+        Assert.assertNotNull(conversionMap.findConversion(integerType, new ListType(integerType), true, false, operatorMap));
+
+        conversionMap.disableListPromotion();
+        Assert.assertNull(conversionMap.findConversion(integerType, new ListType(integerType), true, false, operatorMap));
+        Assert.assertEquals(conversionMap.getConversionCacheHits(), 0);
+    }
+}
@@ -14,6 +14,7 @@ import java.util.Map;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.fail;
 import static org.testng.AssertJUnit.assertNotNull;
@@ -163,4 +164,22 @@ public class ModelImporterTest {
         }
         */
     }
-}
\ No newline at end of file
+
+    @Test
+    public void lazyTypeResolution() {
+        ModelManager modelManager = new ModelManager();
+        ModelInfo fhirModelInfo = modelManager.getModelInfoLoader().getModelInfo(new VersionedIdentifier().withId("FHIR").withVersion("4.0.1"));
+        ModelImporter eagerImporter = new ModelImporter(fhirModelInfo, modelManager);
+        ModelImporter lazyImporter = new ModelImporter(fhirModelInfo, modelManager, true);
+
+        int resolvedBeforeRequest = lazyImporter.getTypes().size();
+        assertThat(resolvedBeforeRequest, lessThan(eagerImporter.getTypes().size()));
+
+        ClassType patient = (ClassType)lazyImporter.resolveType("FHIR.Patient");
+        assertNotNull(patient);
+        ClassType eagerPatient = (ClassType)eagerImporter.getTypes().get("FHIR.Patient");
+        assertThat(patient.getElements().size(), is(eagerPatient.getElements().size()));
+        assertThat(lazyImporter.resolveType("Patient"), is(patient));
+        assertNull(lazyImporter.resolveType("FHIR.NotAType"));
+    }
+}
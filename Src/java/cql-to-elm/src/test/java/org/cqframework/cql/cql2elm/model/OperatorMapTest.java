@@ -0,0 +1,70 @@
+package org.cqframework.cql.cql2elm.model;
+
+import org.hl7.cql.model.DataType;
+import org.hl7.cql.model.SimpleType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class OperatorMapTest {
+    private static final SimpleType integerType = new SimpleType("System.Integer");
+    private static final SimpleType decimalType = new SimpleType("System.Decimal");
+
+    private static CallContext call(String operatorName, DataType... signature) {
+        return new CallContext("System", operatorName, false, false, false, signature);
+    }
+
+    @Test
+    public void testResolutionCacheHits() {
+        OperatorMap operatorMap = new OperatorMap();
+        operatorMap.addOperator(new Operator("Add", new Signature(integerType, integerType), integerType));
+
+        OperatorResolution first = operatorMap.resolveOperator(call("Add", integerType, integerType), null);
+        OperatorResolution second = operatorMap.resolveOperator(call("Add", integerType, integerType), null);
+        Assert.assertNotNull(first);
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(first.getOperator(), second.getOperator());
+        Assert.assertEquals(operatorMap.getResolutionCacheMisses(), 1);
+        Assert.assertEquals(operatorMap.getResolutionCacheHits(), 1);
+
+        // Unresolved calls are cached too
+        Assert.assertNull(operatorMap.resolveOperator(call("Add", decimalType, decimalType), null));
+        Assert.assertNull(operatorMap.resolveOperator(call("Add", decimalType, decimalType), null));
+        Assert.assertEquals(operatorMap.getResolutionCacheMisses(), 2);
+        Assert.assertEquals(operatorMap.getResolutionCacheHits(), 2);
+    }
+
+    @Test
+    public void testResolutionCacheInvalidatedByAddOperator() {
+        OperatorMap operatorMap = new OperatorMap();
+        operatorMap.addOperator(new Operator("Add", new Signature(integerType, integerType), integerType));
+        Assert.assertNull(operatorMap.resolveOperator(call("Add", decimalType, decimalType), null));
+
+        Operator decimalAdd = new Operator("Add", new Signature(decimalType, decimalType), decimalType);
+        operatorMap.addOperator(decimalAdd);
+        OperatorResolution resolution = operatorMap.resolveOperator(call("Add", decimalType, decimalType), null);
+        Assert.assertNotNull(resolution);
+        Assert.assertSame(resolution.getOperator(), decimalAdd);
+        Assert.assertEquals(operatorMap.getResolutionCacheHits(), 0);
+    }
+
+    @Test
+    public void testResolutionCacheInvalidatedByConversionMap() {
+        OperatorMap operatorMap = new OperatorMap();
+        Operator decimalAdd = new Operator("Add", new Signature(decimalType, decimalType), decimalType);
+        operatorMap.addOperator(decimalAdd);
+
+        ConversionMap conversionMap = new ConversionMap();
+        Assert.assertNull(operatorMap.resolveOperator(call("Add", integerType, integerType), conversionMap));
+
+        conversionMap.add(new Conversion(new Operator("ToDecimal", new Signature(integerType), decimalType), true));
+        OperatorResolution resolution = operatorMap.resolveOperator(call("Add", integerType, integerType), conversionMap);
+        Assert.assertNotNull(resolution);
+        Assert.assertSame(resolution.getOperator(), decimalAdd);
+        Assert.assertTrue(resolution.hasConversions());
+        Assert.assertEquals(operatorMap.getResolutionCacheHits(), 0);
+
+        // A different conversion map does not see results cached for another
+        Assert.assertNull(operatorMap.resolveOperator(call("Add", integerType, integerType), new ConversionMap()));
+        Assert.assertEquals(operatorMap.getResolutionCacheHits(), 0);
+    }
+}
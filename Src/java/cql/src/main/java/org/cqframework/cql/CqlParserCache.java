@@ -0,0 +1,206 @@
+package org.cqframework.cql;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.cqframework.cql.gen.cqlLexer;
+import org.cqframework.cql.gen.cqlParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the prediction state (DFA and prediction context cache) used by CQL lexers and parsers.
+ *
+ * The ATN simulators of the generated lexer and parser learn DFA states as they parse, which is what makes later
+ * parses fast. Lexers and parsers created through a cache share its state, both across compilations and across
+ * threads (the ANTLR simulators synchronize their updates to the shared state). The cache is bounded: once the
+ * number of DFA states exceeds the configured maximum, the state is discarded and relearned. Parsers that are
+ * already running when the cache is cleared keep using the state they were created with.
+ */
+public class CqlParserCache {
+    public static final int DEFAULT_MAX_DFA_STATES = 500000;
+
+    /**
+     * The FHIRHelpers libraries bundled with the translator, used by warmUp() to prime the cache.
+     */
+    public static final String[] FHIR_HELPERS_RESOURCES = {
+            "/org/hl7/fhir/FHIRHelpers-4.0.1.cql",
+            "/org/hl7/fhir/FHIRHelpers-4.0.0.cql",
+            "/org/hl7/fhir/FHIRHelpers-3.0.0.cql",
+            "/org/hl7/fhir/FHIRHelpers-1.0.2.cql"
+    };
+
+    private static final CqlParserCache sharedInstance = new CqlParserCache();
+
+    /**
+     * Returns the process-wide parser cache.
+     */
+    public static CqlParserCache getSharedInstance() {
+        return sharedInstance;
+    }
+
+    private static class State {
+        private final DFA[] lexerDFA = createDFA(cqlLexer._ATN);
+        private final PredictionContextCache lexerContextCache = new PredictionContextCache();
+        private final DFA[] parserDFA = createDFA(cqlParser._ATN);
+        private final PredictionContextCache parserContextCache = new PredictionContextCache();
+        // The number of DFA states learned, counted as they are added so that the bound is checked in constant time
+        private final AtomicInteger stateCount = new AtomicInteger();
+
+        private static DFA[] createDFA(ATN atn) {
+            DFA[] result = new DFA[atn.getNumberOfDecisions()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = new DFA(atn.getDecisionState(i), i);
+            }
+
+            return result;
+        }
+    }
+
+    private final int maxDfaStates;
+    private volatile State state = new State();
+    private volatile long clearCount;
+
+    public CqlParserCache() {
+        this(DEFAULT_MAX_DFA_STATES);
+    }
+
+    public CqlParserCache(int maxDfaStates) {
+        if (maxDfaStates <= 0) {
+            throw new IllegalArgumentException("maxDfaStates must be greater than zero.");
+        }
+
+        this.maxDfaStates = maxDfaStates;
+    }
+
+    public int getMaxDfaStates() {
+        return maxDfaStates;
+    }
+
+    public cqlLexer createLexer(CharStream input) {
+        cqlLexer lexer = new cqlLexer(input);
+        State current = state;
+        lexer.setInterpreter(new LexerATNSimulator(lexer, cqlLexer._ATN, current.lexerDFA, current.lexerContextCache) {
+            @Override
+            protected DFAState addDFAState(ATNConfigSet configs) {
+                DFAState result = super.addDFAState(configs);
+                // An existing state has the configurations it was added with, a new state has these
+                if (result.configs == configs) {
+                    current.stateCount.incrementAndGet();
+                }
+                return result;
+            }
+        });
+        return lexer;
+    }
+
+    public cqlParser createParser(TokenStream tokens) {
+        ensureBounded();
+        cqlParser parser = new cqlParser(tokens);
+        State current = state;
+        parser.setInterpreter(new ParserATNSimulator(parser, cqlParser._ATN, current.parserDFA, current.parserContextCache) {
+            @Override
+            protected DFAState addDFAState(DFA dfa, DFAState D) {
+                DFAState result = super.addDFAState(dfa, D);
+                // The given state is returned if it was added, the existing state otherwise
+                if (result == D && D != ERROR) {
+                    current.stateCount.incrementAndGet();
+                }
+                return result;
+            }
+        });
+        return parser;
+    }
+
+    /**
+     * Primes the cache by parsing the given sources. Syntax errors in the sources are ignored.
+     */
+    public void warmUp(CharStream... sources) {
+        for (CharStream source : sources) {
+            cqlLexer lexer = createLexer(source);
+            lexer.removeErrorListeners();
+            cqlParser parser = createParser(new CommonTokenStream(lexer));
+            parser.removeErrorListeners();
+            parser.setBuildParseTree(false);
+            parser.library();
+        }
+    }
+
+    /**
+     * Primes the cache by parsing the bundled FHIRHelpers libraries that are available on the classpath.
+     * @return The number of libraries parsed
+     */
+    public int warmUp() throws IOException {
+        int count = 0;
+        for (String resource : FHIR_HELPERS_RESOURCES) {
+            InputStream is = CqlParserCache.class.getResourceAsStream(resource);
+            if (is != null) {
+                try (InputStream source = is) {
+                    warmUp(CharStreams.fromStream(source));
+                }
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    public int getLexerDfaStateCount() {
+        return countStates(state.lexerDFA);
+    }
+
+    public int getParserDfaStateCount() {
+        return countStates(state.parserDFA);
+    }
+
+    public int getDfaStateCount() {
+        State current = state;
+        return countStates(current.lexerDFA) + countStates(current.parserDFA);
+    }
+
+    /**
+     * Returns the number of times the cache has been cleared, either explicitly or because it exceeded its bound.
+     */
+    public long getClearCount() {
+        return clearCount;
+    }
+
+    /**
+     * Discards all learned prediction state.
+     */
+    public synchronized void clear() {
+        state = new State();
+        clearCount++;
+    }
+
+    private void ensureBounded() {
+        if (state.stateCount.get() > maxDfaStates) {
+            synchronized (this) {
+                if (state.stateCount.get() > maxDfaStates) {
+                    clear();
+                }
+            }
+        }
+    }
+
+    private static int countStates(DFA[] dfas) {
+        int result = 0;
+        for (DFA dfa : dfas) {
+            synchronized (dfa.states) {
+                result += dfa.states.size();
+            }
+        }
+
+        return result;
+    }
+}
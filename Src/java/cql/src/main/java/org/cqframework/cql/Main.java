@@ -23,9 +23,9 @@ public class Main {
             is = new FileInputStream(inputFile);
         }
         CharStream input = CharStreams.fromStream(is);
-        cqlLexer lexer = new cqlLexer(input);
+        cqlLexer lexer = CqlParserCache.getSharedInstance().createLexer(input);
         CommonTokenStream tokens = new CommonTokenStream(lexer);
-        cqlParser parser = new cqlParser(tokens);
+        cqlParser parser = CqlParserCache.getSharedInstance().createParser(tokens);
         parser.setBuildParseTree(true);
         ParseTree tree = parser.library();
 
@@ -0,0 +1,43 @@
+package org.cqframework.cql;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.cqframework.cql.gen.cqlParser;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class CqlParserCacheTest {
+    private static final String LIBRARY = "library Test\ndefine X: Interval[1, 10] overlaps Interval[5, 15]\n";
+
+    @Test
+    public void warmUpAndClear() {
+        CqlParserCache cache = new CqlParserCache();
+        assertEquals(cache.getDfaStateCount(), 0);
+
+        cache.warmUp(CharStreams.fromString(LIBRARY));
+        int warmed = cache.getParserDfaStateCount();
+        assertTrue(warmed > 0);
+        assertTrue(cache.getLexerDfaStateCount() > 0);
+
+        // Parsing the same source again does not learn new states
+        cache.warmUp(CharStreams.fromString(LIBRARY));
+        assertEquals(cache.getParserDfaStateCount(), warmed);
+
+        cache.clear();
+        assertEquals(cache.getDfaStateCount(), 0);
+        assertEquals(cache.getClearCount(), 1);
+    }
+
+    @Test
+    public void boundedCache() {
+        CqlParserCache cache = new CqlParserCache(1);
+        cache.warmUp(CharStreams.fromString(LIBRARY));
+        assertTrue(cache.getDfaStateCount() > 1);
+
+        cqlParser parser = cache.createParser(new CommonTokenStream(cache.createLexer(CharStreams.fromString(LIBRARY))));
+        assertEquals(cache.getClearCount(), 1);
+        assertEquals(parser.library().getText().isEmpty(), false);
+    }
+}
@@ -0,0 +1,85 @@
+package org.cqframework.cql.elm.requirements;
+
+import org.cqframework.cql.cql2elm.CqlTranslator;
+import org.cqframework.cql.cql2elm.CqlTranslatorOptions;
+import org.cqframework.cql.cql2elm.DefaultLibrarySourceProvider;
+import org.cqframework.cql.cql2elm.LibraryManager;
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.cqframework.cql.cql2elm.FhirLibrarySourceProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ElmRequirements.collapse() on the combined (uncollapsed) requirements of the CompositeMeasures test
+ * fixtures, the component measures of a composite measure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollapseBenchmark {
+    private static final String FIXTURES = "/org/cqframework/cql/elm/requirements/fhir/CompositeMeasures/cql";
+    private static final String[] LIBRARIES = {
+            "BCSComponent.cql", "CCSComponent.cql", "HBPComponent.cql", "PVSComponent.cql", "TSCComponent.cql", "EXM124-9.0.000.cql"
+    };
+
+    private ElmRequirements requirements;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, URISyntaxException {
+        Path directory = Paths.get(CollapseBenchmark.class.getResource(FIXTURES).toURI());
+        CqlTranslatorOptions options = new CqlTranslatorOptions();
+        ModelManager modelManager = new ModelManager();
+        LibraryManager libraryManager = new LibraryManager(modelManager);
+        libraryManager.getLibrarySourceLoader().registerProvider(new DefaultLibrarySourceProvider(directory));
+        libraryManager.getLibrarySourceLoader().registerProvider(new FhirLibrarySourceProvider());
+
+        for (String library : LIBRARIES) {
+            CqlTranslator translator = CqlTranslator.fromFile(directory.resolve(library).toFile(), modelManager, libraryManager, null, options);
+            if (!translator.getErrors().isEmpty()) {
+                throw new IllegalStateException(String.format("Could not translate %s: %s", library, translator.getErrors()));
+            }
+
+            CompiledLibrary compiledLibrary = translator.getTranslatedLibrary();
+            if (requirements == null) {
+                requirements = new ElmRequirements(compiledLibrary.getIdentifier(), compiledLibrary.getLibrary());
+            }
+
+            ElmRequirementsVisitor visitor = new ElmRequirementsVisitor();
+            ElmRequirementsContext context = new ElmRequirementsContext(libraryManager, options, visitor);
+            visitor.visitLibrary(compiledLibrary.getLibrary(), context);
+
+            // Gather the requirements as DataRequirementsProcessor does for a recursive gather
+            requirements.reportRequirement(context.getRequirements());
+            for (ElmRequirements reportedRequirements : context.getReportedRequirements()) {
+                requirements.reportRequirement(reportedRequirements);
+            }
+            for (ElmRequirement inferredRequirement : context.getInferredRequirements()) {
+                requirements.reportRequirement(inferredRequirement);
+            }
+        }
+    }
+
+    @Benchmark
+    public ElmRequirements collapse() {
+        return requirements.collapse();
+    }
+}
@@ -1,33 +1,142 @@
 package org.cqframework.cql.elm.requirements;
 
+import org.hl7.elm.r1.Retrieve;
+import org.hl7.elm.r1.ValueSetRef;
+
+import javax.xml.namespace.QName;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Collapses equivalent requirements (see ComparableElmRequirement.requirementsEquivalent).
+ *
+ * Requirements are bucketed by a key made up of properties that equivalent requirements always share (type,
+ * profile, code path and value set), so each requirement is only compared against the requirements in its bucket.
+ * The unique requirements are reported in the same order as a linear scan would produce: a new requirement is added
+ * at the end, and a merged requirement replaces the one it was merged into at the end.
+ */
 public class CollapsedElmRequirements {
 
-    private List<ElmRequirement> uniqueRequirements = new ArrayList<ElmRequirement>();
+    // Unique requirements by sequence number, in order of insertion
+    private final Map<Long, ElmRequirement> uniqueRequirements = new LinkedHashMap<Long, ElmRequirement>();
+    // Sequence numbers of the unique requirements, by equivalence key
+    private final Map<EquivalenceKey, List<Long>> buckets = new HashMap<EquivalenceKey, List<Long>>();
+    private long nextSequence;
+
     public Iterable<ElmRequirement> getUniqueRequirements() {
-        return uniqueRequirements;
+        return uniqueRequirements.values();
     }
 
     public void add(ElmRequirement requirement) {
-        ElmRequirement existing = getEquivalent(requirement);
-        if (existing == null) {
-            uniqueRequirements.add(requirement);
+        List<Long> bucket = buckets.computeIfAbsent(new EquivalenceKey(requirement), k -> new ArrayList<Long>());
+        int index = indexOfEquivalent(bucket, requirement);
+        long sequence = nextSequence++;
+        if (index < 0) {
+            bucket.add(sequence);
+            uniqueRequirements.put(sequence, requirement);
         }
         else {
-            uniqueRequirements.remove(existing);
-            uniqueRequirements.add(ComparableElmRequirement.mergeRequirements(existing, requirement));
+            ElmRequirement existing = uniqueRequirements.remove(bucket.get(index));
+            bucket.set(index, sequence);
+            uniqueRequirements.put(sequence, ComparableElmRequirement.mergeRequirements(existing, requirement));
         }
     }
 
     public ElmRequirement getEquivalent(ElmRequirement requirement) {
-        for (ElmRequirement existing : uniqueRequirements) {
-            if (ComparableElmRequirement.requirementsEquivalent(existing, requirement)) {
-                return existing;
+        List<Long> bucket = buckets.get(new EquivalenceKey(requirement));
+        if (bucket == null) {
+            return null;
+        }
+
+        int index = indexOfEquivalent(bucket, requirement);
+        return index >= 0 ? uniqueRequirements.get(bucket.get(index)) : null;
+    }
+
+    private int indexOfEquivalent(List<Long> bucket, ElmRequirement requirement) {
+        // The bucket is not kept in output order, so pick the earliest equivalent, as a linear scan would
+        int result = -1;
+        for (int i = 0; i < bucket.size(); i++) {
+            if ((result < 0 || bucket.get(i) < bucket.get(result))
+                    && ComparableElmRequirement.requirementsEquivalent(uniqueRequirements.get(bucket.get(i)), requirement)) {
+                result = i;
             }
         }
 
-        return null;
+        return result;
+    }
+
+    /*
+    A key that is equal for any two equivalent requirements. Requirements that are not retrieves all share a key.
+     */
+    private static class EquivalenceKey {
+        private final QName dataType;
+        private final String templateId;
+        private final String codeProperty;
+        private final String valueSetProperty;
+        private final String valueSetLibraryName;
+        private final String valueSetName;
+        private final String codesType;
+        private final int hashCode;
+
+        EquivalenceKey(ElmRequirement requirement) {
+            if (requirement.getElement() instanceof Retrieve) {
+                Retrieve retrieve = (Retrieve)requirement.getElement();
+                dataType = retrieve.getDataType();
+                templateId = retrieve.getTemplateId();
+                codeProperty = retrieve.getCodeProperty();
+                valueSetProperty = retrieve.getValueSetProperty();
+                if (retrieve.getCodes() instanceof ValueSetRef) {
+                    ValueSetRef valueSetRef = (ValueSetRef)retrieve.getCodes();
+                    valueSetLibraryName = valueSetRef.getLibraryName();
+                    valueSetName = valueSetRef.getName();
+                }
+                else {
+                    valueSetLibraryName = null;
+                    valueSetName = null;
+                }
+                codesType = retrieve.getCodes() != null ? retrieve.getCodes().getClass().getName() : null;
+            }
+            else {
+                dataType = null;
+                templateId = null;
+                codeProperty = null;
+                valueSetProperty = null;
+                valueSetLibraryName = null;
+                valueSetName = null;
+                codesType = null;
+            }
+
+            hashCode = Objects.hash(dataType, templateId, codeProperty, valueSetProperty, valueSetLibraryName, valueSetName, codesType);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof EquivalenceKey)) {
+                return false;
+            }
+
+            EquivalenceKey that = (EquivalenceKey)o;
+            return hashCode == that.hashCode
+                    && Objects.equals(dataType, that.dataType)
+                    && Objects.equals(templateId, that.templateId)
+                    && Objects.equals(codeProperty, that.codeProperty)
+                    && Objects.equals(valueSetProperty, that.valueSetProperty)
+                    && Objects.equals(valueSetLibraryName, that.valueSetLibraryName)
+                    && Objects.equals(valueSetName, that.valueSetName)
+                    && Objects.equals(codesType, that.codesType);
+        }
     }
 }
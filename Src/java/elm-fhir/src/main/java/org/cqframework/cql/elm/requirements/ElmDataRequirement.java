@@ -68,6 +68,36 @@ public class ElmDataRequirement extends ElmExpressionRequirement {
         }
     }
 
+    /*
+    Returns a copy of this requirement with its own retrieve, properties and conditions, so that applying
+    requirements to either one (see applyDataRequirements) does not change the other
+     */
+    ElmDataRequirement copy() {
+        ElmDataRequirement result = new ElmDataRequirement(libraryIdentifier, copyRetrieve(getRetrieve()), inferredFrom);
+        result.querySource = querySource;
+        if (propertySet != null) {
+            result.propertySet = new LinkedHashSet<Property>(propertySet);
+        }
+        if (conjunctiveRequirement != null) {
+            result.conjunctiveRequirement = new ElmConjunctiveRequirement(libraryIdentifier, conjunctiveRequirement.getExpression());
+            result.conjunctiveRequirement.combine(conjunctiveRequirement);
+        }
+        return result;
+    }
+
+    /*
+    Returns a clone of the given retrieve, including its join references (which are local ids of the retrieves, so
+    they are the same for the clone)
+     */
+    static Retrieve copyRetrieve(Retrieve retrieve) {
+        Retrieve result = ElmCloner.clone(retrieve);
+        result.setIncludedIn(retrieve.getIncludedIn());
+        for (int i = 0; i < retrieve.getInclude().size(); i++) {
+            result.getInclude().get(i).setIncludeFrom(retrieve.getInclude().get(i).getIncludeFrom());
+        }
+        return result;
+    }
+
     private static ElmDataRequirement inferFrom(ElmDataRequirement requirement) {
         Retrieve inferredRetrieve = ElmCloner.clone(requirement.getRetrieve());
         ElmDataRequirement result = new ElmDataRequirement(requirement.libraryIdentifier, inferredRetrieve, requirement.getRetrieve());
@@ -0,0 +1,296 @@
+package org.cqframework.cql.elm.requirements;
+
+import org.cqframework.cql.cql2elm.CqlTranslatorOptions;
+import org.hl7.elm.r1.Element;
+import org.hl7.elm.r1.ExpressionDef;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache of the requirements gathered for expression definitions, shared by requirements contexts so
+ * that definitions in commonly included libraries (e.g. FHIRHelpers) are only analyzed once.
+ *
+ * Entries are keyed by library identifier and expression definition, where the definition is matched by identity,
+ * so the cache is only effective when the contexts share the compiled libraries (i.e. use the same LibraryManager),
+ * and by the options that affect the requirements gathered (analyzeDataRequirements and collapseDataRequirements).
+ * An entry records the dependencies and requirements reported while visiting the definition, and its inferred
+ * requirements, and is replayed into a context in place of visiting the definition again.
+ */
+public class ElmRequirementsCache {
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Generated local ids must be unique across the contexts using the cache, see ElmRequirementsContext.generateLocalId
+    private final AtomicInteger nextLocalId = new AtomicInteger(10000);
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    String generateLocalId() {
+        return String.format("G%d", nextLocalId.incrementAndGet());
+    }
+
+    Entry get(VersionedIdentifier libraryIdentifier, ExpressionDef expressionDef, CqlTranslatorOptions options) {
+        Entry entry = entries.get(new Key(libraryIdentifier, expressionDef, options));
+        if (entry != null) {
+            hits.incrementAndGet();
+        }
+        else {
+            misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /*
+    Caches the recording of a completed visit of the given expression def. The requirements are copied, so that
+    changes made to them by the visiting context afterwards are not reflected in the entry.
+     */
+    void put(VersionedIdentifier libraryIdentifier, ExpressionDef expressionDef, CqlTranslatorOptions options,
+             Recording recording, ElmRequirement inferredRequirements) {
+        if (!recording.isCacheable() || !isCopyable(inferredRequirements)) {
+            return;
+        }
+
+        Map<ElmRequirement, ElmRequirement> copies = new IdentityHashMap<ElmRequirement, ElmRequirement>();
+        List<Event> events = new ArrayList<Event>(recording.events.size());
+        for (Event event : recording.events) {
+            if (event instanceof Report) {
+                ElmRequirement requirement = ((Report)event).getRequirement();
+                if (!isCopyable(requirement)) {
+                    return;
+                }
+                events.add(new Report(copy(requirement, copies)));
+            }
+            else {
+                events.add(event);
+            }
+        }
+
+        entries.put(new Key(libraryIdentifier, expressionDef, options),
+                new Entry(Collections.unmodifiableList(events), copy(inferredRequirements, copies)));
+    }
+
+    /*
+    ElmRequirements are aggregated by the visitor in place, so they are not cached
+     */
+    private static boolean isCopyable(ElmRequirement requirement) {
+        return !(requirement instanceof ElmRequirements);
+    }
+
+    /*
+    Copies the data and query requirements, which are changed as referencing expressions are analyzed. The copies map
+    ensures a requirement that is both reported and part of the inferred requirements is copied once.
+     */
+    static ElmRequirement copy(ElmRequirement requirement, Map<ElmRequirement, ElmRequirement> copies) {
+        if (requirement instanceof ElmDataRequirement) {
+            ElmRequirement result = copies.get(requirement);
+            if (result == null) {
+                result = ((ElmDataRequirement)requirement).copy();
+                copies.put(requirement, result);
+            }
+            return result;
+        }
+
+        if (requirement instanceof ElmQueryRequirement) {
+            ElmRequirement result = copies.get(requirement);
+            if (result == null) {
+                ElmQueryRequirement queryRequirement = (ElmQueryRequirement)requirement;
+                ElmQueryRequirement queryRequirementCopy = new ElmQueryRequirement(queryRequirement.getLibraryIdentifier(),
+                        queryRequirement.getQuery());
+                for (ElmDataRequirement dataRequirement : queryRequirement.getDataRequirements()) {
+                    queryRequirementCopy.addDataRequirements((ElmDataRequirement)copy(dataRequirement, copies));
+                }
+                result = queryRequirementCopy;
+                copies.put(requirement, result);
+            }
+            return result;
+        }
+
+        return requirement;
+    }
+
+    private static class Key {
+        private final VersionedIdentifier libraryIdentifier;
+        private final ExpressionDef expressionDef;
+        private final boolean analyzeDataRequirements;
+        private final boolean collapseDataRequirements;
+        private final int hashCode;
+
+        Key(VersionedIdentifier libraryIdentifier, ExpressionDef expressionDef, CqlTranslatorOptions options) {
+            this.libraryIdentifier = libraryIdentifier;
+            this.expressionDef = expressionDef;
+            this.analyzeDataRequirements = options.getAnalyzeDataRequirements();
+            this.collapseDataRequirements = options.getCollapseDataRequirements();
+            this.hashCode = Objects.hash(libraryIdentifier.getSystem(), libraryIdentifier.getId(),
+                    libraryIdentifier.getVersion(), System.identityHashCode(expressionDef), analyzeDataRequirements,
+                    collapseDataRequirements);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key that = (Key)o;
+            return expressionDef == that.expressionDef
+                    && analyzeDataRequirements == that.analyzeDataRequirements
+                    && collapseDataRequirements == that.collapseDataRequirements
+                    && Objects.equals(libraryIdentifier.getSystem(), that.libraryIdentifier.getSystem())
+                    && Objects.equals(libraryIdentifier.getId(), that.libraryIdentifier.getId())
+                    && Objects.equals(libraryIdentifier.getVersion(), that.libraryIdentifier.getVersion());
+        }
+    }
+
+    static class Entry {
+        private final List<Event> events;
+        private final ElmRequirement inferredRequirements;
+
+        Entry(List<Event> events, ElmRequirement inferredRequirements) {
+            this.events = events;
+            this.inferredRequirements = inferredRequirements;
+        }
+
+        List<Event> getEvents() {
+            return events;
+        }
+
+        ElmRequirement getInferredRequirements() {
+            return inferredRequirements;
+        }
+    }
+
+    /*
+    The calls a context makes while an expression def is visited, as far as they affect state outside the expression
+    def context, in the order they were made
+     */
+    static class Recording {
+        private final List<Event> events = new ArrayList<Event>();
+        private boolean cacheable = true;
+
+        void add(Event event) {
+            if (cacheable) {
+                events.add(event);
+            }
+        }
+
+        boolean isCacheable() {
+            return cacheable;
+        }
+
+        void abandon() {
+            cacheable = false;
+            events.clear();
+        }
+    }
+
+    abstract static class Event {
+    }
+
+    /*
+    A visit (or a reference, if already visited) of a definition in the given library
+     */
+    static class Visit extends Event {
+        private final VersionedIdentifier libraryIdentifier;
+        private final Element definition;
+
+        Visit(VersionedIdentifier libraryIdentifier, Element definition) {
+            this.libraryIdentifier = libraryIdentifier;
+            this.definition = definition;
+        }
+
+        VersionedIdentifier getLibraryIdentifier() {
+            return libraryIdentifier;
+        }
+
+        Element getDefinition() {
+            return definition;
+        }
+    }
+
+    /*
+    A report of the requirements of a referenced expression def
+     */
+    static class ReportReferenced extends Event {
+        private final ExpressionDef expressionDef;
+
+        ReportReferenced(ExpressionDef expressionDef) {
+            this.expressionDef = expressionDef;
+        }
+
+        ExpressionDef getExpressionDef() {
+            return expressionDef;
+        }
+    }
+
+    /*
+    A report of a requirement to the expression def
+     */
+    static class Report extends Event {
+        private final ElmRequirement requirement;
+
+        Report(ElmRequirement requirement) {
+            this.requirement = requirement;
+        }
+
+        ElmRequirement getRequirement() {
+            return requirement;
+        }
+    }
+
+    /*
+    A report of a property of an unbound data requirement (i.e. a property of an expression of the given type that
+    is not a query source)
+     */
+    static class ReportProperty extends Event {
+        private final QName typeName;
+        private final ElmPropertyRequirement propertyRequirement;
+
+        ReportProperty(QName typeName, ElmPropertyRequirement propertyRequirement) {
+            this.typeName = typeName;
+            this.propertyRequirement = propertyRequirement;
+        }
+
+        QName getTypeName() {
+            return typeName;
+        }
+
+        ElmPropertyRequirement getPropertyRequirement() {
+            return propertyRequirement;
+        }
+    }
+}
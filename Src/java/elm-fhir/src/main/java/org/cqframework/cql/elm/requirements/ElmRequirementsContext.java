@@ -48,16 +48,52 @@ public class ElmRequirementsContext {
 
     private TypeBuilder typeBuilder;
 
+    // Data requirements analysis applies the requirements to the retrieves of each query. When the libraries are
+    // shared by contexts gathering requirements in parallel, or requirements are cached, the retrieves are cloned as
+    // they are visited, so that each context applies requirements to its own retrieves.
+    private boolean cloneRetrieves;
+    public boolean getCloneRetrieves() {
+        return cloneRetrieves;
+    }
+    public void setCloneRetrieves(boolean cloneRetrieves) {
+        this.cloneRetrieves = cloneRetrieves;
+    }
+
     // Arbitrary starting point for generated local Ids.
     // If the input ELM does not have local Ids, some of the optimization
     // outputs require references to be established between ELM nodes,
     // so local ids are generated if not present in those cases.
+    // When requirements are cached, local ids are generated by the cache, so they are unique across contexts.
     private int nextLocalId = 10000;
     public String generateLocalId() {
+        if (requirementsCache != null) {
+            return requirementsCache.generateLocalId();
+        }
         nextLocalId++;
         return String.format("G%d", nextLocalId);
     }
 
+    private ElmRequirementsCache requirementsCache;
+    public ElmRequirementsCache getRequirementsCache() {
+        return requirementsCache;
+    }
+    public void setRequirementsCache(ElmRequirementsCache requirementsCache) {
+        this.requirementsCache = requirementsCache;
+    }
+
+    /*
+    When requirements are cached, the calls made while visiting each expression def are recorded (see
+    ElmRequirementsCache.Recording), in a stack parallel to the expression def stack
+     */
+    private Stack<ElmRequirementsCache.Recording> recordings = new Stack<ElmRequirementsCache.Recording>();
+    private int recordingSuspended;
+
+    private void record(ElmRequirementsCache.Event event) {
+        if (requirementsCache != null && !recordings.empty() && recordingSuspended == 0) {
+            recordings.peek().add(event);
+        }
+    }
+
     private Stack<ElmExpressionDefContext> expressionDefStack = new Stack<ElmExpressionDefContext>();
     public void enterExpressionDef(ExpressionDef expressionDef) {
         if (expressionDef == null) {
@@ -65,6 +101,9 @@ public class ElmRequirementsContext {
         }
         ElmExpressionDefContext expressionDefContext = new ElmExpressionDefContext(getCurrentLibraryIdentifier(), expressionDef);
         expressionDefStack.push(expressionDefContext);
+        if (requirementsCache != null) {
+            recordings.push(new ElmRequirementsCache.Recording());
+        }
     }
     public void exitExpressionDef(ElmRequirement inferredRequirements) {
         if (expressionDefStack.empty()) {
@@ -72,10 +111,84 @@ public class ElmRequirementsContext {
         }
         ElmExpressionDefContext expressionDefContext = expressionDefStack.pop();
         ExpressionDef ed = expressionDefContext.getExpressionDef();
+        if (requirementsCache != null) {
+            ElmRequirementsCache.Recording recording = recordings.pop();
+            if (!isUnboundDataRequirement(inferredRequirements)) {
+                requirementsCache.put(expressionDefContext.getLibraryIdentifier(), ed, options, recording, inferredRequirements);
+            }
+        }
         reportExpressionDef(ed);
         this.reportedRequirements.put(ed, expressionDefContext.getReportedRequirements());
         this.inferredRequirements.put(ed, inferredRequirements);
     }
+
+    /*
+    Marks the visit of the current expression def as incomplete, so that it is not cached
+     */
+    public void abandonExpressionDef() {
+        if (requirementsCache != null && !recordings.empty()) {
+            recordings.peek().abandon();
+        }
+    }
+
+    /*
+    Returns the cached requirements for the given expression def in the current library, if any
+     */
+    ElmRequirementsCache.Entry getCachedExpressionDef(ExpressionDef expressionDef) {
+        if (requirementsCache == null) {
+            return null;
+        }
+        return requirementsCache.get(getCurrentLibraryIdentifier(), expressionDef, options);
+    }
+
+    /*
+    Replays the cached requirements for the given expression def in place of visiting it. Referenced definitions
+    are visited (or replayed) as they were in the cached visit, and the reported and inferred requirements are
+    copies of the cached ones, so the cached requirements are never changed by the context.
+     */
+    ElmRequirement replayExpressionDef(ExpressionDef expressionDef, ElmRequirementsCache.Entry entry) {
+        ElmRequirement inferredRequirements = null;
+        enterExpressionDef(expressionDef);
+        // The entry is already cached
+        abandonExpressionDef();
+        try {
+            if (expressionDef instanceof FunctionDef) {
+                reportFunctionDef((FunctionDef)expressionDef);
+            }
+
+            Map<ElmRequirement, ElmRequirement> copies = new IdentityHashMap<ElmRequirement, ElmRequirement>();
+            for (ElmRequirementsCache.Event event : entry.getEvents()) {
+                if (event instanceof ElmRequirementsCache.Visit) {
+                    ElmRequirementsCache.Visit visit = (ElmRequirementsCache.Visit)event;
+                    enterLibrary(visit.getLibraryIdentifier());
+                    try {
+                        visitDefinition(visit.getDefinition());
+                    }
+                    finally {
+                        exitLibrary();
+                    }
+                }
+                else if (event instanceof ElmRequirementsCache.ReportReferenced) {
+                    reportReferencedRequirements(((ElmRequirementsCache.ReportReferenced)event).getExpressionDef());
+                }
+                else if (event instanceof ElmRequirementsCache.Report) {
+                    reportRequirement(ElmRequirementsCache.copy(((ElmRequirementsCache.Report)event).getRequirement(), copies));
+                }
+                else if (event instanceof ElmRequirementsCache.ReportProperty) {
+                    ElmRequirementsCache.ReportProperty reportProperty = (ElmRequirementsCache.ReportProperty)event;
+                    getDataRequirementForTypeName(reportProperty.getTypeName()).reportProperty(reportProperty.getPropertyRequirement());
+                }
+            }
+
+            inferredRequirements = ElmRequirementsCache.copy(entry.getInferredRequirements(), copies);
+        }
+        finally {
+            exitExpressionDef(inferredRequirements);
+        }
+
+        return inferredRequirements;
+    }
+
     public ElmExpressionDefContext getCurrentExpressionDefContext() {
         if (expressionDefStack.empty()) {
             throw new IllegalArgumentException("Expression definition is not in progress");
@@ -138,9 +251,7 @@ public class ElmRequirementsContext {
         CompiledLibrary targetLibrary = resolveLibrary(libraryIdentifier);
         if (localLibraryName != null) {
             IncludeDef includeDef = targetLibrary.resolveIncludeRef(localLibraryName);
-            if (!visited.contains(includeDef)) {
-                visitor.visitElement(includeDef, this);
-            }
+            visitDefinition(includeDef);
             targetLibrary = resolveLibraryFromIncludeDef(includeDef);
             enterLibrary(targetLibrary.getIdentifier());
         }
@@ -209,11 +320,25 @@ public class ElmRequirementsContext {
                 requirements.reportRequirement(requirement);
             }
             else {
+                if (requirementsCache != null && recordingSuspended == 0 && isUnboundDataRequirement(requirement)) {
+                    abandonExpressionDef();
+                }
+                record(new ElmRequirementsCache.Report(requirement));
                 expressionDefStack.peek().reportRequirement(requirement);
             }
         }
     }
 
+    /*
+    Visits the given definition in the current library, unless it has already been visited
+     */
+    private void visitDefinition(Element definition) {
+        record(new ElmRequirementsCache.Visit(getCurrentLibraryIdentifier(), definition));
+        if (!visited.contains(definition)) {
+            visitor.visitElement(definition, this);
+        }
+    }
+
     private void reportRequirement(Element element) {
         reportRequirement(new ElmRequirement(getCurrentLibraryIdentifier(), element));
     }
@@ -264,9 +389,7 @@ public class ElmRequirementsContext {
         CompiledLibrary targetLibrary = prepareLibraryVisit(getCurrentLibraryIdentifier(), codeRef.getLibraryName());
         try {
             CodeDef cd = targetLibrary.resolveCodeRef(codeRef.getName());
-            if (!visited.contains(cd)) {
-                visitor.visitElement(cd, this);
-            }
+            visitDefinition(cd);
         }
         finally {
             unprepareLibraryVisit(codeRef.getLibraryName());
@@ -277,9 +400,7 @@ public class ElmRequirementsContext {
         CompiledLibrary targetLibrary = prepareLibraryVisit(getCurrentLibraryIdentifier(), codeSystemRef.getLibraryName());
         try {
             CodeSystemDef csd = targetLibrary.resolveCodeSystemRef(codeSystemRef.getName());
-            if (!visited.contains(csd)) {
-                visitor.visitElement(csd, this);
-            }
+            visitDefinition(csd);
         }
         finally {
             unprepareLibraryVisit(codeSystemRef.getLibraryName());
@@ -290,9 +411,7 @@ public class ElmRequirementsContext {
         CompiledLibrary targetLibrary = prepareLibraryVisit(getCurrentLibraryIdentifier(), conceptRef.getLibraryName());
         try {
             ConceptDef cd = targetLibrary.resolveConceptRef(conceptRef.getName());
-            if (!visited.contains(cd)) {
-                visitor.visitElement(cd, this);
-            }
+            visitDefinition(cd);
         }
         finally {
             unprepareLibraryVisit(conceptRef.getLibraryName());
@@ -303,9 +422,7 @@ public class ElmRequirementsContext {
         CompiledLibrary targetLibrary = prepareLibraryVisit(getCurrentLibraryIdentifier(), parameterRef.getLibraryName());
         try {
             ParameterDef pd = targetLibrary.resolveParameterRef(parameterRef.getName());
-            if (!visited.contains(pd)) {
-                visitor.visitElement(pd, this);
-            }
+            visitDefinition(pd);
         }
         finally {
             unprepareLibraryVisit(parameterRef.getLibraryName());
@@ -316,9 +433,7 @@ public class ElmRequirementsContext {
         CompiledLibrary targetLibrary = prepareLibraryVisit(getCurrentLibraryIdentifier(), valueSetRef.getLibraryName());
         try {
             ValueSetDef vsd = targetLibrary.resolveValueSetRef(valueSetRef.getName());
-            if (!visited.contains(vsd)) {
-                visitor.visitElement(vsd, this);
-            }
+            visitDefinition(vsd);
         }
         finally {
             unprepareLibraryVisit(valueSetRef.getLibraryName());
@@ -329,18 +444,19 @@ public class ElmRequirementsContext {
         CompiledLibrary targetLibrary = prepareLibraryVisit(getCurrentLibraryIdentifier(), expressionRef.getLibraryName());
         try {
             ExpressionDef ed = targetLibrary.resolveExpressionRef(expressionRef.getName());
-            if (!visited.contains(ed)) {
-                visitor.visitElement(ed, this);
-            }
-            ElmRequirement inferredRequirements = getInferredRequirements(ed);
+            visitDefinition(ed);
 
             // Report data requirements for this expression def to the current context (that are not already part of the inferred requirements
-            ElmRequirements reportedRequirements = getReportedRequirements(ed);
-            if (reportedRequirements != null) {
-                reportRequirements(reportedRequirements, inferredRequirements);
+            record(new ElmRequirementsCache.ReportReferenced(ed));
+            recordingSuspended++;
+            try {
+                reportReferencedRequirements(ed);
+            }
+            finally {
+                recordingSuspended--;
             }
             // Return the inferred requirements for the expression def
-            return inferredRequirements;
+            return getInferredRequirements(ed);
         }
         finally {
             unprepareLibraryVisit(expressionRef.getLibraryName());
@@ -378,9 +494,7 @@ public class ElmRequirementsContext {
 
             Iterable<FunctionDef> fds = targetLibrary.resolveFunctionRef(functionRef.getName(), signature);
             for (FunctionDef fd : fds) {
-                if (!visited.contains(fd)) {
-                    visitor.visitElement(fd, this);
-                }
+                visitDefinition(fd);
             }
         }
         finally {
@@ -388,6 +502,13 @@ public class ElmRequirementsContext {
         }
     }
 
+    private void reportReferencedRequirements(ExpressionDef ed) {
+        ElmRequirements reportedRequirements = getReportedRequirements(ed);
+        if (reportedRequirements != null) {
+            reportRequirements(reportedRequirements, getInferredRequirements(ed));
+        }
+    }
+
     public void reportRetrieve(Retrieve retrieve) {
         // Report the retrieve as an overall data requirement
         reportRequirement(retrieve);
@@ -457,12 +578,26 @@ public class ElmRequirementsContext {
             }
             requirement = new ElmDataRequirement(getCurrentLibraryIdentifier(), retrieve);
             unboundDataRequirements.put(typeName, requirement);
-            reportRequirement(requirement);
+            // Recorded as part of the property report
+            recordingSuspended++;
+            try {
+                reportRequirement(requirement);
+            }
+            finally {
+                recordingSuspended--;
+            }
         }
 
         return requirement;
     }
 
+    /*
+    Unbound data requirements are shared by all the expression defs in the context, so they are not cached
+     */
+    private boolean isUnboundDataRequirement(ElmRequirement requirement) {
+        return requirement instanceof ElmDataRequirement && unboundDataRequirements.containsValue(requirement);
+    }
+
     public ElmPropertyRequirement reportProperty(Property property) {
         // if scope is specified, it's a reference to an alias in a current query context
         // if source is an AliasRef, it's a reference to an alias in a current query context
@@ -519,6 +654,7 @@ public class ElmRequirementsContext {
                 ElmDataRequirement requirement = getDataRequirementForTypeName(typeName);
                 ElmPropertyRequirement propertyRequirement = new ElmPropertyRequirement(getCurrentLibraryIdentifier(),
                         property, property.getSource(), false);
+                record(new ElmRequirementsCache.ReportProperty(typeName, propertyRequirement));
                 requirement.reportProperty(propertyRequirement);
                 return propertyRequirement;
             }
@@ -619,7 +755,12 @@ public class ElmRequirementsContext {
     public CompiledLibrary resolveLibrary(VersionedIdentifier libraryIdentifier) {
         // TODO: Need to support loading from ELM so we don't need options.
         ArrayList<CqlCompilerException> errors = new ArrayList<CqlCompilerException>();
-        CompiledLibrary referencedLibrary = libraryManager.resolveLibrary(libraryIdentifier, options, errors);
+        // The library manager may set the system of the identifier it is given, so it is given a copy, rather than
+        // the identifier of a compiled library (which may be shared with other gathers running in parallel)
+        CompiledLibrary referencedLibrary = libraryManager.resolveLibrary(new VersionedIdentifier()
+                .withSystem(libraryIdentifier.getSystem())
+                .withId(libraryIdentifier.getId())
+                .withVersion(libraryIdentifier.getVersion()), options, errors);
         // TODO: Report translation errors here...
         //for (CqlTranslatorException error : errors) {
         //    this.recordParsingException(error);
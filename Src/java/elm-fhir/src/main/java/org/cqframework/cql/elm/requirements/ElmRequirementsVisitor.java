@@ -77,11 +77,20 @@ public class ElmRequirementsVisitor extends ElmBaseLibraryVisitor <ElmRequiremen
 
     @Override
     public ElmRequirement visitExpressionDef(ExpressionDef elm, ElmRequirementsContext context) {
+        ElmRequirementsCache.Entry cachedEntry = context.getCachedExpressionDef(elm);
+        if (cachedEntry != null) {
+            return context.replayExpressionDef(elm, cachedEntry);
+        }
+
         ElmRequirement result = null;
         context.enterExpressionDef(elm);
         try {
             result = super.visitExpressionDef(elm, context);
         }
+        catch (RuntimeException e) {
+            context.abandonExpressionDef();
+            throw e;
+        }
         finally {
             context.exitExpressionDef(result);
         }
@@ -160,7 +169,8 @@ public class ElmRequirementsVisitor extends ElmBaseLibraryVisitor <ElmRequiremen
     public ElmRequirement visitRetrieve(Retrieve elm, ElmRequirementsContext context) {
         // TODO: childResult reporting?
         super.visitRetrieve(elm, context);
-        ElmDataRequirement result = new ElmDataRequirement(context.getCurrentLibraryIdentifier(), elm);
+        Retrieve retrieve = context.getCloneRetrieves() ? ElmDataRequirement.copyRetrieve(elm) : elm;
+        ElmDataRequirement result = new ElmDataRequirement(context.getCurrentLibraryIdentifier(), retrieve);
         // If not analyzing requirements, or in a query context, report the data requirement
         // If in a query context, the requirement will be reported as an inferred requirement at the query boundary
         if (!context.getOptions().getAnalyzeDataRequirements() || !context.inQueryContext()) {
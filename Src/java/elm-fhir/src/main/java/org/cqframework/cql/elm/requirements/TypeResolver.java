@@ -74,20 +74,20 @@ public class TypeResolver {
     }
 
     private DataType resolveTupleTypeSpecifier(TupleTypeSpecifier typeSpecifier) {
-        TupleType tupleType = new TupleType();
+        ArrayList<TupleTypeElement> tupleElements = new ArrayList<>();
         for (TupleElementDefinition element : typeSpecifier.getElement()) {
             TupleTypeElement tupleElement = new TupleTypeElement(element.getName(), resolveTypeSpecifier(element.getElementType()));
-            tupleType.addElement(tupleElement);
+            tupleElements.add(tupleElement);
         }
-        return tupleType;
+        return CanonicalTypes.tupleOf(tupleElements);
     }
 
     private DataType resolveIntervalTypeSpecifier(IntervalTypeSpecifier typeSpecifier) {
-        return new IntervalType(resolveTypeSpecifier(typeSpecifier.getPointType()));
+        return CanonicalTypes.intervalOf(resolveTypeSpecifier(typeSpecifier.getPointType()));
     }
 
     private DataType resolveListTypeSpecifier(ListTypeSpecifier typeSpecifier) {
-        return new ListType(resolveTypeSpecifier(typeSpecifier.getElementType()));
+        return CanonicalTypes.listOf(resolveTypeSpecifier(typeSpecifier.getElementType()));
     }
 
     private DataType resolveChoiceTypeSpecifier(ChoiceTypeSpecifier typeSpecifier) {
@@ -95,7 +95,7 @@ public class TypeResolver {
         for (TypeSpecifier choiceType : typeSpecifier.getChoice()) {
             choiceTypes.add(resolveTypeSpecifier(choiceType));
         }
-        return new ChoiceType(choiceTypes);
+        return CanonicalTypes.choiceOf(choiceTypes);
     }
 
     public DataType resolveTypeName(String modelName, String typeName) {
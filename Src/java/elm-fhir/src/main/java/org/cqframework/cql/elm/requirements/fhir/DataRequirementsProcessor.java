@@ -1,5 +1,6 @@
 package org.cqframework.cql.elm.requirements.fhir;
 
+import org.cqframework.cql.cql2elm.CqlCompilerException;
 import org.cqframework.cql.cql2elm.CqlTranslatorOptions;
 import org.cqframework.cql.cql2elm.LibraryManager;
 import org.cqframework.cql.cql2elm.NamespaceManager;
@@ -20,6 +21,7 @@ import org.hl7.fhir.utilities.validation.ValidationMessage;
 import org.cqframework.cql.elm.requirements.ElmDataRequirement;
 import org.cqframework.cql.elm.requirements.ElmRequirement;
 import org.cqframework.cql.elm.requirements.ElmRequirements;
+import org.cqframework.cql.elm.requirements.ElmRequirementsCache;
 import org.cqframework.cql.elm.requirements.ElmRequirementsContext;
 import org.cqframework.cql.elm.requirements.ElmRequirementsVisitor;
 
@@ -28,6 +30,8 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DataRequirementsProcessor {
@@ -37,6 +41,30 @@ public class DataRequirementsProcessor {
         return this.validationMessages;
     }
 
+    private ElmRequirementsCache requirementsCache;
+    public ElmRequirementsCache getRequirementsCache() {
+        return this.requirementsCache;
+    }
+
+    /**
+     * Sets a cache of the requirements gathered for each expression definition. The cache may be shared by
+     * processors (including processors on other threads) gathering requirements with the same LibraryManager, so
+     * that the definitions of commonly included libraries are only analyzed once. While a cache is used, the analysis
+     * of the requirements is applied to clones of the retrieves, so the retrieves in the compiled libraries are not
+     * changed.
+     *
+     * The cache is only used when the requirements are collapsed (see CqlTranslatorOptions.collapseDataRequirements),
+     * since the uncollapsed requirements of a replayed definition can differ from those of a fresh visit: properties
+     * that referencing definitions add to its data requirements are reported only on the referencing definitions.
+     */
+    public void setRequirementsCache(ElmRequirementsCache requirementsCache) {
+        this.requirementsCache = requirementsCache;
+    }
+
+    // Set for the processors gathering requirements in parallel (and whenever requirements are cached), see
+    // ElmRequirementsContext.setCloneRetrieves
+    private boolean cloneRetrieves;
+
     public Library gatherDataRequirements(LibraryManager libraryManager, CompiledLibrary translatedLibrary,
                                           CqlTranslatorOptions options, Set<String> expressions,
                                           boolean includeLogicDefinitions) {
@@ -56,6 +84,9 @@ public class DataRequirementsProcessor {
 
         ElmRequirementsVisitor visitor = new ElmRequirementsVisitor();
         ElmRequirementsContext context = new ElmRequirementsContext(libraryManager, options, visitor);
+        ElmRequirementsCache cache = options.getCollapseDataRequirements() ? requirementsCache : null;
+        context.setRequirementsCache(cache);
+        context.setCloneRetrieves(cloneRetrieves || cache != null);
 
         List<ExpressionDef> expressionDefs = null;
         if (expressions == null) {
@@ -142,6 +173,92 @@ public class DataRequirementsProcessor {
         return createLibrary(context, requirements, translatedLibrary.getIdentifier(), expressionDefs, includeLogicDefinitions);
     }
 
+    /**
+     * Gathers the data requirements of each of the given libraries (with the expressions to gather requirements for,
+     * or null for all the expressions in the library) in parallel on the given pool.
+     *
+     * The libraries included by the given libraries are resolved first, so that the library manager is only read
+     * from while requirements are gathered (the gathers resolve libraries with copies of the library identifiers, so
+     * the identifiers of the compiled libraries are not changed either). Each library is gathered by its own processor (sharing the requirements
+     * cache of this processor, if set), and the validation messages of each are added to this processor's messages,
+     * in the order of the given libraries. Unlike a single gather, the analysis of the requirements is applied to
+     * clones of the retrieves of each library, so the retrieves in the compiled libraries are not changed.
+     *
+     * @return the module definition library for each of the given libraries, in the order of the given libraries
+     */
+    public Map<CompiledLibrary, Library> gatherDataRequirements(LibraryManager libraryManager,
+                                                                Map<CompiledLibrary, Set<String>> libraries,
+                                                                CqlTranslatorOptions options,
+                                                                boolean includeLogicDefinitions, boolean recursive,
+                                                                ForkJoinPool pool) {
+        if (libraryManager == null) {
+            throw new IllegalArgumentException("libraryManager required");
+        }
+
+        if (libraries == null) {
+            throw new IllegalArgumentException("libraries required");
+        }
+
+        if (pool == null) {
+            throw new IllegalArgumentException("pool required");
+        }
+
+        Set<String> resolved = new HashSet<String>();
+        for (CompiledLibrary translatedLibrary : libraries.keySet()) {
+            resolveLibraries(libraryManager, translatedLibrary.getIdentifier(), options, resolved);
+        }
+
+        Map<CompiledLibrary, DataRequirementsProcessor> processors = new LinkedHashMap<CompiledLibrary, DataRequirementsProcessor>();
+        Map<CompiledLibrary, ForkJoinTask<Library>> tasks = new LinkedHashMap<CompiledLibrary, ForkJoinTask<Library>>();
+        for (Map.Entry<CompiledLibrary, Set<String>> entry : libraries.entrySet()) {
+            DataRequirementsProcessor processor = new DataRequirementsProcessor();
+            processor.setRequirementsCache(requirementsCache);
+            processor.cloneRetrieves = true;
+            processors.put(entry.getKey(), processor);
+            tasks.put(entry.getKey(), pool.submit(() -> processor.gatherDataRequirements(libraryManager, entry.getKey(),
+                    options, entry.getValue(), includeLogicDefinitions, recursive)));
+        }
+
+        Map<CompiledLibrary, Library> results = new LinkedHashMap<CompiledLibrary, Library>();
+        for (Map.Entry<CompiledLibrary, ForkJoinTask<Library>> entry : tasks.entrySet()) {
+            results.put(entry.getKey(), entry.getValue().join());
+            validationMessages.addAll(processors.get(entry.getKey()).getValidationMessages());
+        }
+
+        return results;
+    }
+
+    public Map<CompiledLibrary, Library> gatherDataRequirements(LibraryManager libraryManager,
+                                                                Map<CompiledLibrary, Set<String>> libraries,
+                                                                CqlTranslatorOptions options,
+                                                                boolean includeLogicDefinitions) {
+        return gatherDataRequirements(libraryManager, libraries, options, includeLogicDefinitions, true, ForkJoinPool.commonPool());
+    }
+
+    /*
+    Resolves the given library and the libraries it includes (transitively) through the library manager
+     */
+    private void resolveLibraries(LibraryManager libraryManager, VersionedIdentifier libraryIdentifier,
+                                  CqlTranslatorOptions options, Set<String> resolved) {
+        String libraryPath = NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId());
+        if (!resolved.add(libraryPath)) {
+            return;
+        }
+
+        CompiledLibrary library = libraryManager.resolveLibrary(new VersionedIdentifier()
+                .withSystem(libraryIdentifier.getSystem())
+                .withId(libraryIdentifier.getId())
+                .withVersion(libraryIdentifier.getVersion()), options, new ArrayList<CqlCompilerException>());
+        if (library != null && library.getLibrary() != null && library.getLibrary().getIncludes() != null) {
+            for (IncludeDef includeDef : library.getLibrary().getIncludes().getDef()) {
+                resolveLibraries(libraryManager, new VersionedIdentifier()
+                        .withSystem(NamespaceManager.getUriPart(includeDef.getPath()))
+                        .withId(NamespaceManager.getNamePart(includeDef.getPath()))
+                        .withVersion(includeDef.getVersion()), options, resolved);
+            }
+        }
+    }
+
     private Library createLibrary(ElmRequirementsContext context, ElmRequirements requirements,
             VersionedIdentifier libraryIdentifier, Iterable<ExpressionDef> expressionDefs, boolean includeLogicDefinitions) {
         Library returnLibrary = new Library();
@@ -0,0 +1,64 @@
+package org.cqframework.cql.elm.requirements;
+
+import org.hl7.elm.r1.Retrieve;
+import org.hl7.elm.r1.ValueSetRef;
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.testng.annotations.Test;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class CollapsedElmRequirementsTest {
+    private static final VersionedIdentifier libraryIdentifier = new VersionedIdentifier().withId("Test");
+
+    private static ElmDataRequirement retrieve(String dataType, String valueSet) {
+        return new ElmDataRequirement(libraryIdentifier, new Retrieve()
+                .withDataType(new QName("http://hl7.org/fhir", dataType))
+                .withCodeProperty("code")
+                .withCodes(new ValueSetRef().withName(valueSet)));
+    }
+
+    private static List<ElmRequirement> collapse(ElmRequirement... requirements) {
+        CollapsedElmRequirements collapsed = new CollapsedElmRequirements();
+        for (ElmRequirement requirement : requirements) {
+            collapsed.add(requirement);
+        }
+
+        List<ElmRequirement> result = new ArrayList<>();
+        for (ElmRequirement requirement : collapsed.getUniqueRequirements()) {
+            result.add(requirement);
+        }
+        return result;
+    }
+
+    @Test
+    public void testMergedRequirementMovesToEnd() {
+        ElmDataRequirement a = retrieve("Condition", "A");
+        ElmDataRequirement b = retrieve("Condition", "B");
+        ElmDataRequirement c = retrieve("Condition", "A");
+        ElmDataRequirement d = retrieve("Observation", "A");
+
+        List<ElmRequirement> result = collapse(a, b, c, d);
+        assertEquals(result.size(), 3);
+        assertSame(result.get(0), b);
+        assertEquals(((ValueSetRef)((Retrieve)result.get(1).getElement()).getCodes()).getName(), "A");
+        assertNotSame(result.get(1), a);
+        assertNotSame(result.get(1), c);
+        assertSame(result.get(2), d);
+    }
+
+    @Test
+    public void testGetEquivalent() {
+        CollapsedElmRequirements collapsed = new CollapsedElmRequirements();
+        ElmDataRequirement a = retrieve("Condition", "A");
+        collapsed.add(a);
+        collapsed.add(retrieve("Condition", "B"));
+
+        assertSame(collapsed.getEquivalent(retrieve("Condition", "A")), a);
+        assertNull(collapsed.getEquivalent(retrieve("Condition", "C")));
+        assertNull(collapsed.getEquivalent(retrieve("Encounter", "A")));
+    }
+}
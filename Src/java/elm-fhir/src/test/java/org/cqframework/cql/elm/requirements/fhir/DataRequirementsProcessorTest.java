@@ -2,6 +2,8 @@ package org.cqframework.cql.elm.requirements.fhir;
 
 import ca.uhn.fhir.context.FhirContext;
 import org.cqframework.cql.cql2elm.*;
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.cqframework.cql.elm.requirements.ElmRequirementsCache;
 import org.fhir.ucum.UcumEssenceService;
 import org.fhir.ucum.UcumException;
 import org.fhir.ucum.UcumService;
@@ -18,6 +20,7 @@ import java.time.ZoneId;
 import java.util.*;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -686,6 +689,115 @@ public class DataRequirementsProcessorTest {
         outputModuleDefinitionLibrary(moduleDefinitionLibrary);
     }
 
+    @Test
+    public void TestCachedDataRequirements() throws IOException {
+        CqlTranslatorOptions translatorOptions = getTranslatorOptions();
+        CqlTranslator translator = setupDataRequirementsAnalysis("CMS104/DischargedonAntithromboticTherapyFHIR.cql", translatorOptions);
+        org.hl7.fhir.r5.model.Library expectedLibrary = getModuleDefinitionLibrary(translator, translatorOptions);
+
+        ElmRequirementsCache requirementsCache = new ElmRequirementsCache();
+        DataRequirementsProcessor dqReqTrans = new DataRequirementsProcessor();
+        dqReqTrans.setRequirementsCache(requirementsCache);
+        dqReqTrans.gatherDataRequirements(libraryManager, translator.getTranslatedLibrary(), translatorOptions, null, false);
+        assertTrue(requirementsCache.size() > 0);
+        long hits = requirementsCache.getHits();
+
+        // The second gather replays the cached expression defs, with the same result
+        org.hl7.fhir.r5.model.Library actualLibrary = dqReqTrans.gatherDataRequirements(libraryManager,
+                translator.getTranslatedLibrary(), translatorOptions, null, false);
+        assertTrue(requirementsCache.getHits() > hits);
+
+        IParser parser = getFhirContext().newJsonParser();
+        assertEquals(parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setDataRequirement(actualLibrary.getDataRequirement())),
+                parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setDataRequirement(expectedLibrary.getDataRequirement())));
+        assertEquals(parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setRelatedArtifact(actualLibrary.getRelatedArtifact())),
+                parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setRelatedArtifact(expectedLibrary.getRelatedArtifact())));
+
+        // Replaying does not change the cached requirements, so a further gather has the same result
+        org.hl7.fhir.r5.model.Library replayedLibrary = dqReqTrans.gatherDataRequirements(libraryManager,
+                translator.getTranslatedLibrary(), translatorOptions, null, false);
+        assertEquals(parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setDataRequirement(replayedLibrary.getDataRequirement())),
+                parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setDataRequirement(expectedLibrary.getDataRequirement())));
+    }
+
+    @Test
+    public void TestCachedDataRequirementsWithoutCollapse() throws IOException {
+        CqlTranslatorOptions translatorOptions = getTranslatorOptions();
+        CqlTranslator translator = setupDataRequirementsAnalysis("CMS104/DischargedonAntithromboticTherapyFHIR.cql", translatorOptions);
+        translatorOptions.setCollapseDataRequirements(false);
+        org.hl7.fhir.r5.model.Library expectedLibrary = getModuleDefinitionLibrary(translator, translatorOptions);
+
+        // Uncollapsed requirements are not cached, so each gather has the result of an uncached gather
+        ElmRequirementsCache requirementsCache = new ElmRequirementsCache();
+        DataRequirementsProcessor dqReqTrans = new DataRequirementsProcessor();
+        dqReqTrans.setRequirementsCache(requirementsCache);
+        IParser parser = getFhirContext().newJsonParser();
+        for (int i = 0; i < 2; i++) {
+            org.hl7.fhir.r5.model.Library actualLibrary = dqReqTrans.gatherDataRequirements(libraryManager,
+                    translator.getTranslatedLibrary(), translatorOptions, null, false);
+            assertEquals(parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setDataRequirement(actualLibrary.getDataRequirement())),
+                    parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setDataRequirement(expectedLibrary.getDataRequirement())));
+        }
+        assertEquals(requirementsCache.size(), 0);
+    }
+
+    @Test
+    public void TestCachedDataRequirementsByOptions() throws IOException {
+        CqlTranslatorOptions translatorOptions = getTranslatorOptions();
+        CqlTranslator translator = setupDataRequirementsAnalysis("CMS104/DischargedonAntithromboticTherapyFHIR.cql", translatorOptions);
+        CqlTranslatorOptions unanalyzedOptions = getTranslatorOptions();
+        unanalyzedOptions.setCollapseDataRequirements(true);
+        unanalyzedOptions.setAnalyzeDataRequirements(false);
+        org.hl7.fhir.r5.model.Library expectedLibrary = getModuleDefinitionLibrary(translator, unanalyzedOptions);
+
+        // The requirements cached with data requirements analysis are not replayed for a gather without it
+        DataRequirementsProcessor dqReqTrans = new DataRequirementsProcessor();
+        dqReqTrans.setRequirementsCache(new ElmRequirementsCache());
+        dqReqTrans.gatherDataRequirements(libraryManager, translator.getTranslatedLibrary(), translatorOptions, null, false);
+        org.hl7.fhir.r5.model.Library actualLibrary = dqReqTrans.gatherDataRequirements(libraryManager,
+                translator.getTranslatedLibrary(), unanalyzedOptions, null, false);
+
+        IParser parser = getFhirContext().newJsonParser();
+        assertEquals(parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setDataRequirement(actualLibrary.getDataRequirement())),
+                parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setDataRequirement(expectedLibrary.getDataRequirement())));
+    }
+
+    @Test
+    public void TestParallelDataRequirements() throws IOException {
+        CqlTranslatorOptions translatorOptions = getTranslatorOptions();
+        CqlTranslator translator = setupDataRequirementsAnalysis("CMS104/DischargedonAntithromboticTherapyFHIR.cql", translatorOptions);
+        CompiledLibrary measureLibrary = translator.getTranslatedLibrary();
+        CompiledLibrary overallLibrary = libraryManager.getCompiledLibraries().get("TJCOverallFHIR");
+        CompiledLibrary commonLibrary = libraryManager.getCompiledLibraries().get("MATGlobalCommonFunctionsFHIR4");
+
+        Map<CompiledLibrary, Set<String>> libraries = new LinkedHashMap<CompiledLibrary, Set<String>>();
+        libraries.put(measureLibrary, null);
+        libraries.put(overallLibrary, Collections.singleton("All Stroke Encounter"));
+        libraries.put(commonLibrary, Collections.singleton("PrincipalDiagnosis"));
+
+        DataRequirementsProcessor dqReqTrans = new DataRequirementsProcessor();
+        dqReqTrans.setRequirementsCache(new ElmRequirementsCache());
+        ForkJoinPool pool = new ForkJoinPool(3);
+        Map<CompiledLibrary, org.hl7.fhir.r5.model.Library> results;
+        try {
+            results = dqReqTrans.gatherDataRequirements(libraryManager, libraries, translatorOptions, false, true, pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+        assertEquals(new ArrayList<CompiledLibrary>(results.keySet()), new ArrayList<CompiledLibrary>(libraries.keySet()));
+
+        // Each result is the same as gathering the library on its own
+        IParser parser = getFhirContext().newJsonParser();
+        for (Map.Entry<CompiledLibrary, Set<String>> entry : libraries.entrySet()) {
+            org.hl7.fhir.r5.model.Library expectedLibrary = new DataRequirementsProcessor().gatherDataRequirements(libraryManager,
+                    entry.getKey(), translatorOptions, entry.getValue(), false);
+            org.hl7.fhir.r5.model.Library actualLibrary = results.get(entry.getKey());
+            assertEquals(parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setDataRequirement(actualLibrary.getDataRequirement())),
+                    parser.encodeResourceToString(new org.hl7.fhir.r5.model.Library().setDataRequirement(expectedLibrary.getDataRequirement())));
+        }
+    }
+
     @Test
     public void TestDataRequirementsAnalysisCase1() throws IOException {
         CqlTranslatorOptions translatorOptions = getTranslatorOptions();
@@ -0,0 +1,56 @@
+package org.cqframework.cql.elm.tracking;
+
+import org.hl7.elm.r1.Literal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of constructing ELM nodes.
+ *
+ * randomUUID measures the cost each node used to pay for its tracker id when it was assigned with UUID.randomUUID()
+ * in the constructor. The concurrent variants show the contention on SecureRandom that the lazily assigned,
+ * counter-based tracker id avoids.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackableBenchmark {
+
+    @Benchmark
+    public Literal constructNode() {
+        return new Literal();
+    }
+
+    @Benchmark
+    public UUID constructNodeWithTrackerId() {
+        return new Literal().getTrackerId();
+    }
+
+    @Benchmark
+    public UUID randomUUID() {
+        return UUID.randomUUID();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UUID constructNodeWithTrackerIdConcurrent() {
+        return new Literal().getTrackerId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UUID randomUUIDConcurrent() {
+        return UUID.randomUUID();
+    }
+}
@@ -8,23 +8,43 @@ import javax.xml.bind.annotation.XmlTransient;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
 public class Trackable {
-    private final UUID trackerId;
+    // Tracker ids are built from a random per-process prefix and a counter, rather than by UUID.randomUUID(), which
+    // is expensive (SecureRandom) and contended when many nodes are created concurrently
+    private static final long trackerIdPrefix = UUID.randomUUID().getMostSignificantBits();
+    private static final AtomicLong trackerIdCounter = new AtomicLong();
+
+    private volatile UUID trackerId;
     private final List<TrackBack> trackbacks;
 
     private DataType resultType;
 
     public Trackable() {
-        this.trackerId = UUID.randomUUID();
         this.trackbacks = new ArrayList<>();
     }
 
+    /**
+     * Returns the tracker id of this node. The id is assigned the first time it is requested, so nodes whose id is
+     * never requested do not pay for one. Ids are unique within the process.
+     */
     @XmlTransient
     @JsonIgnore
     public UUID getTrackerId() {
-        return trackerId;
+        UUID result = trackerId;
+        if (result == null) {
+            synchronized (this) {
+                result = trackerId;
+                if (result == null) {
+                    result = new UUID(trackerIdPrefix, trackerIdCounter.incrementAndGet());
+                    trackerId = result;
+                }
+            }
+        }
+
+        return result;
     }
 
     @XmlTransient
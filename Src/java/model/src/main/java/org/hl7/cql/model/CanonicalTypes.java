@@ -0,0 +1,225 @@
+package org.hl7.cql.model;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A factory for canonical instances of the structural (list, interval, choice and tuple) types. Structurally
+ * identical types built from the same component instances are the same instance, so that equality between them is
+ * a reference comparison, and the types of the many ELM nodes sharing a type share a single instance.
+ *
+ * Components are identified by instance, not by equality: named types with the same name can come from different
+ * models (e.g. different versions of a model), and tuple types that are equal regardless of element order are
+ * distinct types here so that the element order is preserved. Structural components are made canonical first.
+ *
+ * Canonical instances are weakly held, and the factory is safe for concurrent use. A canonical tuple type cannot
+ * have elements added to it.
+ */
+public final class CanonicalTypes {
+
+    private CanonicalTypes() {
+    }
+
+    private static final class Key {
+        private final Class<? extends DataType> kind;
+        // Types are compared by instance, names and flags by value
+        private final Object[] components;
+        private final int hash;
+
+        Key(Class<? extends DataType> kind, Object... components) {
+            this.kind = kind;
+            this.components = components;
+            int result = kind.hashCode();
+            for (Object component : components) {
+                result = 31 * result + (component instanceof DataType ? System.identityHashCode(component) : Objects.hashCode(component));
+            }
+            this.hash = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key that = (Key)o;
+            if (this.hash != that.hash || this.kind != that.kind || this.components.length != that.components.length) {
+                return false;
+            }
+
+            for (int i = 0; i < components.length; i++) {
+                Object component = components[i];
+                if (component instanceof DataType ? component != that.components[i] : !Objects.equals(component, that.components[i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static final class CanonicalReference extends WeakReference<DataType> {
+        private final Key key;
+
+        CanonicalReference(Key key, DataType type, ReferenceQueue<DataType> queue) {
+            super(type, queue);
+            this.key = key;
+        }
+    }
+
+    private static final ConcurrentHashMap<Key, CanonicalReference> canonicalTypes = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<DataType> collected = new ReferenceQueue<>();
+
+    /**
+     * @return The canonical list type with the given element type
+     */
+    public static ListType listOf(DataType elementType) {
+        if (elementType == null) {
+            throw new IllegalArgumentException("elementType");
+        }
+
+        DataType canonicalElementType = canonical(elementType);
+        return intern(new Key(ListType.class, canonicalElementType), () -> new ListType(canonicalElementType));
+    }
+
+    /**
+     * @return The canonical interval type with the given point type
+     */
+    public static IntervalType intervalOf(DataType pointType) {
+        if (pointType == null) {
+            throw new IllegalArgumentException("pointType");
+        }
+
+        DataType canonicalPointType = canonical(pointType);
+        return intern(new Key(IntervalType.class, canonicalPointType), () -> new IntervalType(canonicalPointType));
+    }
+
+    /**
+     * @return The canonical choice type of the given types, choice types are expanded as for ChoiceType
+     */
+    public static ChoiceType choiceOf(Iterable<? extends DataType> types) {
+        List<DataType> choices = new ArrayList<>();
+        for (DataType type : types) {
+            addChoice(choices, type);
+        }
+
+        return intern(new Key(ChoiceType.class, choices.toArray()), () -> new ChoiceType(choices));
+    }
+
+    /**
+     * @return The canonical tuple type with the given elements, in the given order
+     */
+    public static TupleType tupleOf(Collection<TupleTypeElement> elements) {
+        List<TupleTypeElement> canonicalElements = new ArrayList<>(elements.size());
+        Object[] components = new Object[elements.size() * 3];
+        int i = 0;
+        for (TupleTypeElement element : elements) {
+            DataType canonicalType = canonical(element.getType());
+            canonicalElements.add(canonicalType == element.getType() ? element
+                    : new TupleTypeElement(element.getName(), canonicalType, element.isOneBased()));
+            components[i++] = element.getName();
+            components[i++] = canonicalType;
+            components[i++] = element.isOneBased();
+        }
+
+        return intern(new Key(TupleType.class, components), () -> new TupleType(canonicalElements));
+    }
+
+    /**
+     * Returns the canonical instance of the given type. Named types (and other types that are not structural) are
+     * returned as is.
+     */
+    public static DataType canonical(DataType type) {
+        if (type == null || type.isCanonical()) {
+            return type;
+        }
+
+        if (type instanceof ListType) {
+            return listOf(((ListType)type).getElementType());
+        }
+
+        if (type instanceof IntervalType) {
+            return intervalOf(((IntervalType)type).getPointType());
+        }
+
+        if (type instanceof ChoiceType) {
+            return choiceOf(((ChoiceType)type).getTypes());
+        }
+
+        if (type instanceof TupleType) {
+            List<TupleTypeElement> elements = new ArrayList<>();
+            for (TupleTypeElement element : ((TupleType)type).getElements()) {
+                elements.add(element);
+            }
+            return tupleOf(elements);
+        }
+
+        return type;
+    }
+
+    /**
+     * @return The number of canonical instances currently held
+     */
+    public static int size() {
+        expungeCollected();
+        return canonicalTypes.size();
+    }
+
+    private static void addChoice(List<DataType> choices, DataType type) {
+        if (type instanceof ChoiceType) {
+            for (DataType choice : ((ChoiceType)type).getTypes()) {
+                addChoice(choices, choice);
+            }
+        }
+        else {
+            choices.add(canonical(type));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends DataType> T intern(Key key, Supplier<T> factory) {
+        expungeCollected();
+
+        CanonicalReference reference = canonicalTypes.get(key);
+        DataType existing = reference != null ? reference.get() : null;
+        if (existing != null) {
+            return (T)existing;
+        }
+
+        T type = factory.get();
+        CanonicalReference newReference = new CanonicalReference(key, type, collected);
+        while (true) {
+            reference = canonicalTypes.putIfAbsent(key, newReference);
+            if (reference == null) {
+                type.setCanonical();
+                return type;
+            }
+
+            existing = reference.get();
+            if (existing != null) {
+                return (T)existing;
+            }
+
+            // The canonical instance has been collected but not yet expunged
+            if (canonicalTypes.replace(key, reference, newReference)) {
+                type.setCanonical();
+                return type;
+            }
+        }
+    }
+
+    private static void expungeCollected() {
+        CanonicalReference reference;
+        while ((reference = (CanonicalReference)collected.poll()) != null) {
+            canonicalTypes.remove(reference.key, reference);
+        }
+    }
+}
@@ -33,11 +33,18 @@ public class ChoiceType extends DataType {
         }
     }
 
+    // The types of a choice type do not change once it is constructed
+    private int hash;
+
     @Override
     public int hashCode() {
-        int result = 13;
-        for (int i = 0; i < types.size(); i++) {
-            result += (37 * types.get(i).hashCode());
+        int result = hash;
+        if (result == 0) {
+            result = 13;
+            for (int i = 0; i < types.size(); i++) {
+                result += (37 * types.get(i).hashCode());
+            }
+            hash = result;
         }
 
         return result;
@@ -45,6 +52,10 @@ public class ChoiceType extends DataType {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
         if (o instanceof ChoiceType) {
             ChoiceType that = (ChoiceType)o;
 
@@ -1,6 +1,7 @@
 package org.hl7.cql.model;
 
 import java.util.*;
+import java.util.function.Function;
 
 public class ClassType extends DataType implements NamedType {
 
@@ -124,9 +125,33 @@ public class ClassType extends DataType implements NamedType {
 
     public void addSearch(SearchType search) {
         searches.add(search);
+        memberIndex = null;
     }
 
+    /**
+     * Returns the search with the given name declared by this class type.
+     *
+     * @param searchPath
+     * @return The search with the given name, or null if none is declared by this class type.
+     */
     public SearchType findSearch(String searchPath) {
+        return findSearch(searchPath, true);
+    }
+
+    /**
+     * Returns the search with the given name.
+     * If inCurrentClassOnly is false, if not found in the given class, then it looks in the base classes.
+     * If inCurrentClassOnly is true, only looks for the search in the given class.
+     *
+     * @param searchPath
+     * @param inCurrentClassOnly
+     * @return The search with the given name, or null if none is found.
+     */
+    public SearchType findSearch(String searchPath, boolean inCurrentClassOnly) {
+        if (!inCurrentClassOnly) {
+            return getMemberIndex().searches.get(searchPath);
+        }
+
         if (searches != null) {
             for (SearchType search : searches) {
                 if (search.getName().equals(searchPath)) {
@@ -226,7 +251,8 @@ public class ClassType extends DataType implements NamedType {
     }
 
     private List<ClassTypeElement> elements = new ArrayList<ClassTypeElement>();
-    private List<ClassTypeElement> sortedElements = null;
+    // Built on first use and not changed once published, so it can be read concurrently
+    private volatile List<ClassTypeElement> sortedElements = null;
     private LinkedHashMap<String, ClassTypeElement> baseElementMap = null;
 
     public List<ClassTypeElement> getElements() {
@@ -266,6 +292,64 @@ public class ClassType extends DataType implements NamedType {
         return new ArrayList<>(elementMap.values());
     }
 
+    /**
+     * Returns the element with the given name, declared by this class or inherited from a base class.
+     * Elements declared by this class take precedence over elements of the same name in its base classes.
+     *
+     * @param name
+     * @return The element with the given name, or null if the class has no such element.
+     */
+    public ClassTypeElement findElement(String name) {
+        return getMemberIndex().elements.get(name);
+    }
+
+    /*
+    An index by name of the elements and searches of a class and its base classes, with the members of a class
+    taking precedence over those of its base classes, i.e. a lookup finds what a walk up the base classes would.
+    An index is immutable once built, so it can be read concurrently. It records the index of the base class it
+    was built from, so it is rebuilt when members are added to the class or to any of its base classes.
+     */
+    private static class MemberIndex {
+        private final MemberIndex baseIndex;
+        private final Map<String, ClassTypeElement> elements;
+        private final Map<String, SearchType> searches;
+
+        MemberIndex(MemberIndex baseIndex, List<ClassTypeElement> elements, List<SearchType> searches) {
+            this.baseIndex = baseIndex;
+            this.elements = index(baseIndex != null ? baseIndex.elements : null, elements, ClassTypeElement::getName);
+            this.searches = index(baseIndex != null ? baseIndex.searches : null, searches, SearchType::getName);
+        }
+
+        private static <T> Map<String, T> index(Map<String, T> baseMembers, List<T> members, Function<T, String> name) {
+            // The first member of a given name in the class wins, as it would for a scan of the members
+            Map<String, T> result = new HashMap<>();
+            for (int i = members.size() - 1; i >= 0; i--) {
+                result.put(name.apply(members.get(i)), members.get(i));
+            }
+
+            if (baseMembers != null) {
+                for (Map.Entry<String, T> entry : baseMembers.entrySet()) {
+                    result.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+
+            return result;
+        }
+    }
+
+    private volatile MemberIndex memberIndex;
+
+    private MemberIndex getMemberIndex() {
+        MemberIndex baseIndex = getBaseType() instanceof ClassType ? ((ClassType)getBaseType()).getMemberIndex() : null;
+        MemberIndex index = memberIndex;
+        if (index == null || index.baseIndex != baseIndex) {
+            index = new MemberIndex(baseIndex, elements, searches);
+            memberIndex = index;
+        }
+
+        return index;
+    }
+
     private void internalAddElement(ClassTypeElement element) {
         ClassTypeElement existingElement = getBaseElementMap().get(element.getName());
         if (
@@ -305,6 +389,7 @@ public class ClassType extends DataType implements NamedType {
         internalAddElement(element);
         sortedElements = null;
         tupleType = null;
+        memberIndex = null;
     }
 
     public void addElements(Collection<ClassTypeElement> elements) {
@@ -314,15 +399,18 @@ public class ClassType extends DataType implements NamedType {
 
         sortedElements = null;
         tupleType = null;
+        memberIndex = null;
     }
 
     private List<ClassTypeElement> getSortedElements() {
-        if (sortedElements == null) {
-            sortedElements = new ArrayList<>(elements);
-            Collections.sort(sortedElements, (left, right) -> left.getName().compareTo(right.getName()));
+        List<ClassTypeElement> sorted = sortedElements;
+        if (sorted == null) {
+            sorted = new ArrayList<>(elements);
+            Collections.sort(sorted, (left, right) -> left.getName().compareTo(right.getName()));
+            sortedElements = sorted;
         }
 
-        return sortedElements;
+        return sorted;
     }
 
     @Override
@@ -350,13 +438,15 @@ public class ClassType extends DataType implements NamedType {
         return this.label == null ? this.name : this.label;
     }
 
-    private TupleType tupleType;
+    private volatile TupleType tupleType;
     public TupleType getTupleType() {
-        if (tupleType == null) {
-            tupleType = buildTupleType();
+        TupleType result = tupleType;
+        if (result == null) {
+            result = buildTupleType();
+            tupleType = result;
         }
 
-        return tupleType;
+        return result;
     }
 
     private void addTupleElements(ClassType classType, LinkedHashMap<String, TupleTypeElement> elements) {
@@ -17,7 +17,30 @@ public abstract class DataType {
         return toString();
     }
 
+    // The lattice of a named type, set once its model has been imported (see TypeLattice)
+    private volatile TypeLattice.Node latticeNode;
+    TypeLattice.Node getLatticeNode() {
+        return latticeNode;
+    }
+    void setLatticeNode(TypeLattice.Node latticeNode) {
+        this.latticeNode = latticeNode;
+    }
+
+    // Whether this is the canonical instance of a structural type (see CanonicalTypes)
+    private boolean canonical;
+    boolean isCanonical() {
+        return canonical;
+    }
+    void setCanonical() {
+        this.canonical = true;
+    }
+
     public boolean isSubTypeOf(DataType other) {
+        TypeLattice.Node node = latticeNode;
+        if (node != null && other instanceof NamedType) {
+            return node.isSubTypeOf(other);
+        }
+
         DataType currentType = this;
         while (currentType != null) {
             if (currentType.equals(other)) {
@@ -30,6 +53,11 @@ public abstract class DataType {
     }
 
     public boolean isSuperTypeOf(DataType other) {
+        TypeLattice.Node node = other != null ? other.latticeNode : null;
+        if (node != null && this instanceof NamedType) {
+            return node.isSubTypeOf(this);
+        }
+
         while (other != null) {
             if (equals(other)) {
                 return true;
@@ -24,6 +24,10 @@ public class IntervalType extends DataType {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
         if (o instanceof IntervalType) {
             IntervalType that = (IntervalType)o;
             return this.pointType.equals(that.pointType);
@@ -95,6 +99,6 @@ public class IntervalType extends DataType {
 
     @Override
     public DataType instantiate(InstantiationContext context) {
-        return new IntervalType(pointType.instantiate(context));
+        return CanonicalTypes.intervalOf(pointType.instantiate(context));
     }
 }
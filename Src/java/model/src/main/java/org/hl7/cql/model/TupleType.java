@@ -4,7 +4,9 @@ import java.util.*;
 
 public class TupleType extends DataType {
     private List<TupleTypeElement> elements = new ArrayList<TupleTypeElement>();
-    private List<TupleTypeElement> sortedElements = null;
+    // Built on first use and not changed once published, so they can be read concurrently
+    private volatile List<TupleTypeElement> sortedElements = null;
+    private volatile Map<String, TupleTypeElement> elementIndex = null;
 
     public TupleType(Collection<TupleTypeElement> elements) {
         super();
@@ -24,22 +26,53 @@ public class TupleType extends DataType {
 
     public void addElement(TupleTypeElement element)
     {
+        checkNotCanonical();
         this.elements.add(element);
         sortedElements = null;
+        elementIndex = null;
     }
 
     public void addElements(Collection<TupleTypeElement> elements) {
+        checkNotCanonical();
         this.elements.addAll(elements);
         sortedElements = null;
+        elementIndex = null;
+    }
+
+    /**
+     * Returns the element with the given name.
+     *
+     * @param name
+     * @return The element with the given name, or null if the tuple type has no such element.
+     */
+    public TupleTypeElement findElement(String name) {
+        Map<String, TupleTypeElement> index = elementIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (TupleTypeElement element : elements) {
+                index.putIfAbsent(element.getName(), element);
+            }
+            elementIndex = index;
+        }
+
+        return index.get(name);
+    }
+
+    private void checkNotCanonical() {
+        if (isCanonical()) {
+            throw new IllegalStateException(String.format("Elements cannot be added to the canonical tuple type %s.", toString()));
+        }
     }
 
     private List<TupleTypeElement> getSortedElements() {
-        if (sortedElements == null) {
-            sortedElements = new ArrayList<>(elements);
-            Collections.sort(sortedElements, (left, right) -> left.getName().compareTo(right.getName()));
+        List<TupleTypeElement> sorted = sortedElements;
+        if (sorted == null) {
+            sorted = new ArrayList<>(elements);
+            Collections.sort(sorted, (left, right) -> left.getName().compareTo(right.getName()));
+            sortedElements = sorted;
         }
 
-        return sortedElements;
+        return sorted;
     }
 
     @Override
@@ -54,6 +87,10 @@ public class TupleType extends DataType {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
         if (o instanceof TupleType) {
             TupleType that = (TupleType)o;
 
@@ -190,11 +227,11 @@ public class TupleType extends DataType {
             return this;
         }
 
-        TupleType result = new TupleType();
+        List<TupleTypeElement> result = new ArrayList<>(elements.size());
         for (int i = 0; i < elements.size(); i++) {
-            result.addElement(new TupleTypeElement(elements.get(i).getName(), elements.get(i).getType().instantiate(context)));
+            result.add(new TupleTypeElement(elements.get(i).getName(), elements.get(i).getType().instantiate(context)));
         }
 
-        return result;
+        return CanonicalTypes.tupleOf(result);
     }
 }
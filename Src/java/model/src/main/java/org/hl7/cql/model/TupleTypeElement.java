@@ -31,6 +31,10 @@ public class TupleTypeElement {
         return this.type;
     }
 
+    public boolean isOneBased() {
+        return this.oneBased;
+    }
+
     @Override
     public int hashCode() {
         return (17 * this.name.hashCode())
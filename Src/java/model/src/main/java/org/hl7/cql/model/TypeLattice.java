@@ -0,0 +1,98 @@
+package org.hl7.cql.model;
+
+import java.util.*;
+
+/**
+ * Dense ids and precomputed ancestor sets for a set of named types, so that a subtype check between named types is a
+ * bit test rather than a walk of the base type chain (see DataType.isSubTypeOf). A lattice is built for the types of
+ * a model once the model has been imported. The base type of a type cannot change, so the ancestor sets remain valid
+ * for the life of the types.
+ *
+ * The ids of a lattice cover the given types and all of their base types, including base types from other models
+ * (e.g. System.Any), but a type only uses the first lattice built for it. Checks involving structural (list, interval,
+ * tuple and choice) types, or types that are not in a lattice, walk the base type chain as before.
+ */
+public class TypeLattice {
+
+    static class Node {
+        private final TypeLattice lattice;
+        private final int id;
+        private final BitSet ancestors;
+
+        private Node(TypeLattice lattice, int id, BitSet ancestors) {
+            this.lattice = lattice;
+            this.id = id;
+            this.ancestors = ancestors;
+        }
+
+        boolean isSubTypeOf(DataType other) {
+            int otherId = lattice.getId(other);
+            return otherId >= 0 && ancestors.get(otherId);
+        }
+    }
+
+    // Keyed by type equality, so that a type equal to one in the lattice has the same id
+    private final Map<DataType, Integer> ids = new HashMap<>();
+
+    private TypeLattice() {
+    }
+
+    /**
+     * Builds a lattice for the given types, assigning it to the named types that do not already have one.
+     * Types that are not named, or that have a base type that is not named, are ignored.
+     *
+     * @param types
+     * @return The lattice
+     */
+    public static TypeLattice build(Iterable<? extends DataType> types) {
+        TypeLattice lattice = new TypeLattice();
+        Map<DataType, BitSet> members = new LinkedHashMap<>();
+        for (DataType type : types) {
+            if (isNamed(type) && !members.containsKey(type)) {
+                BitSet ancestors = new BitSet();
+                for (DataType currentType = type; currentType != null; currentType = currentType.getBaseType()) {
+                    ancestors.set(lattice.ids.computeIfAbsent(currentType, t -> lattice.ids.size()));
+                }
+                members.put(type, ancestors);
+            }
+        }
+
+        // Types are shared by the lattices of all the models that use them, the first lattice built for a type wins
+        synchronized (TypeLattice.class) {
+            for (Map.Entry<DataType, BitSet> entry : members.entrySet()) {
+                if (entry.getKey().getLatticeNode() == null) {
+                    entry.getKey().setLatticeNode(new Node(lattice, lattice.ids.get(entry.getKey()), entry.getValue()));
+                }
+            }
+        }
+
+        return lattice;
+    }
+
+    /**
+     * @return The number of types with ids in this lattice, including base types from other lattices
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    private int getId(DataType type) {
+        Node node = type.getLatticeNode();
+        if (node != null && node.lattice == this) {
+            return node.id;
+        }
+
+        Integer id = ids.get(type);
+        return id != null ? id : -1;
+    }
+
+    private static boolean isNamed(DataType type) {
+        for (DataType currentType = type; currentType != null; currentType = currentType.getBaseType()) {
+            if (!(currentType instanceof NamedType)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,57 @@
+package org.hl7.cql.model;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CanonicalTypesTests {
+
+    private static final SimpleType STRING = new SimpleType("System.String");
+    private static final SimpleType INTEGER = new SimpleType("System.Integer");
+
+    @Test
+    public void testStructuralTypesAreShared() {
+        assertSame(CanonicalTypes.listOf(STRING), CanonicalTypes.listOf(STRING));
+        assertSame(CanonicalTypes.intervalOf(INTEGER), CanonicalTypes.intervalOf(INTEGER));
+        assertSame(CanonicalTypes.choiceOf(Arrays.asList(STRING, INTEGER)), CanonicalTypes.choiceOf(Arrays.asList(STRING, INTEGER)));
+        assertSame(CanonicalTypes.tupleOf(Arrays.asList(new TupleTypeElement("a", STRING), new TupleTypeElement("b", INTEGER))),
+                CanonicalTypes.tupleOf(Arrays.asList(new TupleTypeElement("a", STRING), new TupleTypeElement("b", INTEGER))));
+
+        // Structural components are made canonical
+        assertSame(CanonicalTypes.listOf(CanonicalTypes.intervalOf(INTEGER)), CanonicalTypes.listOf(new IntervalType(INTEGER)));
+        assertSame(CanonicalTypes.listOf(STRING), CanonicalTypes.canonical(new ListType(STRING)));
+        assertSame(STRING, CanonicalTypes.canonical(STRING));
+
+        // Choices are expanded as for ChoiceType
+        assertSame(CanonicalTypes.choiceOf(Arrays.asList(STRING, INTEGER)),
+                CanonicalTypes.choiceOf(Arrays.asList(CanonicalTypes.choiceOf(Arrays.asList(STRING)), INTEGER)));
+    }
+
+    @Test
+    public void testComponentsAreIdentifiedByInstance() {
+        // Named types with the same name may come from different models
+        ClassType patient = new ClassType("Test.Patient");
+        ClassType otherPatient = new ClassType("Test.Patient");
+        ListType patients = CanonicalTypes.listOf(patient);
+        ListType otherPatients = CanonicalTypes.listOf(otherPatient);
+        assertNotSame(patients, otherPatients);
+        assertSame(patient, patients.getElementType());
+        assertSame(otherPatient, otherPatients.getElementType());
+        assertEquals(patients, otherPatients);
+
+        // Element order is preserved
+        TupleType ab = CanonicalTypes.tupleOf(Arrays.asList(new TupleTypeElement("a", STRING), new TupleTypeElement("b", INTEGER)));
+        TupleType ba = CanonicalTypes.tupleOf(Arrays.asList(new TupleTypeElement("b", INTEGER), new TupleTypeElement("a", STRING)));
+        assertNotSame(ab, ba);
+        assertEquals(ab, ba);
+        assertEquals("tuple{b:System.Integer,a:System.String}", ba.toString());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCanonicalTupleTypesCannotBeModified() {
+        TupleType tupleType = CanonicalTypes.tupleOf(Arrays.asList(new TupleTypeElement("a", STRING)));
+        tupleType.addElement(new TupleTypeElement("b", INTEGER));
+    }
+}
@@ -0,0 +1,86 @@
+package org.hl7.cql.model;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ClassTypeTests {
+
+    private static final SimpleType STRING = new SimpleType("System.String");
+    private static final SimpleType INTEGER = new SimpleType("System.Integer");
+
+    @Test
+    public void testFindElementIncludesBaseTypes() {
+        ClassType resource = new ClassType("Resource");
+        ClassTypeElement id = new ClassTypeElement("id", STRING);
+        resource.addElement(id);
+
+        ClassType domainResource = new ClassType("DomainResource", resource);
+        ClassTypeElement text = new ClassTypeElement("text", STRING);
+        domainResource.addElement(text);
+
+        ClassType patient = new ClassType("Patient", domainResource);
+        ClassTypeElement gender = new ClassTypeElement("gender", STRING);
+        patient.addElement(gender);
+
+        assertSame(gender, patient.findElement("gender"));
+        assertSame(text, patient.findElement("text"));
+        assertSame(id, patient.findElement("id"));
+        assertNull(patient.findElement("birthDate"));
+        assertNull(resource.findElement("gender"));
+    }
+
+    @Test
+    public void testFindElementPrefersDeclaringType() {
+        ClassType base = new ClassType("Base");
+        base.addElement(new ClassTypeElement("value", DataType.ANY));
+
+        ClassType derived = new ClassType("Derived", base);
+        ClassTypeElement value = new ClassTypeElement("value", STRING);
+        derived.addElement(value);
+
+        assertSame(value, derived.findElement("value"));
+    }
+
+    @Test
+    public void testFindElementSeesAddedElements() {
+        ClassType base = new ClassType("Base");
+        ClassType derived = new ClassType("Derived", base);
+        assertNull(derived.findElement("id"));
+
+        // Elements added to a base type after the derived type has been indexed are found
+        ClassTypeElement id = new ClassTypeElement("id", STRING);
+        base.addElement(id);
+        assertSame(id, derived.findElement("id"));
+
+        ClassTypeElement name = new ClassTypeElement("name", STRING);
+        derived.addElement(name);
+        assertSame(name, derived.findElement("name"));
+    }
+
+    @Test
+    public void testFindSearch() {
+        ClassType base = new ClassType("Base");
+        SearchType search = new SearchType("subject", "subject", STRING);
+        base.addSearch(search);
+
+        ClassType derived = new ClassType("Derived", base);
+        assertNull(derived.findSearch("subject"));
+        assertSame(search, derived.findSearch("subject", false));
+        assertSame(search, base.findSearch("subject"));
+    }
+
+    @Test
+    public void testTupleTypeFindElement() {
+        TupleTypeElement first = new TupleTypeElement("first", STRING);
+        TupleType tupleType = new TupleType(Arrays.asList(first));
+        assertSame(first, tupleType.findElement("first"));
+        assertNull(tupleType.findElement("second"));
+
+        TupleTypeElement second = new TupleTypeElement("second", INTEGER);
+        tupleType.addElement(second);
+        assertSame(second, tupleType.findElement("second"));
+    }
+}
@@ -0,0 +1,68 @@
+package org.hl7.cql.model;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TypeLatticeTests {
+
+    @Test
+    public void testSubTypesInLattice() {
+        SimpleType any = new SimpleType("Test.Any");
+        ClassType resource = new ClassType("Test.Resource", any);
+        ClassType domainResource = new ClassType("Test.DomainResource", resource);
+        ClassType patient = new ClassType("Test.Patient", domainResource);
+        ClassType observation = new ClassType("Test.Observation", domainResource);
+
+        TypeLattice lattice = TypeLattice.build(Arrays.asList(any, resource, domainResource, patient, observation));
+        assertEquals(6, lattice.size());
+
+        assertTrue(patient.isSubTypeOf(patient));
+        assertTrue(patient.isSubTypeOf(resource));
+        assertTrue(patient.isSubTypeOf(any));
+        assertFalse(patient.isSubTypeOf(observation));
+        assertFalse(resource.isSubTypeOf(patient));
+
+        assertTrue(resource.isSuperTypeOf(patient));
+        assertFalse(patient.isSuperTypeOf(resource));
+        assertFalse(observation.isSuperTypeOf(patient));
+
+        // Types equal to a type in the lattice, and types from other lattices, are checked by equality
+        assertTrue(patient.isSubTypeOf(new ClassType("Test.Resource")));
+        assertTrue(new ClassType("Test.Resource").isSuperTypeOf(patient));
+        assertTrue(patient.isSubTypeOf(DataType.ANY));
+        assertFalse(patient.isSubTypeOf(new SimpleType("Test.Patient")));
+        assertFalse(patient.isSubTypeOf(new ClassType("Test.Encounter")));
+    }
+
+    @Test
+    public void testStructuralTypes() {
+        ClassType resource = new ClassType("Structural.Resource");
+        ClassType patient = new ClassType("Structural.Patient", resource);
+        TypeLattice.build(Arrays.asList(resource, patient));
+
+        assertTrue(new ListType(patient).isSubTypeOf(new ListType(resource)));
+        assertFalse(new ListType(resource).isSubTypeOf(new ListType(patient)));
+        assertFalse(patient.isSubTypeOf(new ListType(patient)));
+        assertTrue(new IntervalType(resource).isSuperTypeOf(new IntervalType(patient)));
+    }
+
+    @Test
+    public void testFirstLatticeWins() {
+        ClassType resource = new ClassType("Shared.Resource");
+        ClassType patient = new ClassType("Shared.Patient", resource);
+        TypeLattice.build(Arrays.asList(resource, patient));
+
+        ClassType profile = new ClassType("Other.PatientProfile", patient);
+        TypeLattice other = TypeLattice.build(Arrays.asList(patient, profile));
+        assertEquals(4, other.size());
+
+        assertTrue(profile.isSubTypeOf(resource));
+        assertTrue(profile.isSubTypeOf(DataType.ANY));
+        assertTrue(patient.isSubTypeOf(resource));
+        assertFalse(patient.isSubTypeOf(profile));
+        assertTrue(resource.isSuperTypeOf(profile));
+    }
+}
@@ -2,6 +2,7 @@ package org.cqframework.cql.tools.formatter;
 
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.tree.*;
+import org.cqframework.cql.CqlParserCache;
 import org.cqframework.cql.gen.cqlBaseVisitor;
 import org.cqframework.cql.gen.cqlLexer;
 import org.cqframework.cql.gen.cqlParser;
@@ -24,11 +25,11 @@ public class CqlFormatterVisitor extends cqlBaseVisitor<Object> {
 
     public static FormatResult getFormattedOutput(InputStream is) throws IOException {
         CharStream in = CharStreams.fromStream(is);
-        cqlLexer lexer = new cqlLexer(in);
+        cqlLexer lexer = CqlParserCache.getSharedInstance().createLexer(in);
         CommonTokenStream tokens = new CommonTokenStream(lexer);
         tokens.fill();
         populateComments(tokens);
-        cqlParser parser = new cqlParser(tokens);
+        cqlParser parser = CqlParserCache.getSharedInstance().createParser(tokens);
         parser.addErrorListener(new SyntaxErrorListener());
         parser.setBuildParseTree(true);
         ParserRuleContext tree = parser.library();